@@ -0,0 +1,54 @@
+-- 预约创建压测：POST /api/reservation
+-- 实验室、日期、开始时间随机分布，一部分请求会因时间冲突或锁竞争被拒绝，
+-- 覆盖加锁、冲突检查、插入的完整写路径。按业务结果（code=200 与否）分别计数。
+-- 环境变量：TOKEN、USER_ID（run.sh 登录后设置），LAB_COUNT（默认10），DAYS（默认60）
+
+local token = os.getenv("TOKEN")
+local userId = tonumber(os.getenv("USER_ID") or "2")
+local labCount = tonumber(os.getenv("LAB_COUNT") or "10")
+local days = tonumber(os.getenv("DAYS") or "60")
+
+local threads = {}
+
+function setup(thread)
+   thread:set("id", #threads + 1)
+   table.insert(threads, thread)
+end
+
+function init(args)
+   math.randomseed(os.time() + id * 7919)
+   ok = 0
+   rejected = 0
+   wrk.method = "POST"
+   wrk.headers["Content-Type"] = "application/json"
+   wrk.headers["Authorization"] = "Bearer " .. token
+end
+
+function request()
+   local date = os.date("%Y-%m-%d", os.time() + 86400 * math.random(1, days))
+   local hour = math.random(8, 19)
+   local body = string.format(
+      '{"userId":%d,"labId":%d,"reserveDate":"%s","timeSlot":"%02d:00-%02d:00","peopleNum":1,"purpose":"loadtest","experimentName":"loadtest"}',
+      userId, math.random(1, labCount), date, hour, hour + 1)
+   return wrk.format(nil, "/api/reservation", nil, body)
+end
+
+function response(status, headers, body)
+   if status == 200 and body:find('"code":200', 1, true) then
+      ok = ok + 1
+   else
+      rejected = rejected + 1
+   end
+end
+
+function done(summary, latency, requests)
+   local totalOk, totalRejected = 0, 0
+   for _, thread in ipairs(threads) do
+      totalOk = totalOk + thread:get("ok")
+      totalRejected = totalRejected + thread:get("rejected")
+   end
+   io.write(string.format("business: created=%d rejected=%d\n", totalOk, totalRejected))
+   for _, p in ipairs({50, 90, 99, 99.9}) do
+      io.write(string.format("p%s=%.2fms\n", p, latency:percentile(p) / 1000))
+   end
+end
@@ -0,0 +1,21 @@
+-- 站内消息读取压测：交替请求 GET /api/messages/unread-count 和 GET /api/messages/scroll
+-- 环境变量：TOKEN（run.sh 登录后设置）
+
+local token = os.getenv("TOKEN")
+local paths = { "/api/messages/unread-count", "/api/messages/scroll?size=20" }
+local counter = 0
+
+function init(args)
+   wrk.headers["Authorization"] = "Bearer " .. token
+end
+
+function request()
+   counter = counter + 1
+   return wrk.format("GET", paths[(counter % #paths) + 1])
+end
+
+function done(summary, latency, requests)
+   for _, p in ipairs({50, 90, 99, 99.9}) do
+      io.write(string.format("p%s=%.2fms\n", p, latency:percentile(p) / 1000))
+   end
+end
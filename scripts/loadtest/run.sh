@@ -0,0 +1,120 @@
+#!/usr/bin/env bash
+# 平台线程与虚拟线程对比压测
+# 依次以 spring.threads.virtual.enabled=false / true 启动同一个jar，对预约创建和消息读取接口各压测一轮，
+# 结果写入 results/<时间>/<模式>-<接口>.txt，最后打印汇总。两轮之间清理压测产生的预约，保证初始数据相同。
+#
+# 依赖：wrk、curl、mysql 客户端；数据库需已导入 mysql/test_data_10.sql
+# 用法：
+#   mvn -B -DskipTests package
+#   scripts/loadtest/run.sh
+# 可选环境变量（括号内为默认值）：
+#   JAR(target/shiyanshi-0.0.1-SNAPSHOT.jar) PORT(8080) MANAGEMENT_PORT(8081) USERNAME(student02) PASSWORD(123456)
+#   THREADS(4) CONNECTIONS(200) DURATION(60s) WARMUP(15s)
+#   TOMCAT_THREADS(200) 调小可放大平台线程模式下线程池排队的影响
+#   MYSQL_ARGS(-uroot lab_reservation) 传给 mysql 客户端的参数，用于清理压测数据
+#   JAVA_OPTS 额外的JVM参数
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+SCRIPT_DIR=scripts/loadtest
+JAR=${JAR:-target/shiyanshi-0.0.1-SNAPSHOT.jar}
+PORT=${PORT:-8080}
+MANAGEMENT_PORT=${MANAGEMENT_PORT:-8081}
+USERNAME=${USERNAME:-student02}
+PASSWORD=${PASSWORD:-123456}
+THREADS=${THREADS:-4}
+CONNECTIONS=${CONNECTIONS:-200}
+DURATION=${DURATION:-60s}
+WARMUP=${WARMUP:-15s}
+TOMCAT_THREADS=${TOMCAT_THREADS:-200}
+MYSQL_ARGS=${MYSQL_ARGS:--uroot lab_reservation}
+BASE_URL="http://localhost:${PORT}"
+OUT_DIR="${SCRIPT_DIR}/results/$(date +%Y%m%d-%H%M%S)"
+
+for cmd in wrk curl mysql java; do
+    command -v "$cmd" >/dev/null || { echo "缺少命令: $cmd" >&2; exit 1; }
+done
+[ -f "$JAR" ] || { echo "找不到 $JAR，请先执行 mvn -B -DskipTests package" >&2; exit 1; }
+mkdir -p "$OUT_DIR"
+
+APP_PID=""
+stop_app() {
+    if [ -n "$APP_PID" ] && kill -0 "$APP_PID" 2>/dev/null; then
+        kill "$APP_PID"
+        wait "$APP_PID" 2>/dev/null || true
+    fi
+    APP_PID=""
+}
+trap stop_app EXIT
+
+cleanup_data() {
+    # shellcheck disable=SC2086
+    mysql $MYSQL_ARGS -e "DELETE FROM reservation WHERE purpose = 'loadtest'"
+}
+
+start_app() {
+    local virtual=$1
+    # shellcheck disable=SC2086
+    java ${JAVA_OPTS:-} -jar "$JAR" \
+        --server.port="$PORT" \
+        --management.server.port="$MANAGEMENT_PORT" \
+        --server.tomcat.threads.max="$TOMCAT_THREADS" \
+        --spring.threads.virtual.enabled="$virtual" \
+        --logging.level.root=WARN \
+        >"$OUT_DIR/app-virtual-$virtual.log" 2>&1 &
+    APP_PID=$!
+    for _ in $(seq 1 120); do
+        if curl -fs "http://localhost:${MANAGEMENT_PORT}/actuator/health" >/dev/null 2>&1; then
+            return 0
+        fi
+        sleep 1
+    done
+    echo "应用启动超时，见 $OUT_DIR/app-virtual-$virtual.log" >&2
+    exit 1
+}
+
+login() {
+    local body
+    body=$(curl -fs -X POST "$BASE_URL/api/user/login" -H 'Content-Type: application/json' \
+        -d "{\"username\":\"$USERNAME\",\"password\":\"$PASSWORD\"}")
+    TOKEN=$(echo "$body" | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+    USER_ID=$(echo "$body" | sed -n 's/.*"userId":\([0-9]*\).*/\1/p')
+    [ -n "$TOKEN" ] || { echo "登录失败: $body" >&2; exit 1; }
+    export TOKEN USER_ID
+}
+
+bench() {
+    local label=$1 script=$2
+    # 预热一轮（JIT、连接池、缓存），结果丢弃
+    wrk -t"$THREADS" -c"$CONNECTIONS" -d"$WARMUP" -s "$SCRIPT_DIR/$script" "$BASE_URL" >/dev/null
+    wrk -t"$THREADS" -c"$CONNECTIONS" -d"$DURATION" --latency -s "$SCRIPT_DIR/$script" "$BASE_URL" \
+        | tee "$OUT_DIR/$label.txt"
+}
+
+for mode in platform virtual; do
+    virtual=false
+    [ "$mode" = virtual ] && virtual=true
+    echo "=== $mode threads (spring.threads.virtual.enabled=$virtual) ==="
+    cleanup_data
+    start_app "$virtual"
+    login
+    bench "$mode-booking" booking.lua
+    cleanup_data
+    bench "$mode-messages" messages.lua
+    stop_app
+done
+cleanup_data
+
+echo
+echo "=== 汇总 (threads=$THREADS connections=$CONNECTIONS duration=$DURATION tomcat.threads.max=$TOMCAT_THREADS) ==="
+printf '%-18s %12s %10s %10s %10s\n' case req/s p50 p99 errors
+for f in "$OUT_DIR"/*-booking.txt "$OUT_DIR"/*-messages.txt; do
+    name=$(basename "$f" .txt)
+    rps=$(awk '/Requests\/sec/ {print $2}' "$f")
+    p50=$(awk -F= '/^p50=/ {print $2}' "$f")
+    p99=$(awk -F= '/^p99=/ {print $2}' "$f")
+    errors=$(awk '/Non-2xx|Socket errors/ {printf "%s ", $0}' "$f")
+    printf '%-18s %12s %10s %10s %10s\n' "$name" "$rps" "$p50" "$p99" "${errors:-0}"
+done
+echo "详细结果: $OUT_DIR"
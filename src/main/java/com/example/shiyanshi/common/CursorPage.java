@@ -0,0 +1,97 @@
+package com.example.shiyanshi.common;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果
+ * 按(create_time DESC, id DESC)定位下一页，不使用OFFSET，翻到多深的页响应时间都一样。
+ * 游标对客户端不透明，原样传回即可获取下一页。
+ * 要求 create_time 非空（见 mysql/keyset_pagination_index.sql），为空的行既无法生成游标，也不会被游标条件命中。
+ */
+@Data
+public class CursorPage<T> {
+
+    /**
+     * 默认每页条数
+     */
+    public static final int DEFAULT_SIZE = 20;
+
+    /**
+     * 每页最大条数
+     */
+    public static final int MAX_SIZE = 100;
+
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+
+    /**
+     * 根据查询结果构造分页（查询时应多取一条，即 size + 1 条，用于判断是否还有下一页）
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size,
+                                       Function<T, LocalDateTime> createTimeGetter, Function<T, Long> idGetter) {
+        CursorPage<T> page = new CursorPage<>();
+        page.hasMore = rows.size() > size;
+        page.items = page.hasMore ? rows.subList(0, size) : rows;
+        if (page.hasMore) {
+            T last = page.items.get(size - 1);
+            page.nextCursor = encode(createTimeGetter.apply(last), idGetter.apply(last));
+        }
+        return page;
+    }
+
+    /**
+     * 规范化每页条数
+     */
+    public static int normalizeSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * 解析游标，为空表示第一页，返回null
+     */
+    public static Cursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    private static String encode(LocalDateTime createTime, Long id) {
+        if (createTime == null || id == null) {
+            // 不生成无法解析的游标，提示执行迁移脚本
+            throw new IllegalStateException("记录创建时间为空，无法生成分页游标，请执行 mysql/keyset_pagination_index.sql: id=" + id);
+        }
+        String raw = createTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 游标位置：上一页最后一条记录的创建时间和ID
+     */
+    @Data
+    public static class Cursor {
+        private final LocalDateTime createTime;
+        private final Long id;
+    }
+}
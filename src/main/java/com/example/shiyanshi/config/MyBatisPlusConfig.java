@@ -3,8 +3,11 @@ package com.example.shiyanshi.config;
 import com.baomidou.mybatisplus.core.MybatisConfiguration;
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.example.shiyanshi.interceptor.SqlTimingInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
@@ -18,11 +21,24 @@ import java.time.LocalDateTime;
 @Configuration
 public class MyBatisPlusConfig {
 
+    /**
+     * 慢SQL日志阈值（毫秒）
+     */
+    @Value("${mybatis.slow-sql.threshold-millis:500}")
+    private long slowSqlThresholdMillis;
+
+    /**
+     * 是否对慢查询执行 EXPLAIN 并输出执行计划
+     */
+    @Value("${mybatis.slow-sql.explain:false}")
+    private boolean slowSqlExplain;
+
     /**
      * 配置SqlSessionFactory
      */
     @Bean
-    public SqlSessionFactory sqlSessionFactory(DataSource dataSource, MetaObjectHandler metaObjectHandler) throws Exception {
+    public SqlSessionFactory sqlSessionFactory(DataSource dataSource, MetaObjectHandler metaObjectHandler,
+                                               MeterRegistry meterRegistry) throws Exception {
         MybatisSqlSessionFactoryBean sqlSessionFactoryBean = new MybatisSqlSessionFactoryBean();
         sqlSessionFactoryBean.setDataSource(dataSource);
         
@@ -38,6 +54,9 @@ public class MyBatisPlusConfig {
         configuration.setMapUnderscoreToCamelCase(true);
         sqlSessionFactoryBean.setConfiguration(configuration);
 
+        // SQL耗时统计与慢SQL日志
+        sqlSessionFactoryBean.setPlugins(new SqlTimingInterceptor(meterRegistry, slowSqlThresholdMillis, slowSqlExplain));
+
         // 配置 MyBatis-Plus 全局设置
         com.baomidou.mybatisplus.core.config.GlobalConfig globalConfig = new com.baomidou.mybatisplus.core.config.GlobalConfig();
         globalConfig.setSqlInjector(new com.github.yulichang.injector.MPJSqlInjector());
@@ -1,6 +1,8 @@
 package com.example.shiyanshi.config;
 
 import com.example.shiyanshi.interceptor.JWTInterceptor;
+import com.example.shiyanshi.util.JWTClaimsCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -13,12 +15,18 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    /**
+     * Token解析缓存的最大条目数
+     */
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private int claimsCacheMaxSize;
+
     /**
      * 配置拦截器
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new JWTInterceptor())
+        registry.addInterceptor(new JWTInterceptor(new JWTClaimsCache(claimsCacheMaxSize)))
                 .addPathPatterns("/api/**")  // 拦截所有API请求
                 .excludePathPatterns(
                         "/api/user/login",           // 登录接口不拦截
@@ -3,7 +3,10 @@ package com.example.shiyanshi.controller;
 import com.example.shiyanshi.annotation.RequirePermission;
 import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.Laboratory;
+import com.example.shiyanshi.service.CatalogCacheService;
 import com.example.shiyanshi.service.LaboratoryService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -59,12 +62,19 @@ public class LaboratoryController {
     /**
      * 查询所有实验室
      * GET /api/laboratory/list
+     * 支持 If-None-Match，数据未变化时返回304
      */
     @GetMapping("/list")
-    public Result findAll() {
+    public Result findAll(HttpServletRequest request, HttpServletResponse response) {
         try {
-            List<Laboratory> list = laboratoryService.findAll();
-            return Result.success(list);
+            CatalogCacheService.CachedList<Laboratory> cached = laboratoryService.findAllCached();
+            if (cached.getEtag().equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return null;
+            }
+            response.setHeader("ETag", cached.getEtag());
+            response.setHeader("Cache-Control", "no-cache");
+            return Result.success(cached.getItems());
         } catch (Exception e) {
             return Result.error("查询实验室列表时发生错误：" + e.getMessage());
         }
@@ -183,6 +193,29 @@ public class LaboratoryController {
         }
     }
 
+    /**
+     * 组合条件分页查询实验室
+     * GET /api/laboratory/query?status=1&minCapacity=30&building=A栋&keyword=计算机&page=1&size=20
+     * 所有条件均可选，返回 list、total、page、size
+     */
+    @GetMapping("/query")
+    public Result query(@RequestParam(required = false) Integer status,
+                        @RequestParam(required = false) Integer minCapacity,
+                        @RequestParam(required = false) Integer maxCapacity,
+                        @RequestParam(required = false) String building,
+                        @RequestParam(required = false) String floor,
+                        @RequestParam(required = false) String labType,
+                        @RequestParam(required = false) String keyword,
+                        @RequestParam(required = false) Integer page,
+                        @RequestParam(required = false) Integer size) {
+        try {
+            return Result.success(laboratoryService.query(status, minCapacity, maxCapacity,
+                    building, floor, labType, keyword, page, size));
+        } catch (Exception e) {
+            return Result.error("查询实验室时发生错误：" + e.getMessage());
+        }
+    }
+
     /**
      * 根据容量范围查询实验室
      * GET /api/laboratory/capacity
@@ -191,16 +224,7 @@ public class LaboratoryController {
     public Result findByCapacity(@RequestParam(required = false) Integer minCapacity,
                                  @RequestParam(required = false) Integer maxCapacity) {
         try {
-            List<Laboratory> list = laboratoryService.findAll();
-            
-            // 根据容量过滤
-            if (minCapacity != null) {
-                list.removeIf(lab -> lab.getCapacity() < minCapacity);
-            }
-            if (maxCapacity != null) {
-                list.removeIf(lab -> lab.getCapacity() > maxCapacity);
-            }
-            
+            List<Laboratory> list = laboratoryService.findByCapacity(minCapacity, maxCapacity);
             return Result.success(list);
         } catch (Exception e) {
             return Result.error("查询实验室时发生错误：" + e.getMessage());
@@ -1,13 +1,19 @@
 package com.example.shiyanshi.controller;
 
 import com.example.shiyanshi.annotation.RequirePermission;
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.Message;
+import com.example.shiyanshi.service.MessageBroadcastService;
+import com.example.shiyanshi.service.MessagePushService;
 import com.example.shiyanshi.service.MessageService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +29,12 @@ public class MessageController {
     @Autowired
     private MessageService messageService;
     
+    @Autowired
+    private MessageBroadcastService messageBroadcastService;
+    
+    @Autowired
+    private MessagePushService messagePushService;
+    
     /**
      * 广播系统消息给所有用户
      */
@@ -44,9 +56,8 @@ public class MessageController {
                 Integer.valueOf(params.get("priority").toString()) : 0;
             
             // 广播系统消息给所有用户
-            int count = messageService.broadcastSystemMessage(title, content, priority);
-            
-            Map<String, Object> result = new HashMap<>();
+            Map<String, Object> result = messageBroadcastService.broadcast(title, content, priority);
+            Object count = result.get("sent");
             result.put("count", count);
             result.put("message", "系统消息已发送给 " + count + " 个用户");
             
@@ -58,6 +69,32 @@ public class MessageController {
         }
     }
     
+    /**
+     * 查询广播任务进度
+     */
+    @RequirePermission(value = 2, description = "查看广播进度需要管理员及以上权限")
+    @GetMapping("/system/broadcast/{jobId}")
+    public Result<Map<String, Object>> getBroadcastProgress(@PathVariable Long jobId) {
+        try {
+            return Result.success(messageBroadcastService.getProgress(jobId));
+        } catch (Exception e) {
+            return Result.error("查询广播进度失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 续传中断的广播任务
+     */
+    @RequirePermission(value = 2, description = "续传广播需要管理员及以上权限")
+    @PostMapping("/system/broadcast/{jobId}/resume")
+    public Result<Map<String, Object>> resumeBroadcast(@PathVariable Long jobId) {
+        try {
+            return Result.success(messageBroadcastService.resume(jobId));
+        } catch (Exception e) {
+            return Result.error("续传广播失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 发送用户消息（从token获取发送者ID）
      */
@@ -114,6 +151,27 @@ public class MessageController {
         }
     }
     
+    /**
+     * 游标分页获取用户消息（从token获取用户ID）
+     * GET /api/messages/scroll?cursor=xxx&size=20
+     */
+    @GetMapping("/scroll")
+    public Result<CursorPage<Message>> scrollUserMessages(HttpServletRequest request,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer size) {
+        try {
+            Object userIdObj = request.getAttribute("userId");
+            if (userIdObj == null) {
+                return Result.error("缺少用户身份信息，请登录后重试");
+            }
+            Long userId = (userIdObj instanceof Long) ? (Long) userIdObj : Long.valueOf(userIdObj.toString());
+            
+            return Result.success(messageService.scrollUserMessages(userId, cursor, size));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 获取用户的未读消息（从token获取用户ID）
      */
@@ -154,6 +212,36 @@ public class MessageController {
         }
     }
     
+    /**
+     * 建立消息推送连接（SSE，从token获取用户ID）
+     * GET /api/messages/stream?token=xxx
+     * EventSource 无法设置请求头，token 可通过参数传递；断线重连时浏览器自动带上 Last-Event-ID，
+     * 连接后先补发之后的消息，再推送一次 unread 事件（各类型未读数），之后新消息以 message 事件实时推送
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                             HttpServletRequest request) {
+        try {
+            Object userIdObj = request.getAttribute("userId");
+            if (userIdObj == null) {
+                throw new RuntimeException("缺少用户身份信息，请登录后重试");
+            }
+            Long userId = (userIdObj instanceof Long) ? (Long) userIdObj : Long.valueOf(userIdObj.toString());
+            Long lastId = lastEventId != null && !lastEventId.isEmpty() ? Long.valueOf(lastEventId) : null;
+            return messagePushService.subscribe(userId, lastId);
+        } catch (Exception e) {
+            // 以 error 事件返回原因后关闭连接，客户端据此决定是否回退轮询
+            SseEmitter emitter = new SseEmitter(0L);
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Result.error(e.getMessage())));
+            } catch (IOException ignored) {
+                // 连接已断开
+            }
+            emitter.complete();
+            return emitter;
+        }
+    }
+    
     /**
      * 获取未读消息数量（从token获取用户ID）
      */
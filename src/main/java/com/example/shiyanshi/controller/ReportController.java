@@ -1,11 +1,15 @@
 package com.example.shiyanshi.controller;
 
 import com.example.shiyanshi.annotation.RequirePermission;
+import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.service.ReservationRollupService;
 import com.example.shiyanshi.service.ReservationService;
+import com.example.shiyanshi.service.ReservationStatisticsService;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
@@ -16,7 +20,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Map;
 
 /**
  * 报表导出Controller
@@ -28,9 +32,26 @@ import java.util.List;
 public class ReportController {
 
     private final ReservationService reservationService;
+    private final ReservationStatisticsService reservationStatisticsService;
+    private final ReservationRollupService reservationRollupService;
+
+    /**
+     * 导出明细时SXSSF在内存中保留的行数，超出窗口的行会被刷写到临时文件
+     */
+    private static final int EXPORT_WINDOW_SIZE = 200;
+
+    /**
+     * 明细报表各列宽度（SXSSF流式写入无法autoSize，按内容预设）
+     */
+    private static final int[] EXPORT_COLUMN_WIDTHS = {
+        3000, 3000, 5000, 3500, 3500,
+        3000, 6000, 8000, 6000, 3000,
+        3000, 8000, 5500, 5500
+    };
 
     /**
      * 导出预约报表为Excel文件
+     * 数据通过流式结果集逐行读取并写入SXSSF窗口工作簿，内存占用与数据量无关
      * 
      * @param startDate 开始日期（可选）
      * @param endDate 结束日期（可选）
@@ -47,150 +68,140 @@ public class ReportController {
             @RequestParam(required = false) Integer status,
             HttpServletResponse response) throws IOException {
 
-        // 1. 查询数据
-        List<Reservation> reservations = reservationService.search(null, status, startDate, endDate);
-        
-        // 如果指定了实验室ID，需要手动过滤
-        if (laboratoryId != null) {
-            reservations = reservations.stream()
-                    .filter(r -> laboratoryId.equals(r.getLabId()))
-                    .toList();
-        }
-
-        // 3. 创建Excel工作簿
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("预约报表");
-
-        // 4. 创建样式
-        CellStyle headerStyle = createHeaderStyle(workbook);
-        CellStyle dataStyle = createDataStyle(workbook);
-        CellStyle dateStyle = createDateStyle(workbook);
+        // 1. 创建流式Excel工作簿（仅保留窗口内的行，临时文件压缩存储）
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("预约报表");
 
-        // 5. 创建表头
-        Row headerRow = sheet.createRow(0);
-        String[] headers = {
-            "预约ID", "用户姓名", "实验室名称", "预约日期", "时间段", 
-            "使用人数", "实验名称", "使用目的", "使用设备", "状态", 
-            "审核人", "审核意见", "提交时间", "审核时间"
-        };
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
-        }
+            // 2. 创建样式
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dataStyle = createDataStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
 
-        // 6. 填充数据
-        int rowNum = 1;
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        
-        for (Reservation reservation : reservations) {
-            Row row = sheet.createRow(rowNum++);
-            
-            // 预约ID
-            Cell cell0 = row.createCell(0);
-            cell0.setCellValue(reservation.getId());
-            cell0.setCellStyle(dataStyle);
-            
-            // 用户姓名
-            Cell cell1 = row.createCell(1);
-            cell1.setCellValue(reservation.getUserName() != null ? reservation.getUserName() : "");
-            cell1.setCellStyle(dataStyle);
-            
-            // 实验室名称
-            Cell cell2 = row.createCell(2);
-            cell2.setCellValue(reservation.getLabName() != null ? reservation.getLabName() : "");
-            cell2.setCellStyle(dataStyle);
-            
-            // 预约日期
-            Cell cell3 = row.createCell(3);
-            cell3.setCellValue(reservation.getReserveDate() != null ? 
-                reservation.getReserveDate().format(dateFormatter) : "");
-            cell3.setCellStyle(dateStyle);
-            
-            // 时间段
-            Cell cell4 = row.createCell(4);
-            cell4.setCellValue(reservation.getTimeSlot() != null ? reservation.getTimeSlot() : "");
-            cell4.setCellStyle(dataStyle);
-            
-            // 使用人数
-            Cell cell5 = row.createCell(5);
-            cell5.setCellValue(reservation.getPeopleNum() != null ? reservation.getPeopleNum() : 0);
-            cell5.setCellStyle(dataStyle);
-            
-            // 实验名称
-            Cell cell6 = row.createCell(6);
-            cell6.setCellValue(reservation.getExperimentName() != null ? reservation.getExperimentName() : "");
-            cell6.setCellStyle(dataStyle);
-            
-            // 使用目的
-            Cell cell7 = row.createCell(7);
-            cell7.setCellValue(reservation.getPurpose() != null ? reservation.getPurpose() : "");
-            cell7.setCellStyle(dataStyle);
-            
-            // 使用设备
-            Cell cell8 = row.createCell(8);
-            cell8.setCellValue(reservation.getEquipment() != null ? reservation.getEquipment() : "");
-            cell8.setCellStyle(dataStyle);
+            // 3. 创建表头并预设列宽
+            Row headerRow = sheet.createRow(0);
+            String[] headers = {
+                "预约ID", "用户姓名", "实验室名称", "预约日期", "时间段", 
+                "使用人数", "实验名称", "使用目的", "使用设备", "状态", 
+                "审核人", "审核意见", "提交时间", "审核时间"
+            };
             
-            // 状态
-            Cell cell9 = row.createCell(9);
-            cell9.setCellValue(getStatusText(reservation.getStatus()));
-            cell9.setCellStyle(dataStyle);
-            
-            // 审核人
-            Cell cell10 = row.createCell(10);
-            cell10.setCellValue(reservation.getApprover() != null ? reservation.getApprover() : "");
-            cell10.setCellStyle(dataStyle);
-            
-            // 审核意见
-            Cell cell11 = row.createCell(11);
-            cell11.setCellValue(reservation.getApproveComment() != null ? reservation.getApproveComment() : "");
-            cell11.setCellStyle(dataStyle);
-            
-            // 提交时间
-            Cell cell12 = row.createCell(12);
-            cell12.setCellValue(reservation.getCreateTime() != null ? 
-                reservation.getCreateTime().format(dateTimeFormatter) : "");
-            cell12.setCellStyle(dateStyle);
-            
-            // 审核时间
-            Cell cell13 = row.createCell(13);
-            cell13.setCellValue(reservation.getApproveTime() != null ? 
-                reservation.getApproveTime().format(dateTimeFormatter) : "");
-            cell13.setCellStyle(dateStyle);
-        }
-
-        // 7. 自动调整列宽
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-            // 设置最小宽度，防止中文显示不全
-            if (sheet.getColumnWidth(i) < 3000) {
-                sheet.setColumnWidth(i, 3000);
+            for (int i = 0; i < headers.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(headers[i]);
+                cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, EXPORT_COLUMN_WIDTHS[i]);
             }
-            // 设置最大宽度，防止过宽
-            if (sheet.getColumnWidth(i) > 10000) {
-                sheet.setColumnWidth(i, 10000);
-            }
-        }
 
-        // 8. 设置响应头，让浏览器下载文件
-        String fileName = generateFileName(startDate, endDate);
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setCharacterEncoding("UTF-8");
-        response.setHeader("Content-Disposition", 
-            "attachment; filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+            // 4. 流式查询并逐行填充数据（实验室过滤已下推到SQL）
+            int[] rowNum = {1};
+            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            
+            reservationService.streamForExport(startDate, endDate, laboratoryId, status, reservation -> {
+                Row row = sheet.createRow(rowNum[0]++);
+                fillReservationRow(row, reservation, dataStyle, dateStyle, dateFormatter, dateTimeFormatter);
+            });
 
-        // 9. 将工作簿写入响应输出流
-        try (OutputStream outputStream = response.getOutputStream()) {
-            workbook.write(outputStream);
-            outputStream.flush();
+            // 5. 设置响应头，让浏览器下载文件
+            String fileName = generateFileName(startDate, endDate);
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Content-Disposition", 
+                "attachment; filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+
+            // 6. 将工作簿写入响应输出流
+            try (OutputStream outputStream = response.getOutputStream()) {
+                workbook.write(outputStream);
+                outputStream.flush();
+            }
         } finally {
+            // 删除SXSSF产生的临时文件
+            workbook.dispose();
             workbook.close();
         }
     }
 
+    /**
+     * 填充一行预约明细
+     */
+    private void fillReservationRow(Row row, Reservation reservation, CellStyle dataStyle, CellStyle dateStyle,
+                                    DateTimeFormatter dateFormatter, DateTimeFormatter dateTimeFormatter) {
+        // 预约ID
+        Cell cell0 = row.createCell(0);
+        cell0.setCellValue(reservation.getId());
+        cell0.setCellStyle(dataStyle);
+        
+        // 用户姓名
+        Cell cell1 = row.createCell(1);
+        cell1.setCellValue(reservation.getUserName() != null ? reservation.getUserName() : "");
+        cell1.setCellStyle(dataStyle);
+        
+        // 实验室名称
+        Cell cell2 = row.createCell(2);
+        cell2.setCellValue(reservation.getLabName() != null ? reservation.getLabName() : "");
+        cell2.setCellStyle(dataStyle);
+        
+        // 预约日期
+        Cell cell3 = row.createCell(3);
+        cell3.setCellValue(reservation.getReserveDate() != null ? 
+            reservation.getReserveDate().format(dateFormatter) : "");
+        cell3.setCellStyle(dateStyle);
+        
+        // 时间段
+        Cell cell4 = row.createCell(4);
+        cell4.setCellValue(reservation.getTimeSlot() != null ? reservation.getTimeSlot() : "");
+        cell4.setCellStyle(dataStyle);
+        
+        // 使用人数
+        Cell cell5 = row.createCell(5);
+        cell5.setCellValue(reservation.getPeopleNum() != null ? reservation.getPeopleNum() : 0);
+        cell5.setCellStyle(dataStyle);
+        
+        // 实验名称
+        Cell cell6 = row.createCell(6);
+        cell6.setCellValue(reservation.getExperimentName() != null ? reservation.getExperimentName() : "");
+        cell6.setCellStyle(dataStyle);
+        
+        // 使用目的
+        Cell cell7 = row.createCell(7);
+        cell7.setCellValue(reservation.getPurpose() != null ? reservation.getPurpose() : "");
+        cell7.setCellStyle(dataStyle);
+        
+        // 使用设备
+        Cell cell8 = row.createCell(8);
+        cell8.setCellValue(reservation.getEquipment() != null ? reservation.getEquipment() : "");
+        cell8.setCellStyle(dataStyle);
+        
+        // 状态
+        Cell cell9 = row.createCell(9);
+        cell9.setCellValue(getStatusText(reservation.getStatus()));
+        cell9.setCellStyle(dataStyle);
+        
+        // 审核人
+        Cell cell10 = row.createCell(10);
+        cell10.setCellValue(reservation.getApprover() != null ? reservation.getApprover() : "");
+        cell10.setCellStyle(dataStyle);
+        
+        // 审核意见
+        Cell cell11 = row.createCell(11);
+        cell11.setCellValue(reservation.getApproveComment() != null ? reservation.getApproveComment() : "");
+        cell11.setCellStyle(dataStyle);
+        
+        // 提交时间
+        Cell cell12 = row.createCell(12);
+        cell12.setCellValue(reservation.getCreateTime() != null ? 
+            reservation.getCreateTime().format(dateTimeFormatter) : "");
+        cell12.setCellStyle(dateStyle);
+        
+        // 审核时间
+        Cell cell13 = row.createCell(13);
+        cell13.setCellValue(reservation.getApproveTime() != null ? 
+            reservation.getApproveTime().format(dateTimeFormatter) : "");
+        cell13.setCellStyle(dateStyle);
+    }
+
     /**
      * 创建表头样式
      */
@@ -303,7 +314,8 @@ public class ReportController {
 
     /**
      * 导出统计报表
-     * 包含预约数量、使用率等统计信息
+     * 包含状态汇总、实验室使用率、时间段热力图和每日趋势四个工作表；
+     * 所有统计在数据库中分组聚合，导出耗时与预约记录数无关
      */
     @RequirePermission(value = 2, description = "导出统计报表需要管理员及以上权限")
     @GetMapping("/export-statistics")
@@ -312,14 +324,55 @@ public class ReportController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
             HttpServletResponse response) throws IOException {
 
+        ReservationStatisticsService.Report report = reservationStatisticsService.buildReport(startDate, endDate);
+
         // 创建Excel工作簿
         Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("预约统计");
-
-        // 创建样式
         CellStyle headerStyle = createHeaderStyle(workbook);
         CellStyle dataStyle = createDataStyle(workbook);
 
+        createSummarySheet(workbook, report, headerStyle, dataStyle);
+        createLabSheet(workbook, report, headerStyle, dataStyle);
+        createHeatmapSheet(workbook, report, headerStyle, dataStyle);
+        createDailySheet(workbook, report, headerStyle, dataStyle);
+
+        // 设置响应头
+        String fileName = "预约统计报表_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + ".xlsx";
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", 
+            "attachment; filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+
+        // 写入响应输出流
+        try (OutputStream outputStream = response.getOutputStream()) {
+            workbook.write(outputStream);
+            outputStream.flush();
+        } finally {
+            workbook.close();
+        }
+    }
+
+    /**
+     * 从预约表全量重建统计汇总表
+     * POST /api/report/rollup/rebuild
+     */
+    @RequirePermission(value = 3, description = "重建统计汇总需要超级管理员权限")
+    @PostMapping("/rollup/rebuild")
+    public Result<Map<String, Integer>> rebuildRollup() {
+        try {
+            return Result.success(reservationRollupService.rebuild());
+        } catch (Exception e) {
+            return Result.error("重建统计汇总时发生错误：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 状态汇总工作表
+     */
+    private void createSummarySheet(Workbook workbook, ReservationStatisticsService.Report report,
+                                    CellStyle headerStyle, CellStyle dataStyle) {
+        Sheet sheet = workbook.createSheet("预约统计");
+
         // 创建标题
         Row titleRow = sheet.createRow(0);
         Cell titleCell = titleRow.createCell(0);
@@ -337,43 +390,27 @@ public class ReportController {
         Row periodRow = sheet.createRow(1);
         Cell periodCell = periodRow.createCell(0);
         String period = "统计周期: ";
-        if (startDate != null && endDate != null) {
-            period += startDate + " 至 " + endDate;
+        if (report.getStartDate() != null && report.getEndDate() != null) {
+            period += report.getStartDate() + " 至 " + report.getEndDate();
         } else {
             period += "全部";
         }
         periodCell.setCellValue(period);
 
-        // 获取统计数据
-        List<Reservation> allReservations = reservationService.search(null, null, startDate, endDate);
-        
-        // 统计各状态数量
-        long totalCount = allReservations.size();
-        long pendingCount = allReservations.stream().filter(r -> Integer.valueOf(0).equals(r.getStatus())).count();
-        long approvedCount = allReservations.stream().filter(r -> Integer.valueOf(1).equals(r.getStatus())).count();
-        long rejectedCount = allReservations.stream().filter(r -> Integer.valueOf(2).equals(r.getStatus())).count();
-        long cancelledCount = allReservations.stream().filter(r -> Integer.valueOf(3).equals(r.getStatus())).count();
-        long completedCount = allReservations.stream().filter(r -> Integer.valueOf(4).equals(r.getStatus())).count();
-
         // 创建统计表格
         int rowNum = 3;
         
         // 表头
-        Row headerRow = sheet.createRow(rowNum++);
-        headerRow.createCell(0).setCellValue("统计项");
-        headerRow.createCell(1).setCellValue("数量");
-        headerRow.createCell(2).setCellValue("占比");
-        for (int i = 0; i < 3; i++) {
-            headerRow.getCell(i).setCellStyle(headerStyle);
-        }
+        createHeaderRow(sheet, rowNum++, new String[]{"统计项", "数量", "占比"}, headerStyle);
 
         // 数据行
+        long totalCount = report.getTotal();
         addStatRow(sheet, rowNum++, "总预约数", totalCount, 100.0, dataStyle);
-        addStatRow(sheet, rowNum++, "待审核", pendingCount, totalCount > 0 ? pendingCount * 100.0 / totalCount : 0, dataStyle);
-        addStatRow(sheet, rowNum++, "已通过", approvedCount, totalCount > 0 ? approvedCount * 100.0 / totalCount : 0, dataStyle);
-        addStatRow(sheet, rowNum++, "已拒绝", rejectedCount, totalCount > 0 ? rejectedCount * 100.0 / totalCount : 0, dataStyle);
-        addStatRow(sheet, rowNum++, "已取消", cancelledCount, totalCount > 0 ? cancelledCount * 100.0 / totalCount : 0, dataStyle);
-        addStatRow(sheet, rowNum++, "已完成", completedCount, totalCount > 0 ? completedCount * 100.0 / totalCount : 0, dataStyle);
+        for (Map.Entry<Integer, Long> entry : report.getStatusCounts().entrySet()) {
+            long count = entry.getValue();
+            addStatRow(sheet, rowNum++, getStatusText(entry.getKey()), count,
+                    totalCount > 0 ? count * 100.0 / totalCount : 0, dataStyle);
+        }
 
         // 调整列宽
         for (int i = 0; i < 3; i++) {
@@ -382,21 +419,138 @@ public class ReportController {
                 sheet.setColumnWidth(i, 4000);
             }
         }
+    }
 
-        // 设置响应头
-        String fileName = "预约统计报表_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + ".xlsx";
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setCharacterEncoding("UTF-8");
-        response.setHeader("Content-Disposition", 
-            "attachment; filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+    /**
+     * 实验室使用率工作表：使用率 = 已通过和已完成的预约时段数 / (统计天数 × 启用时间段数)
+     */
+    private void createLabSheet(Workbook workbook, ReservationStatisticsService.Report report,
+                                CellStyle headerStyle, CellStyle dataStyle) {
+        Sheet sheet = workbook.createSheet("实验室使用率");
+        String[] headers = {
+            "实验室名称", "总预约数", "待审核", "已通过", "已拒绝", "已取消", "已完成",
+            "使用人次", "使用时段数", "可用时段数", "使用率"
+        };
+        createHeaderRow(sheet, 0, headers, headerStyle);
 
-        // 写入响应输出流
-        try (OutputStream outputStream = response.getOutputStream()) {
-            workbook.write(outputStream);
-            outputStream.flush();
-        } finally {
-            workbook.close();
+        String[] countKeys = {"total", "pending", "approved", "rejected", "cancelled", "completed",
+            "people", "usedSlots", "availableSlots"};
+        int rowNum = 1;
+        for (Map<String, Object> lab : report.getLabs()) {
+            Row row = sheet.createRow(rowNum++);
+            Object labName = lab.get("labName");
+            setCell(row, 0, labName != null ? labName.toString() : "实验室" + lab.get("labId"), dataStyle);
+            for (int i = 0; i < countKeys.length; i++) {
+                setCell(row, i + 1, ReservationStatisticsService.toLong(lab.get(countKeys[i])), dataStyle);
+            }
+            setCell(row, headers.length - 1, String.format("%.2f%%", (Double) lab.get("utilization")), dataStyle);
         }
+
+        sheet.setColumnWidth(0, 6000);
+        for (int i = 1; i < headers.length; i++) {
+            sheet.setColumnWidth(i, 3500);
+        }
+    }
+
+    /**
+     * 时间段热力图工作表：行为时间段，列为星期，颜色越深预约越多
+     */
+    private void createHeatmapSheet(Workbook workbook, ReservationStatisticsService.Report report,
+                                    CellStyle headerStyle, CellStyle dataStyle) {
+        Sheet sheet = workbook.createSheet("时间段热力图");
+        String[] headers = {"时间段", "周一", "周二", "周三", "周四", "周五", "周六", "周日", "合计"};
+        createHeaderRow(sheet, 0, headers, headerStyle);
+
+        long max = 0;
+        for (long[] counts : report.getSlotHeatmap().values()) {
+            for (long count : counts) {
+                max = Math.max(max, count);
+            }
+        }
+
+        // 按数量占最大值的比例分为四档颜色
+        IndexedColors[] levels = {
+            IndexedColors.LIGHT_YELLOW, IndexedColors.LIGHT_ORANGE, IndexedColors.ORANGE, IndexedColors.RED
+        };
+        CellStyle[] levelStyles = new CellStyle[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levelStyles[i] = workbook.createCellStyle();
+            levelStyles[i].cloneStyleFrom(dataStyle);
+            levelStyles[i].setAlignment(HorizontalAlignment.CENTER);
+            levelStyles[i].setFillForegroundColor(levels[i].getIndex());
+            levelStyles[i].setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+
+        int rowNum = 1;
+        for (Map.Entry<String, long[]> entry : report.getSlotHeatmap().entrySet()) {
+            Row row = sheet.createRow(rowNum++);
+            setCell(row, 0, entry.getKey(), dataStyle);
+            long rowTotal = 0;
+            for (int day = 0; day < 7; day++) {
+                long count = entry.getValue()[day];
+                rowTotal += count;
+                CellStyle style = dataStyle;
+                if (count > 0 && max > 0) {
+                    style = levelStyles[(int) Math.min(levels.length - 1, (count - 1) * levels.length / max)];
+                }
+                setCell(row, day + 1, count, style);
+            }
+            setCell(row, 8, rowTotal, dataStyle);
+        }
+
+        sheet.setColumnWidth(0, 4500);
+        for (int i = 1; i < headers.length; i++) {
+            sheet.setColumnWidth(i, 3000);
+        }
+    }
+
+    /**
+     * 每日趋势工作表
+     */
+    private void createDailySheet(Workbook workbook, ReservationStatisticsService.Report report,
+                                  CellStyle headerStyle, CellStyle dataStyle) {
+        Sheet sheet = workbook.createSheet("每日趋势");
+        String[] headers = {"日期", "总预约数", "待审核", "已通过", "已拒绝", "已取消", "已完成"};
+        createHeaderRow(sheet, 0, headers, headerStyle);
+
+        String[] countKeys = {"total", "pending", "approved", "rejected", "cancelled", "completed"};
+        int rowNum = 1;
+        for (Map<String, Object> day : report.getDaily()) {
+            Row row = sheet.createRow(rowNum++);
+            setCell(row, 0, String.valueOf(day.get("reserveDate")), dataStyle);
+            for (int i = 0; i < countKeys.length; i++) {
+                setCell(row, i + 1, ReservationStatisticsService.toLong(day.get(countKeys[i])), dataStyle);
+            }
+        }
+
+        sheet.setColumnWidth(0, 4000);
+        for (int i = 1; i < headers.length; i++) {
+            sheet.setColumnWidth(i, 3500);
+        }
+    }
+
+    /**
+     * 创建表头行
+     */
+    private void createHeaderRow(Sheet sheet, int rowNum, String[] headers, CellStyle headerStyle) {
+        Row headerRow = sheet.createRow(rowNum);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    private void setCell(Row row, int column, String value, CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(value);
+        cell.setCellStyle(style);
+    }
+
+    private void setCell(Row row, int column, long value, CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(value);
+        cell.setCellStyle(style);
     }
 
     /**
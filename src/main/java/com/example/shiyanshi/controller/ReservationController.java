@@ -1,13 +1,17 @@
 package com.example.shiyanshi.controller;
 
 import com.example.shiyanshi.annotation.RequirePermission;
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.service.AvailabilitySearchService;
 import com.example.shiyanshi.service.ReservationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 预约管理控制器
@@ -21,6 +25,9 @@ public class ReservationController {
     @Autowired
     private ReservationService reservationService;
 
+    @Autowired
+    private AvailabilitySearchService availabilitySearchService;
+
     /**
      * 创建预约
      * POST /api/reservation
@@ -29,7 +36,8 @@ public class ReservationController {
     public Result create(@RequestBody Reservation reservation) {
         try {
             if (reservation.getUserId() == null || reservation.getLabId() == null || 
-                reservation.getReserveDate() == null || reservation.getTimeSlot() == null) {
+                reservation.getReserveDate() == null ||
+                (reservation.getTimeSlot() == null && reservation.getTimeSlotId() == null)) {
                 return Result.error("预约信息不完整");
             }
             Reservation result = reservationService.createReservation(reservation);
@@ -84,6 +92,37 @@ public class ReservationController {
         }
     }
 
+    /**
+     * 游标分页查询所有预约
+     * GET /api/reservation/scroll?cursor=xxx&size=20
+     */
+    @GetMapping("/scroll")
+    public Result scroll(@RequestParam(required = false) String cursor,
+                         @RequestParam(required = false) Integer size) {
+        try {
+            CursorPage<Reservation> page = reservationService.scroll(null, cursor, size);
+            return Result.success(page);
+        } catch (Exception e) {
+            return Result.error("查询预约列表时发生错误：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 游标分页查询用户的预约
+     * GET /api/reservation/user/{userId}/scroll?cursor=xxx&size=20
+     */
+    @GetMapping("/user/{userId}/scroll")
+    public Result scrollByUserId(@PathVariable Long userId,
+                                 @RequestParam(required = false) String cursor,
+                                 @RequestParam(required = false) Integer size) {
+        try {
+            CursorPage<Reservation> page = reservationService.scroll(userId, cursor, size);
+            return Result.success(page);
+        } catch (Exception e) {
+            return Result.error("查询用户预约时发生错误：" + e.getMessage());
+        }
+    }
+
     /**
      * 根据实验室ID查询预约
      * GET /api/reservation/lab/{labId}
@@ -142,6 +181,32 @@ public class ReservationController {
         }
     }
 
+    /**
+     * 批量审核预约（需要管理员及以上权限）
+     * PUT /api/reservation/approve/batch
+     * 请求体：{"ids": [1, 2, 3], "status": 1, "approvalNote": "同意"}，status 1-通过 2-拒绝
+     * 返回 processed（已审核的预约ID）和 skipped（跳过的预约及原因）
+     */
+    @RequirePermission(value = 2, description = "审核预约需要管理员及以上权限")
+    @PutMapping("/approve/batch")
+    public Result approveBatch(@RequestBody Map<String, Object> params) {
+        try {
+            Object idsObj = params.get("ids");
+            if (!(idsObj instanceof List) || ((List<?>) idsObj).isEmpty()) {
+                return Result.error("预约ID列表不能为空");
+            }
+            List<Long> ids = new java.util.ArrayList<>();
+            for (Object id : (List<?>) idsObj) {
+                ids.add(Long.valueOf(id.toString()));
+            }
+            Integer status = params.get("status") != null ? Integer.valueOf(params.get("status").toString()) : 1;
+            String approvalNote = params.get("approvalNote") != null ? params.get("approvalNote").toString() : null;
+            return Result.success("批量审核完成", reservationService.approveBatch(ids, status, null, approvalNote));
+        } catch (Exception e) {
+            return Result.error("批量审核预约时发生错误：" + e.getMessage());
+        }
+    }
+
     /**
      * 审核预约（拒绝）（需要管理员及以上权限）
      * PUT /api/reservation/reject/{id}
@@ -185,6 +250,29 @@ public class ReservationController {
         }
     }
 
+    /**
+     * 创建周期预约
+     * POST /api/reservation/series
+     * 请求体：userId、labId、timeSlot、peopleNum、purpose、experimentName、equipment、startDate，
+     * endDate 或 occurrences，daysOfWeek（1-7，可选）、intervalWeeks（可选）、mode（ALL_OR_NOTHING / BEST_EFFORT）
+     * 返回已创建的预约和每个冲突日期的原因
+     */
+    @PostMapping("/series")
+    public Result createSeries(@RequestBody ReservationService.SeriesRequest request) {
+        try {
+            ReservationService.SeriesResult result = reservationService.createSeries(request);
+            if (result.getCreated().isEmpty()) {
+                return Result.success("存在冲突，未创建任何预约", result);
+            }
+            if (!result.getConflicts().isEmpty()) {
+                return Result.success("部分预约创建成功，冲突日期已跳过", result);
+            }
+            return Result.success("周期预约创建成功", result);
+        } catch (Exception e) {
+            return Result.error("创建周期预约时发生错误：" + e.getMessage());
+        }
+    }
+
     /**
      * 更新预约信息
      * PUT /api/reservation
@@ -237,6 +325,63 @@ public class ReservationController {
         }
     }
 
+    /**
+     * 查询实验室一周内每天的空闲时间段
+     * GET /api/reservation/free-slots?labId=1&weekStart=2026-01-12
+     */
+    @GetMapping("/free-slots")
+    public Result getFreeSlots(@RequestParam Long labId, @RequestParam String weekStart) {
+        try {
+            return Result.success(reservationService.findFreeSlots(labId, weekStart));
+        } catch (Exception e) {
+            return Result.error("查询空闲时间段时发生错误：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 搜索空闲实验室
+     * GET /api/reservation/availability?startDate=2026-01-12&endDate=2026-01-18&peopleNum=30&equipment=投影仪,电脑&preferredSlotIds=1,2&limit=20
+     * 返回按偏好时间段、日期、容量匹配度排序的空闲 (实验室, 日期, 时间段) 组合
+     */
+    @GetMapping("/availability")
+    public Result searchAvailability(@RequestParam String startDate,
+                                     @RequestParam(required = false) String endDate,
+                                     @RequestParam(required = false) Integer peopleNum,
+                                     @RequestParam(required = false) String equipment,
+                                     @RequestParam(required = false) List<Long> preferredSlotIds,
+                                     @RequestParam(required = false) Integer limit) {
+        try {
+            return Result.success(availabilitySearchService.search(LocalDate.parse(startDate),
+                    endDate != null ? LocalDate.parse(endDate) : null,
+                    peopleNum, equipment, preferredSlotIds, limit));
+        } catch (Exception e) {
+            return Result.error("搜索空闲实验室时发生错误：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 搜索预约（管理端）
+     * GET /api/reservation/search?keyword=张三&status=1&labId=2&startDate=2026-01-01&endDate=2026-01-31&page=1&size=20
+     * 所有条件均可选，返回 list、total、page、size
+     */
+    @GetMapping("/search")
+    public Result search(@RequestParam(required = false) String keyword,
+                         @RequestParam(required = false) Integer status,
+                         @RequestParam(required = false) Long labId,
+                         @RequestParam(required = false) String startDate,
+                         @RequestParam(required = false) String endDate,
+                         @RequestParam(required = false) Integer page,
+                         @RequestParam(required = false) Integer size) {
+        try {
+            return Result.success(reservationService.search(keyword, status, labId,
+                    startDate != null ? LocalDate.parse(startDate) : null,
+                    endDate != null ? LocalDate.parse(endDate) : null,
+                    page, size));
+        } catch (Exception e) {
+            return Result.error("搜索预约时发生错误：" + e.getMessage());
+        }
+    }
+
     /**
      * 获取预约统计信息
      * GET /api/reservation/statistics
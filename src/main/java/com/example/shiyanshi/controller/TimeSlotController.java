@@ -3,7 +3,10 @@ package com.example.shiyanshi.controller;
 import com.example.shiyanshi.annotation.RequirePermission;
 import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.TimeSlot;
-import com.example.shiyanshi.mapper.TimeSlotMapper;
+import com.example.shiyanshi.service.CatalogCacheService;
+import com.example.shiyanshi.service.TimeSlotService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,7 +22,7 @@ import java.util.List;
 public class TimeSlotController {
 
     @Autowired
-    private TimeSlotMapper timeSlotMapper;
+    private TimeSlotService timeSlotService;
 
     /**
      * 添加时间段
@@ -33,7 +36,7 @@ public class TimeSlotController {
                 timeSlot.getEndTime() == null) {
                 return Result.error("时间段信息不完整");
             }
-            int result = timeSlotMapper.insert(timeSlot);
+            int result = timeSlotService.add(timeSlot);
             if (result > 0) {
                 return Result.success("时间段添加成功", timeSlot);
             }
@@ -50,7 +53,7 @@ public class TimeSlotController {
     @GetMapping("/{id}")
     public Result findById(@PathVariable Long id) {
         try {
-            TimeSlot timeSlot = timeSlotMapper.findById(id);
+            TimeSlot timeSlot = timeSlotService.findById(id);
             if (timeSlot != null) {
                 return Result.success(timeSlot);
             }
@@ -63,12 +66,16 @@ public class TimeSlotController {
     /**
      * 查询所有时间段
      * GET /api/timeslot/list
+     * 支持 If-None-Match，数据未变化时返回304
      */
     @GetMapping("/list")
-    public Result findAll() {
+    public Result findAll(HttpServletRequest request, HttpServletResponse response) {
         try {
-            List<TimeSlot> list = timeSlotMapper.findAll();
-            return Result.success(list);
+            CatalogCacheService.CachedList<TimeSlot> cached = timeSlotService.findAllCached();
+            if (notModified(cached.getEtag(), request, response)) {
+                return null;
+            }
+            return Result.success(cached.getItems());
         } catch (Exception e) {
             return Result.error("查询时间段列表时发生错误：" + e.getMessage());
         }
@@ -77,12 +84,16 @@ public class TimeSlotController {
     /**
      * 查询启用的时间段
      * GET /api/timeslot/enabled
+     * 支持 If-None-Match，数据未变化时返回304
      */
     @GetMapping("/enabled")
-    public Result findEnabled() {
+    public Result findEnabled(HttpServletRequest request, HttpServletResponse response) {
         try {
-            List<TimeSlot> list = timeSlotMapper.findByStatus(1);
-            return Result.success(list);
+            CatalogCacheService.CachedList<TimeSlot> cached = timeSlotService.findEnabledCached();
+            if (notModified(cached.getEtag(), request, response)) {
+                return null;
+            }
+            return Result.success(cached.getItems());
         } catch (Exception e) {
             return Result.error("查询启用时间段时发生错误：" + e.getMessage());
         }
@@ -95,7 +106,7 @@ public class TimeSlotController {
     @GetMapping("/status/{status}")
     public Result findByStatus(@PathVariable Integer status) {
         try {
-            List<TimeSlot> list = timeSlotMapper.findByStatus(status);
+            List<TimeSlot> list = timeSlotService.findByStatus(status);
             return Result.success(list);
         } catch (Exception e) {
             return Result.error("查询时间段时发生错误：" + e.getMessage());
@@ -113,11 +124,11 @@ public class TimeSlotController {
             if (timeSlot.getId() == null) {
                 return Result.error("时间段ID不能为空");
             }
-            TimeSlot existing = timeSlotMapper.findById(timeSlot.getId());
+            TimeSlot existing = timeSlotService.findById(timeSlot.getId());
             if (existing == null) {
                 return Result.error("时间段不存在");
             }
-            int result = timeSlotMapper.update(timeSlot);
+            int result = timeSlotService.update(timeSlot);
             if (result > 0) {
                 return Result.success("时间段信息更新成功");
             }
@@ -138,13 +149,13 @@ public class TimeSlotController {
             if (id == null) {
                 return Result.error("时间段ID不能为空");
             }
-            TimeSlot existing = timeSlotMapper.findById(id);
+            TimeSlot existing = timeSlotService.findById(id);
             if (existing == null) {
                 return Result.error("时间段不存在");
             }
             // 设置ID以确保更新正确的记录
             timeSlot.setId(id);
-            int result = timeSlotMapper.update(timeSlot);
+            int result = timeSlotService.update(timeSlot);
             if (result > 0) {
                 return Result.success("时间段信息更新成功");
             }
@@ -168,11 +179,11 @@ public class TimeSlotController {
             if (status < 0 || status > 1) {
                 return Result.error("状态值无效，应为0-禁用/1-启用");
             }
-            TimeSlot timeSlot = timeSlotMapper.findById(id);
+            TimeSlot timeSlot = timeSlotService.findById(id);
             if (timeSlot == null) {
                 return Result.error("时间段不存在");
             }
-            int result = timeSlotMapper.updateStatus(id, status);
+            int result = timeSlotService.updateStatus(id, status);
             if (result > 0) {
                 return Result.success("时间段状态更新成功");
             }
@@ -190,11 +201,11 @@ public class TimeSlotController {
     @DeleteMapping("/{id}")
     public Result delete(@PathVariable Long id) {
         try {
-            TimeSlot timeSlot = timeSlotMapper.findById(id);
+            TimeSlot timeSlot = timeSlotService.findById(id);
             if (timeSlot == null) {
                 return Result.error("时间段不存在");
             }
-            int result = timeSlotMapper.deleteById(id);
+            int result = timeSlotService.delete(id);
             if (result > 0) {
                 return Result.success("时间段删除成功");
             }
@@ -215,11 +226,7 @@ public class TimeSlotController {
             if (timeSlots == null || timeSlots.isEmpty()) {
                 return Result.error("时间段列表不能为空");
             }
-            for (TimeSlot timeSlot : timeSlots) {
-                if (timeSlot.getId() != null && timeSlot.getSortOrder() != null) {
-                    timeSlotMapper.update(timeSlot);
-                }
-            }
+            timeSlotService.batchUpdateSortOrder(timeSlots);
             return Result.success("时间段排序更新成功");
         } catch (Exception e) {
             return Result.error("更新时间段排序时发生错误：" + e.getMessage());
@@ -233,7 +240,7 @@ public class TimeSlotController {
     @GetMapping("/statistics")
     public Result getStatistics() {
         try {
-            List<TimeSlot> allSlots = timeSlotMapper.findAll();
+            List<TimeSlot> allSlots = timeSlotService.findAll();
             
             // 统计各种状态的时间段数量
             long totalCount = allSlots.size();
@@ -251,4 +258,17 @@ public class TimeSlotController {
             return Result.error("获取统计信息时发生错误：" + e.getMessage());
         }
     }
+
+    /**
+     * ETag与请求头 If-None-Match 一致时设置304并返回true，否则写入ETag响应头
+     */
+    private boolean notModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "no-cache");
+        return false;
+    }
 }
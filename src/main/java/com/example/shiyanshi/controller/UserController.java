@@ -2,9 +2,11 @@ package com.example.shiyanshi.controller;
 
 import com.example.shiyanshi.annotation.RequirePermission;
 import com.example.shiyanshi.annotation.RequireSelfOrAdmin;
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.common.Result;
 import com.example.shiyanshi.entity.User;
 import com.example.shiyanshi.entity.UserWechatAuth;
+import com.example.shiyanshi.service.UserSearchIndexService;
 import com.example.shiyanshi.service.UserService;
 import com.example.shiyanshi.service.EmailService;
 import com.example.shiyanshi.service.UserWechatAuthService;
@@ -218,6 +220,20 @@ public class UserController {
         }
     }
     
+    /**
+     * 游标分页查询用户
+     * GET /api/user/scroll?cursor=xxx&size=20
+     */
+    @GetMapping("/scroll")
+    public Result<CursorPage<User>> scroll(@RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer size) {
+        try {
+            return Result.success(userService.scroll(cursor, size));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 根据用户类型查询
      */
@@ -349,6 +365,23 @@ public class UserController {
         }
     }
     
+    /**
+     * 用户联想查询
+     * GET /api/user/suggest?keyword=zs&userType=1&limit=10
+     * 关键字可以是用户名/学号/工号/手机号前缀、姓名片段或姓名拼音首字母
+     */
+    @GetMapping("/suggest")
+    public Result<List<UserSearchIndexService.Suggestion>> suggest(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Integer userType,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return Result.success(userService.suggest(keyword, userType, limit));
+        } catch (Exception e) {
+            return Result.error(e.getMessage());
+        }
+    }
+    
     /**
      * 发送注册验证邮件
      */
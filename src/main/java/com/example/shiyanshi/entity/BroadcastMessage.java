@@ -0,0 +1,52 @@
+package com.example.shiyanshi.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 广播消息实体类（读时扩散模式下的系统广播）
+ */
+@Data
+@TableName("broadcast_message")
+public class BroadcastMessage {
+
+    /**
+     * 广播ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 发送者名称
+     */
+    private String senderName;
+
+    /**
+     * 消息标题
+     */
+    private String title;
+
+    /**
+     * 消息内容
+     */
+    private String content;
+
+    /**
+     * 消息优先级：0-普通 1-重要 2-紧急
+     */
+    private Integer priority;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 删除标记：0-未删除 1-已删除
+     */
+    private Integer deleted;
+}
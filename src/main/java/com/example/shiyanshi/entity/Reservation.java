@@ -29,7 +29,10 @@ public class Reservation {
     private String labName;          // 实验室名称（关联查询字段，不对应数据库列）
     
     private LocalDate reserveDate;   // 预约日期
-    private String timeSlot;         // 时间段：如 08:00-10:00
+    private String timeSlot;         // 时间段文本：如 08:00-10:00（展示用）
+    private Long timeSlotId;         // 时间段配置ID，自定义时间段为空
+    private Integer startMinute;     // 开始时间（当天分钟数），冲突检查、提醒使用
+    private Integer endMinute;       // 结束时间（当天分钟数，不含）
     private Integer peopleNum;       // 使用人数
     private String purpose;          // 使用目的
     private String experimentName;   // 实验名称
@@ -0,0 +1,78 @@
+package com.example.shiyanshi.event;
+
+import com.example.shiyanshi.entity.Reservation;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * 预约状态变更事件
+ * 在预约事务内发布，事件中保存变更时刻的预约快照，监听方无需再查询预约表
+ */
+@Getter
+public class ReservationStatusChangedEvent {
+
+    private final Long reservationId;
+    private final Long userId;
+    private final Long labId;
+    private final String labName;
+    private final LocalDate reserveDate;
+    private final String timeSlot;
+
+    /**
+     * 开始时间（当天分钟数），迁移前的旧预约可能为null
+     */
+    private final Integer startMinute;
+    private final Integer peopleNum;
+
+    /**
+     * 变更前状态（新建预约时为null）
+     */
+    private final Integer oldStatus;
+
+    /**
+     * 变更后状态：0-待审核，1-已通过，2-已拒绝，3-已取消，4-已完成（预约被删除时为null）
+     */
+    private final Integer newStatus;
+
+    /**
+     * 审核意见 / 取消原因 / 评价
+     */
+    private final String note;
+
+    /**
+     * 评分（仅完成预约时有值）
+     */
+    private final Integer rating;
+
+    /**
+     * 统计汇总已由批量操作统一更新（批量审核、周期预约），汇总监听方跳过该事件
+     */
+    private final boolean rollupApplied;
+
+    public ReservationStatusChangedEvent(Reservation reservation, Integer oldStatus, Integer newStatus, String note) {
+        this(reservation, oldStatus, newStatus, note, null, false);
+    }
+
+    public ReservationStatusChangedEvent(Reservation reservation, Integer oldStatus, Integer newStatus,
+                                         String note, Integer rating) {
+        this(reservation, oldStatus, newStatus, note, rating, false);
+    }
+
+    public ReservationStatusChangedEvent(Reservation reservation, Integer oldStatus, Integer newStatus,
+                                         String note, Integer rating, boolean rollupApplied) {
+        this.reservationId = reservation.getId();
+        this.userId = reservation.getUserId();
+        this.labId = reservation.getLabId();
+        this.labName = reservation.getLabName();
+        this.reserveDate = reservation.getReserveDate();
+        this.timeSlot = reservation.getTimeSlot();
+        this.startMinute = reservation.getStartMinute();
+        this.peopleNum = reservation.getPeopleNum();
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+        this.note = note;
+        this.rating = rating;
+        this.rollupApplied = rollupApplied;
+    }
+}
@@ -2,7 +2,7 @@ package com.example.shiyanshi.interceptor;
 
 import com.alibaba.fastjson2.JSON;
 import com.example.shiyanshi.common.Result;
-import com.example.shiyanshi.util.JWTUtil;
+import com.example.shiyanshi.util.JWTClaimsCache;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,10 +14,21 @@ import java.io.PrintWriter;
 /**
  * JWT拦截器
  * 用于验证请求中的Token是否有效
+ * 每个请求只验签解析一次，同一Token的后续请求直接命中解析缓存
  */
 @Slf4j
 public class JWTInterceptor implements HandlerInterceptor {
 
+    private final JWTClaimsCache claimsCache;
+
+    public JWTInterceptor() {
+        this(new JWTClaimsCache(JWTClaimsCache.DEFAULT_MAX_SIZE));
+    }
+
+    public JWTInterceptor(JWTClaimsCache claimsCache) {
+        this.claimsCache = claimsCache;
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         // 处理跨域预检请求
@@ -61,7 +72,8 @@ public class JWTInterceptor implements HandlerInterceptor {
             return false;
         }
         
-        if (!JWTUtil.validateToken(token)) {
+        JWTClaimsCache.TokenClaims tokenClaims = claimsCache.resolve(token);
+        if (tokenClaims == null) {
             log.warn("Token validation failed for request: {} {}", request.getMethod(), request.getRequestURI());
             response.setContentType("application/json;charset=UTF-8");
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -76,9 +88,9 @@ public class JWTInterceptor implements HandlerInterceptor {
         }
 
         // 将用户信息存入request，供后续使用
-        Long userId = JWTUtil.getUserIdFromToken(token);
-        String username = JWTUtil.getUsernameFromToken(token);
-        Integer userType = JWTUtil.getUserTypeFromToken(token);
+        Long userId = tokenClaims.getUserId();
+        String username = tokenClaims.getUsername();
+        Integer userType = tokenClaims.getUserType();
         
         log.info("Token validated successfully. User: {}(ID:{}), Type: {}", username, userId, userType);
         
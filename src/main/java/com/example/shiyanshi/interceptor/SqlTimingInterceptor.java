@@ -0,0 +1,170 @@
+package com.example.shiyanshi.interceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL执行耗时拦截器
+ *
+ * - 按映射语句（如 com.example.shiyanshi.mapper.ReservationMapper.findAll）记录耗时直方图，
+ *   以 Micrometer 指标 mybatis.statement 暴露，标签为 statement 和 type
+ * - 只有超过阈值的语句输出日志，包含SQL和绑定参数；可选对慢查询执行 EXPLAIN 并一起输出
+ * - 流式查询（ResultHandler）的耗时包含逐行处理的时间
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class SqlTimingInterceptor implements Interceptor {
+
+    private static final String METRIC_NAME = "mybatis.statement";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 慢SQL阈值（毫秒）
+     */
+    private final long slowThresholdMillis;
+
+    /**
+     * 是否对慢查询执行 EXPLAIN
+     */
+    private final boolean explainSlowQueries;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public SqlTimingInterceptor(MeterRegistry meterRegistry, long slowThresholdMillis, boolean explainSlowQueries) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.explainSlowQueries = explainSlowQueries;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Object[] args = invocation.getArgs();
+            MappedStatement ms = (MappedStatement) args[0];
+            timer(ms).record(elapsed, TimeUnit.NANOSECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            if (elapsedMillis >= slowThresholdMillis) {
+                logSlow(invocation, ms, args, elapsedMillis);
+            }
+        }
+    }
+
+    private Timer timer(MappedStatement ms) {
+        return timers.computeIfAbsent(ms.getId(), id -> Timer.builder(METRIC_NAME)
+                .description("MyBatis映射语句执行耗时")
+                .tag("statement", id)
+                .tag("type", ms.getSqlCommandType().name())
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry));
+    }
+
+    /**
+     * 输出慢SQL日志，日志本身出错不影响业务
+     */
+    private void logSlow(Invocation invocation, MappedStatement ms, Object[] args, long elapsedMillis) {
+        try {
+            Object parameter = args[1];
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+            String sql = boundSql.getSql().replaceAll("\\s+", " ").trim();
+            List<Object> params = boundParameters(ms.getConfiguration(), boundSql, parameter);
+            if (explainSlowQueries && ms.getSqlCommandType() == SqlCommandType.SELECT) {
+                String plan = explain((Executor) invocation.getTarget(), ms, parameter, boundSql);
+                log.warn("慢SQL: {} 耗时{}ms\nSQL: {}\n参数: {}\n执行计划:\n{}", ms.getId(), elapsedMillis, sql, params, plan);
+            } else {
+                log.warn("慢SQL: {} 耗时{}ms\nSQL: {}\n参数: {}", ms.getId(), elapsedMillis, sql, params);
+            }
+        } catch (Exception e) {
+            log.warn("慢SQL: {} 耗时{}ms（记录SQL详情失败: {}）", ms.getId(), elapsedMillis, e.getMessage());
+        }
+    }
+
+    /**
+     * 按占位符顺序取出绑定参数值，取值规则与 DefaultParameterHandler 一致
+     */
+    private static List<Object> boundParameters(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<Object> values = new ArrayList<>();
+        MetaObject metaObject = null;
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values.add(boundSql.getAdditionalParameter(property));
+            } else if (parameter == null) {
+                values.add(null);
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                values.add(parameter);
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameter);
+                }
+                values.add(metaObject.getValue(property));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 在当前连接上执行 EXPLAIN，每行输出为 列名=值 列表
+     */
+    private static String explain(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql)
+            throws Exception {
+        Connection connection = executor.getTransaction().getConnection();
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            ms.getConfiguration().newParameterHandler(ms, parameter, boundSql).setParameters(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        plan.append(i > 1 ? ", " : "").append(meta.getColumnLabel(i)).append('=').append(rs.getObject(i));
+                    }
+                    plan.append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
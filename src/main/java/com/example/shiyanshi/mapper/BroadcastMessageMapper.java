@@ -0,0 +1,110 @@
+package com.example.shiyanshi.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.shiyanshi.entity.BroadcastMessage;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 广播消息数据访问层
+ * 包含广播本身以及用户已读/删除状态、已读水位线的维护
+ */
+@Mapper
+public interface BroadcastMessageMapper extends BaseMapper<BroadcastMessage> {
+
+    /**
+     * 查询用户可见的广播（广播发布时间不早于用户注册时间，且用户未删除）
+     */
+    @Select("SELECT b.* FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{userId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{userId} " +
+            "WHERE b.id = #{broadcastId} AND b.deleted = 0 AND b.create_time >= u.create_time " +
+            "AND (r.deleted IS NULL OR r.deleted = 0)")
+    BroadcastMessage findVisible(@Param("broadcastId") Long broadcastId, @Param("userId") Long userId);
+
+    /**
+     * 统计用户可见广播中属于给定ID集合的数量（用于校验批量操作的消息归属）
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{userId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{userId} " +
+            "WHERE b.deleted = 0 AND b.create_time &gt;= u.create_time " +
+            "AND (r.deleted IS NULL OR r.deleted = 0) AND b.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    long countVisible(@Param("ids") List<Long> broadcastIds, @Param("userId") Long userId);
+
+    /**
+     * 查询用户是否已读某条广播（单独标记已读或在水位线以内）
+     */
+    @Select("SELECT CASE WHEN #{broadcastId} <= IFNULL((SELECT read_upto_id FROM broadcast_watermark WHERE user_id = #{userId}), 0) " +
+            "OR EXISTS (SELECT 1 FROM broadcast_receipt WHERE user_id = #{userId} AND broadcast_id = #{broadcastId} AND read_time IS NOT NULL) " +
+            "THEN 1 ELSE 0 END")
+    int isRead(@Param("broadcastId") Long broadcastId, @Param("userId") Long userId);
+
+    /**
+     * 标记广播为已读
+     */
+    @Insert("<script>" +
+            "INSERT INTO broadcast_receipt (user_id, broadcast_id, read_time, deleted) VALUES " +
+            "<foreach collection='ids' item='id' separator=','>(#{userId}, #{id}, NOW(), 0)</foreach> " +
+            "ON DUPLICATE KEY UPDATE read_time = IFNULL(read_time, VALUES(read_time))" +
+            "</script>")
+    int markRead(@Param("ids") List<Long> broadcastIds, @Param("userId") Long userId);
+
+    /**
+     * 用户删除广播（只影响该用户的视图）
+     */
+    @Insert("<script>" +
+            "INSERT INTO broadcast_receipt (user_id, broadcast_id, read_time, deleted) VALUES " +
+            "<foreach collection='ids' item='id' separator=','>(#{userId}, #{id}, NULL, 1)</foreach> " +
+            "ON DUPLICATE KEY UPDATE deleted = 1" +
+            "</script>")
+    int markDeleted(@Param("ids") List<Long> broadcastIds, @Param("userId") Long userId);
+
+    /**
+     * 把用户的已读水位线推进到当前最新广播
+     */
+    @Insert("INSERT INTO broadcast_watermark (user_id, read_upto_id) " +
+            "SELECT #{userId}, IFNULL(MAX(id), 0) FROM broadcast_message " +
+            "ON DUPLICATE KEY UPDATE read_upto_id = GREATEST(read_upto_id, VALUES(read_upto_id))")
+    int advanceWatermark(@Param("userId") Long userId);
+
+    /**
+     * 查询给定广播中用户可见且未读的广播ID
+     */
+    @Select("<script>" +
+            "SELECT b.id FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{userId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{userId} " +
+            "LEFT JOIN broadcast_watermark w ON w.user_id = #{userId} " +
+            "WHERE b.deleted = 0 AND b.create_time &gt;= u.create_time " +
+            "AND b.id &gt; IFNULL(w.read_upto_id, 0) " +
+            "AND (r.user_id IS NULL OR (r.read_time IS NULL AND r.deleted = 0)) AND b.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Long> findUnreadIds(@Param("ids") List<Long> broadcastIds, @Param("userId") Long userId);
+
+    /**
+     * 统计用户未读的广播数量
+     */
+    @Select("SELECT COUNT(*) FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{userId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{userId} " +
+            "LEFT JOIN broadcast_watermark w ON w.user_id = #{userId} " +
+            "WHERE b.deleted = 0 AND b.create_time >= u.create_time " +
+            "AND b.id > IFNULL(w.read_upto_id, 0) " +
+            "AND (r.user_id IS NULL OR (r.read_time IS NULL AND r.deleted = 0))")
+    int countUnread(@Param("userId") Long userId);
+
+    /**
+     * 当前最大的广播ID
+     */
+    @Select("SELECT IFNULL(MAX(id), 0) FROM broadcast_message")
+    long findMaxId();
+}
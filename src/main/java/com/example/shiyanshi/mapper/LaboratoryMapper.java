@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.shiyanshi.entity.Laboratory;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 /**
  * 实验室数据访问层
@@ -73,6 +74,16 @@ public interface LaboratoryMapper extends BaseMapper<Laboratory> {
         return selectList(wrapper);
     }
     
+    /**
+     * 根据容量范围查询实验室，上下限为空时不限
+     */
+    default java.util.List<Laboratory> findByCapacity(Integer minCapacity, Integer maxCapacity) {
+        return selectList(new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<Laboratory>()
+                .ge(minCapacity != null, Laboratory::getCapacity, minCapacity)
+                .le(maxCapacity != null, Laboratory::getCapacity, maxCapacity)
+                .orderByDesc(Laboratory::getCreateTime));
+    }
+    
     /**
      * 根据实验室编号查询
      */
@@ -80,4 +91,61 @@ public interface LaboratoryMapper extends BaseMapper<Laboratory> {
         return selectOne(new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<Laboratory>()
                 .eq(Laboratory::getLabNumber, labNumber));
     }
+    
+    /**
+     * 组合条件分页查询实验室
+     * 状态、容量、楼栋楼层、类型等条件都在数据库中过滤（索引见 mysql/laboratory_query_index.sql），
+     * 关键字匹配编号前缀或名称、位置，只作用于其他条件筛选后的行
+     */
+    @Select("<script>" +
+            "SELECT * FROM laboratory " +
+            "<where>" +
+            "<if test='status != null'> AND status = #{status}</if>" +
+            "<if test='minCapacity != null'> AND capacity &gt;= #{minCapacity}</if>" +
+            "<if test='maxCapacity != null'> AND capacity &lt;= #{maxCapacity}</if>" +
+            "<if test='building != null and building != \"\"'> AND building = #{building}</if>" +
+            "<if test='floor != null and floor != \"\"'> AND floor = #{floor}</if>" +
+            "<if test='labType != null and labType != \"\"'> AND lab_type = #{labType}</if>" +
+            "<if test='keyword != null and keyword != \"\"'>" +
+            " AND (lab_number LIKE CONCAT(#{keyword}, '%') OR lab_name LIKE CONCAT('%', #{keyword}, '%')" +
+            " OR location LIKE CONCAT('%', #{keyword}, '%'))" +
+            "</if>" +
+            "</where>" +
+            " ORDER BY create_time DESC, id DESC LIMIT #{offset}, #{limit}" +
+            "</script>")
+    java.util.List<Laboratory> query(@Param("status") Integer status,
+                                     @Param("minCapacity") Integer minCapacity,
+                                     @Param("maxCapacity") Integer maxCapacity,
+                                     @Param("building") String building,
+                                     @Param("floor") String floor,
+                                     @Param("labType") String labType,
+                                     @Param("keyword") String keyword,
+                                     @Param("offset") int offset,
+                                     @Param("limit") int limit);
+    
+    /**
+     * 统计组合条件查询的实验室数量，条件与 query 一致
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM laboratory " +
+            "<where>" +
+            "<if test='status != null'> AND status = #{status}</if>" +
+            "<if test='minCapacity != null'> AND capacity &gt;= #{minCapacity}</if>" +
+            "<if test='maxCapacity != null'> AND capacity &lt;= #{maxCapacity}</if>" +
+            "<if test='building != null and building != \"\"'> AND building = #{building}</if>" +
+            "<if test='floor != null and floor != \"\"'> AND floor = #{floor}</if>" +
+            "<if test='labType != null and labType != \"\"'> AND lab_type = #{labType}</if>" +
+            "<if test='keyword != null and keyword != \"\"'>" +
+            " AND (lab_number LIKE CONCAT(#{keyword}, '%') OR lab_name LIKE CONCAT('%', #{keyword}, '%')" +
+            " OR location LIKE CONCAT('%', #{keyword}, '%'))" +
+            "</if>" +
+            "</where>" +
+            "</script>")
+    long countQuery(@Param("status") Integer status,
+                    @Param("minCapacity") Integer minCapacity,
+                    @Param("maxCapacity") Integer maxCapacity,
+                    @Param("building") String building,
+                    @Param("floor") String floor,
+                    @Param("labType") String labType,
+                    @Param("keyword") String keyword);
 }
@@ -2,12 +2,16 @@ package com.example.shiyanshi.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.shiyanshi.entity.Message;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 消息数据访问层
@@ -103,9 +107,148 @@ public interface MessageMapper extends BaseMapper<Message> {
     @Select("SELECT * FROM message WHERE receiver_id = #{receiverId} AND deleted = 0 ORDER BY create_time DESC LIMIT #{offset}, #{limit}")
     List<Message> findByReceiverIdWithPage(@Param("receiverId") Long receiverId, @Param("offset") int offset, @Param("limit") int limit);
     
+    /**
+     * 游标分页查询接收者的消息列表，按创建时间、ID倒序
+     */
+    @Select("<script>" +
+            "SELECT * FROM message WHERE receiver_id = #{receiverId} AND deleted = 0" +
+            "<if test='cursorTime != null'> AND (create_time &lt; #{cursorTime} OR (create_time = #{cursorTime} AND id &lt; #{cursorId}))</if>" +
+            " ORDER BY create_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Message> scrollByReceiverId(@Param("receiverId") Long receiverId,
+                                     @Param("cursorTime") LocalDateTime cursorTime,
+                                     @Param("cursorId") Long cursorId,
+                                     @Param("limit") int limit);
+    
+    /**
+     * 查询接收者ID大于 afterId 的消息，按ID正序（推送连接断线重连时补发）
+     */
+    @Select("SELECT * FROM message WHERE receiver_id = #{receiverId} AND id > #{afterId} AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<Message> findByReceiverIdAfter(@Param("receiverId") Long receiverId,
+                                        @Param("afterId") Long afterId,
+                                        @Param("limit") int limit);
+    
     /**
      * 根据优先级查询消息列表
      */
     @Select("SELECT * FROM message WHERE receiver_id = #{receiverId} AND priority = #{priority} AND deleted = 0 ORDER BY create_time DESC")
     List<Message> findByReceiverIdAndPriority(@Param("receiverId") Long receiverId, @Param("priority") Integer priority);
+    
+    /**
+     * 批量插入消息（单条多行INSERT），回填自增ID
+     */
+    @Insert("<script>" +
+            "INSERT INTO message (sender_id, sender_name, receiver_id, receiver_name, message_type, title, content, " +
+            "related_id, related_type, is_read, priority, create_time, deleted) VALUES " +
+            "<foreach collection='list' item='m' separator=','>" +
+            "(#{m.senderId}, #{m.senderName}, #{m.receiverId}, #{m.receiverName}, #{m.messageType}, #{m.title}, #{m.content}, " +
+            "#{m.relatedId}, #{m.relatedType}, #{m.isRead}, #{m.priority}, #{m.createTime}, #{m.deleted})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "list.id")
+    int insertBatch(@Param("list") List<Message> messages);
+    
+    /**
+     * 统计相关业务已生成的消息数量
+     */
+    @Select("SELECT COUNT(*) FROM message WHERE related_type = #{relatedType} AND related_id = #{relatedId}")
+    long countByRelated(@Param("relatedId") Long relatedId, @Param("relatedType") String relatedType);
+    
+    /**
+     * 查询相关业务已生成消息的最大接收者ID（广播续传的断点）
+     */
+    @Select("SELECT MAX(receiver_id) FROM message WHERE related_type = #{relatedType} AND related_id = #{relatedId}")
+    Long findMaxReceiverIdByRelated(@Param("relatedId") Long relatedId, @Param("relatedType") String relatedType);
+    
+    /**
+     * 查询接收者的个人消息与广播消息合并结果（读时扩散模式）
+     * 广播在结果中的消息ID为负的广播ID，related_type 为 broadcast
+     *
+     * @param messageType 消息类型，为空时不限；广播属于 system 类型
+     * @param unreadOnly 是否只查未读
+     * @param priority 优先级等于该值，为空时不限
+     * @param minPriority 优先级不低于该值，为空时不限
+     * @param orderByPriority 是否先按优先级倒序
+     * @param cursorTime 游标分页：上一页最后一条的创建时间，为空时不限
+     * @param cursorId 游标分页：上一页最后一条的ID
+     * @param offset 分页偏移，limit为空时不分页
+     */
+    @Select("<script>" +
+            "SELECT * FROM (" +
+            "SELECT id, sender_id, sender_name, receiver_id, receiver_name, message_type, title, content, " +
+            "related_id, related_type, is_read, priority, create_time, read_time, deleted " +
+            "FROM message WHERE receiver_id = #{receiverId} AND deleted = 0" +
+            "<if test='messageType != null'> AND message_type = #{messageType}</if>" +
+            "<if test='unreadOnly'> AND is_read = 0</if>" +
+            "<if test='priority != null'> AND priority = #{priority}</if>" +
+            "<if test='minPriority != null'> AND priority &gt;= #{minPriority}</if>" +
+            "<if test='cursorTime != null'> AND (create_time &lt; #{cursorTime} OR (create_time = #{cursorTime} AND id &lt; #{cursorId}))</if>" +
+            "<if test=\"messageType == null or messageType == 'system'\">" +
+            " UNION ALL " +
+            "SELECT -b.id, 0, b.sender_name, u.id, u.username, 'system', b.title, b.content, " +
+            "b.id, 'broadcast', " +
+            "CASE WHEN b.id &lt;= IFNULL(w.read_upto_id, 0) OR r.read_time IS NOT NULL THEN 1 ELSE 0 END, " +
+            "b.priority, b.create_time, r.read_time, 0 " +
+            "FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{receiverId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{receiverId} " +
+            "LEFT JOIN broadcast_watermark w ON w.user_id = #{receiverId} " +
+            "WHERE b.deleted = 0 AND b.create_time &gt;= u.create_time AND (r.deleted IS NULL OR r.deleted = 0)" +
+            "<if test='unreadOnly'> AND b.id &gt; IFNULL(w.read_upto_id, 0) AND r.read_time IS NULL</if>" +
+            "<if test='priority != null'> AND b.priority = #{priority}</if>" +
+            "<if test='minPriority != null'> AND b.priority &gt;= #{minPriority}</if>" +
+            "<if test='cursorTime != null'> AND (b.create_time &lt; #{cursorTime} OR (b.create_time = #{cursorTime} AND -b.id &lt; #{cursorId}))</if>" +
+            "</if>" +
+            ") t ORDER BY " +
+            "<if test='orderByPriority'>priority DESC, </if>" +
+            "create_time DESC, id DESC" +
+            "<if test='limit != null'> LIMIT #{offset}, #{limit}</if>" +
+            "</script>")
+    List<Message> findMergedByReceiverId(@Param("receiverId") Long receiverId,
+                                         @Param("messageType") String messageType,
+                                         @Param("unreadOnly") boolean unreadOnly,
+                                         @Param("priority") Integer priority,
+                                         @Param("minPriority") Integer minPriority,
+                                         @Param("orderByPriority") boolean orderByPriority,
+                                         @Param("cursorTime") LocalDateTime cursorTime,
+                                         @Param("cursorId") Long cursorId,
+                                         @Param("offset") Integer offset,
+                                         @Param("limit") Integer limit);
+    
+    /**
+     * 统计接收者的未读消息数量（个人消息 + 广播消息，读时扩散模式）
+     *
+     * @param messageType 消息类型，为空时不限；广播属于 system 类型
+     */
+    @Select("<script>" +
+            "SELECT (SELECT COUNT(*) FROM message WHERE receiver_id = #{receiverId} AND is_read = 0 AND deleted = 0" +
+            "<if test='messageType != null'> AND message_type = #{messageType}</if>" +
+            ")" +
+            "<if test=\"messageType == null or messageType == 'system'\">" +
+            " + (SELECT COUNT(*) FROM broadcast_message b " +
+            "JOIN `user` u ON u.id = #{receiverId} " +
+            "LEFT JOIN broadcast_receipt r ON r.broadcast_id = b.id AND r.user_id = #{receiverId} " +
+            "LEFT JOIN broadcast_watermark w ON w.user_id = #{receiverId} " +
+            "WHERE b.deleted = 0 AND b.create_time &gt;= u.create_time " +
+            "AND b.id &gt; IFNULL(w.read_upto_id, 0) " +
+            "AND (r.user_id IS NULL OR (r.read_time IS NULL AND r.deleted = 0)))" +
+            "</if>" +
+            "</script>")
+    int countMergedUnread(@Param("receiverId") Long receiverId, @Param("messageType") String messageType);
+    
+    /**
+     * 按消息类型分组统计接收者的未读个人消息数量
+     */
+    @Select("SELECT message_type AS messageType, COUNT(*) AS cnt FROM message " +
+            "WHERE receiver_id = #{receiverId} AND is_read = 0 AND deleted = 0 GROUP BY message_type")
+    List<Map<String, Object>> countUnreadGroupByType(@Param("receiverId") Long receiverId);
+    
+    /**
+     * 查询给定消息中属于接收者、未读且未删除的消息（只取ID和类型，用于维护未读计数）
+     */
+    @Select("<script>" +
+            "SELECT id, message_type FROM message WHERE receiver_id = #{receiverId} AND is_read = 0 AND deleted = 0 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Message> findUnreadByIds(@Param("ids") List<Long> ids, @Param("receiverId") Long receiverId);
 }
@@ -1,16 +1,26 @@
 package com.example.shiyanshi.mapper;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.example.shiyanshi.entity.Laboratory;
 import com.example.shiyanshi.entity.Reservation;
 import com.example.shiyanshi.entity.User;
 import com.github.yulichang.base.MPJBaseMapper;
 import com.github.yulichang.wrapper.MPJLambdaWrapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 预约记录数据访问层
@@ -60,6 +70,32 @@ public interface ReservationMapper extends MPJBaseMapper<Reservation> {
                         .orderByDesc(Reservation::getCreateTime));
     }
     
+    /**
+     * 游标分页查询预约（带关联信息），按创建时间、ID倒序
+     *
+     * @param userId 用户ID，为空时查询全部
+     * @param cursorTime 上一页最后一条的创建时间，为空表示第一页
+     * @param cursorId 上一页最后一条的ID
+     * @param limit 查询条数
+     */
+    default List<Reservation> scroll(Long userId, LocalDateTime cursorTime, Long cursorId, int limit) {
+        MPJLambdaWrapper<Reservation> wrapper = new MPJLambdaWrapper<Reservation>()
+                .selectAll(Reservation.class)
+                .selectAs(User::getRealName, Reservation::getUserName)
+                .selectAs(Laboratory::getLabName, Reservation::getLabName)
+                .leftJoin(User.class, User::getId, Reservation::getUserId)
+                .leftJoin(Laboratory.class, Laboratory::getId, Reservation::getLabId)
+                .eq(userId != null, Reservation::getUserId, userId);
+        if (cursorTime != null) {
+            wrapper.and(w -> w.lt(Reservation::getCreateTime, cursorTime)
+                    .or(o -> o.eq(Reservation::getCreateTime, cursorTime).lt(Reservation::getId, cursorId)));
+        }
+        wrapper.orderByDesc(Reservation::getCreateTime)
+                .orderByDesc(Reservation::getId)
+                .last("LIMIT " + limit);
+        return selectJoinList(Reservation.class, wrapper);
+    }
+    
     /**
      * 根据实验室ID查询预约
      */
@@ -105,19 +141,97 @@ public interface ReservationMapper extends MPJBaseMapper<Reservation> {
     }
     
     /**
-     * 检查时间冲突
+     * 检查时间冲突：同一实验室同一天与 [startMinute, endMinute) 重叠的有效预约数量
+     * 迁移前未能解析出分钟数的旧预约按时间段文本相同判断
+     * 加锁读：读取最新提交的数据（不受可重复读快照影响），并对命中的索引区间加临键锁，
+     * 其他事务（包括其他节点）在本事务结束前无法插入重叠区间的预约
+     *
+     * @param excludeId 修改预约时排除自身，可为空
      */
-    default int checkTimeConflict(@Param("labId") Long labId, 
-                                  @Param("reserveDate") LocalDate reserveDate, 
-                                  @Param("timeSlot") String timeSlot) {
-        Long count = selectCount(new LambdaQueryWrapper<Reservation>()
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM reservation WHERE lab_id = #{labId} AND reserve_date = #{reserveDate} AND status IN (0, 1)" +
+            " AND ((start_minute &lt; #{endMinute} AND end_minute &gt; #{startMinute})" +
+            " OR (start_minute IS NULL AND time_slot = #{timeSlot}))" +
+            "<if test='excludeId != null'> AND id != #{excludeId}</if>" +
+            " FOR UPDATE" +
+            "</script>")
+    int countOverlapping(@Param("labId") Long labId,
+                         @Param("reserveDate") LocalDate reserveDate,
+                         @Param("startMinute") int startMinute,
+                         @Param("endMinute") int endMinute,
+                         @Param("timeSlot") String timeSlot,
+                         @Param("excludeId") Long excludeId);
+    
+    /**
+     * 查询日期范围内占用时间段的预约（待审核/已通过）
+     * 只取构建占用索引所需的列
+     */
+    default List<Reservation> findActiveSlots(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate) {
+        return selectList(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getLabId, Reservation::getReserveDate, Reservation::getTimeSlot,
+                        Reservation::getTimeSlotId, Reservation::getStartMinute, Reservation::getEndMinute)
+                .between(Reservation::getReserveDate, startDate, endDate)
+                .in(Reservation::getStatus, 0, 1));
+    }
+    
+    /**
+     * 查询日期范围内已通过审核的预约（仅ID、日期、时间段和开始分钟数，用于计算提醒时间）
+     */
+    default List<Reservation> findApprovedBetween(@Param("startDate") LocalDate startDate,
+                                                  @Param("endDate") LocalDate endDate) {
+        return selectList(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getReserveDate, Reservation::getTimeSlot, Reservation::getStartMinute)
+                .between(Reservation::getReserveDate, startDate, endDate)
+                .eq(Reservation::getStatus, 1));
+    }
+    
+    /**
+     * 查询指定实验室在日期范围内占用时间段的预约（待审核/已通过）
+     */
+    default List<Reservation> findActiveSlotsByLab(@Param("labId") Long labId,
+                                                   @Param("startDate") LocalDate startDate,
+                                                   @Param("endDate") LocalDate endDate) {
+        return selectList(new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getLabId, Reservation::getReserveDate, Reservation::getTimeSlot,
+                        Reservation::getTimeSlotId, Reservation::getStartMinute, Reservation::getEndMinute)
                 .eq(Reservation::getLabId, labId)
-                .eq(Reservation::getReserveDate, reserveDate)
-                .eq(Reservation::getTimeSlot, timeSlot)
+                .between(Reservation::getReserveDate, startDate, endDate)
                 .in(Reservation::getStatus, 0, 1));
-        return count != null ? count.intValue() : 0;
     }
     
+    /**
+     * 查询实验室在给定日期中与 [startMinute, endMinute) 重叠的有效预约（待审核/已通过），用于周期预约一次性检查冲突
+     * 与 countOverlapping 相同，为加锁读
+     */
+    @Select("<script>" +
+            "SELECT id, reserve_date FROM reservation WHERE lab_id = #{labId} AND status IN (0, 1)" +
+            " AND reserve_date IN <foreach collection='dates' item='d' open='(' separator=',' close=')'>#{d}</foreach>" +
+            " AND ((start_minute &lt; #{endMinute} AND end_minute &gt; #{startMinute})" +
+            " OR (start_minute IS NULL AND time_slot = #{timeSlot}))" +
+            " FOR UPDATE" +
+            "</script>")
+    List<Reservation> findOverlappingByDates(@Param("labId") Long labId,
+                                             @Param("dates") Collection<LocalDate> dates,
+                                             @Param("startMinute") int startMinute,
+                                             @Param("endMinute") int endMinute,
+                                             @Param("timeSlot") String timeSlot);
+    
+    /**
+     * 批量插入预约（多行INSERT），回填自增ID
+     * 不经过MyBatis-Plus自动填充，创建时间、更新时间需由调用方设置
+     */
+    @Insert("<script>" +
+            "INSERT INTO reservation (user_id, lab_id, reserve_date, time_slot, time_slot_id, start_minute, end_minute, " +
+            "people_num, purpose, experiment_name, equipment, status, create_time, update_time) VALUES " +
+            "<foreach collection='list' item='r' separator=','>" +
+            "(#{r.userId}, #{r.labId}, #{r.reserveDate}, #{r.timeSlot}, #{r.timeSlotId}, #{r.startMinute}, #{r.endMinute}, " +
+            "#{r.peopleNum}, #{r.purpose}, #{r.experimentName}, #{r.equipment}, #{r.status}, #{r.createTime}, #{r.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "list.id")
+    int insertBatch(@Param("list") List<Reservation> reservations);
+    
     /**
      * 审核预约
      */
@@ -132,6 +246,35 @@ public interface ReservationMapper extends MPJBaseMapper<Reservation> {
         return updateById(reservation);
     }
     
+    /**
+     * 批量查询预约（带实验室名称），用于批量审核前一次性校验状态
+     */
+    default List<Reservation> findByIdsWithLab(@Param("ids") Collection<Long> ids) {
+        return selectJoinList(Reservation.class,
+                new MPJLambdaWrapper<Reservation>()
+                        .selectAll(Reservation.class)
+                        .selectAs(Laboratory::getLabName, Reservation::getLabName)
+                        .leftJoin(Laboratory.class, Laboratory::getId, Reservation::getLabId)
+                        .in(Reservation::getId, ids));
+    }
+    
+    /**
+     * 批量审核预约：一条 UPDATE ... WHERE id IN (...) AND status = 0，只更新仍为待审核的预约
+     *
+     * @return 实际更新的行数
+     */
+    default int approveBatch(@Param("ids") Collection<Long> ids, @Param("status") Integer status,
+                             @Param("approver") String approver, @Param("approveComment") String approveComment) {
+        Reservation reservation = new Reservation();
+        reservation.setStatus(status);
+        reservation.setApprover(approver);
+        reservation.setApproveComment(approveComment);
+        reservation.setApproveTime(java.time.LocalDateTime.now());
+        return update(reservation, new LambdaUpdateWrapper<Reservation>()
+                .in(Reservation::getId, ids)
+                .eq(Reservation::getStatus, 0));
+    }
+    
     /**
      * 取消预约
      */
@@ -156,42 +299,182 @@ public interface ReservationMapper extends MPJBaseMapper<Reservation> {
     }
     
     /**
-     * 搜索预约
+     * 搜索预约（分页）
+     * 关键字走 ngram 全文索引（见 mysql/reservation_fulltext.sql）：分别命中实验名称、用户姓名、实验室名称，
+     * 合并出预约ID后再关联；matchKeyword 为空时（关键字过短）按 LIKE 匹配。
+     * 状态、实验室、日期条件都在SQL中过滤
      */
-    default List<Reservation> search(@Param("keyword") String keyword, 
-                                     @Param("status") Integer status,
-                                     @Param("startDate") LocalDate startDate,
-                                     @Param("endDate") LocalDate endDate) {
-        MPJLambdaWrapper<Reservation> wrapper = new MPJLambdaWrapper<Reservation>()
-                .selectAll(Reservation.class)
-                .selectAs(User::getRealName, Reservation::getUserName)
-                .selectAs(Laboratory::getLabName, Reservation::getLabName)
-                .leftJoin(User.class, User::getId, Reservation::getUserId)
-                .leftJoin(Laboratory.class, Laboratory::getId, Reservation::getLabId);
-        
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            wrapper.and(w -> w
-                    .like(User::getRealName, keyword)
-                    .or().like(Laboratory::getLabName, keyword)
-                    .or().like(Reservation::getExperimentName, keyword));
-        }
-        
-        if (status != null) {
-            wrapper.eq(Reservation::getStatus, status);
-        }
-        
-        if (startDate != null) {
-            wrapper.ge(Reservation::getReserveDate, startDate);
-        }
-        
-        if (endDate != null) {
-            wrapper.le(Reservation::getReserveDate, endDate);
-        }
-        
-        wrapper.orderByDesc(Reservation::getCreateTime);
-        
-        return selectJoinList(Reservation.class, wrapper);
-    }
+    @Select("<script>" +
+            "SELECT r.*, u.real_name AS user_name, l.lab_name AS lab_name " +
+            "FROM reservation r " +
+            "<if test='matchKeyword != null'>" +
+            "JOIN (" + SEARCH_MATCH_IDS + ") m ON m.id = r.id " +
+            "</if>" +
+            "LEFT JOIN `user` u ON u.id = r.user_id " +
+            "LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            SEARCH_WHERE +
+            " ORDER BY r.create_time DESC, r.id DESC LIMIT #{offset}, #{limit}" +
+            "</script>")
+    List<Reservation> search(@Param("keyword") String keyword,
+                             @Param("matchKeyword") String matchKeyword,
+                             @Param("status") Integer status,
+                             @Param("labId") Long labId,
+                             @Param("startDate") LocalDate startDate,
+                             @Param("endDate") LocalDate endDate,
+                             @Param("offset") long offset,
+                             @Param("limit") int limit);
+    
+    /**
+     * 统计搜索结果数量，条件与 search 一致
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM reservation r " +
+            "<if test='matchKeyword != null'>" +
+            "JOIN (" + SEARCH_MATCH_IDS + ") m ON m.id = r.id " +
+            "</if>" +
+            "<if test='matchKeyword == null and keyword != null'>" +
+            "LEFT JOIN `user` u ON u.id = r.user_id " +
+            "LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            "</if>" +
+            SEARCH_WHERE +
+            "</script>")
+    long countSearch(@Param("keyword") String keyword,
+                     @Param("matchKeyword") String matchKeyword,
+                     @Param("status") Integer status,
+                     @Param("labId") Long labId,
+                     @Param("startDate") LocalDate startDate,
+                     @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 按预约日期范围查询（带用户姓名、实验室名称），走 idx_reserve_date
+     */
+    @Select("SELECT r.*, u.real_name AS user_name, l.lab_name AS lab_name " +
+            "FROM reservation r " +
+            "LEFT JOIN `user` u ON u.id = r.user_id " +
+            "LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            "WHERE r.reserve_date BETWEEN #{startDate} AND #{endDate} " +
+            "ORDER BY r.create_time DESC, r.id DESC")
+    List<Reservation> findByDateRange(@Param("startDate") LocalDate startDate,
+                                      @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 全文索引命中的预约ID：实验名称、用户姓名、实验室名称三路合并
+     */
+    String SEARCH_MATCH_IDS =
+            "SELECT id FROM reservation WHERE MATCH(experiment_name) AGAINST(#{matchKeyword} IN BOOLEAN MODE)" +
+            " UNION SELECT ru.id FROM reservation ru JOIN `user` mu ON mu.id = ru.user_id" +
+            " WHERE MATCH(mu.real_name) AGAINST(#{matchKeyword} IN BOOLEAN MODE)" +
+            " UNION SELECT rl.id FROM reservation rl JOIN laboratory ml ON ml.id = rl.lab_id" +
+            " WHERE MATCH(ml.lab_name) AGAINST(#{matchKeyword} IN BOOLEAN MODE)";
+    
+    /**
+     * 搜索的结构化条件
+     */
+    String SEARCH_WHERE =
+            "<where>" +
+            "<if test='matchKeyword == null and keyword != null'>" +
+            " AND (u.real_name LIKE CONCAT('%', #{keyword}, '%') OR l.lab_name LIKE CONCAT('%', #{keyword}, '%')" +
+            " OR r.experiment_name LIKE CONCAT('%', #{keyword}, '%'))" +
+            "</if>" +
+            "<if test='status != null'> AND r.status = #{status}</if>" +
+            "<if test='labId != null'> AND r.lab_id = #{labId}</if>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>";
+    
+    /**
+     * 流式查询导出数据（带关联信息）
+     * 结果逐行回调给handler，不在内存中构建完整列表；
+     * fetchSize = Integer.MIN_VALUE 让MySQL驱动以流式结果集逐行返回
+     */
+    @Select("<script>" +
+            "SELECT r.*, u.real_name AS user_name, l.lab_name AS lab_name " +
+            "FROM reservation r " +
+            "LEFT JOIN `user` u ON u.id = r.user_id " +
+            "LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            "<where>" +
+            "<if test='status != null'> AND r.status = #{status}</if>" +
+            "<if test='labId != null'> AND r.lab_id = #{labId}</if>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " ORDER BY r.create_time DESC" +
+            "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Reservation.class)
+    void streamForExport(@Param("status") Integer status,
+                         @Param("labId") Long labId,
+                         @Param("startDate") LocalDate startDate,
+                         @Param("endDate") LocalDate endDate,
+                         ResultHandler<Reservation> handler);
+    
+    /**
+     * 按状态统计预约数量
+     */
+    @Select("<script>" +
+            "SELECT r.status AS status, COUNT(*) AS total FROM reservation r " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.status" +
+            "</script>")
+    List<Map<String, Object>> countGroupByStatus(@Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 按状态统计用户的预约数量（一次扫描 idx_user_id）
+     */
+    @Select("SELECT status, COUNT(*) AS total FROM reservation WHERE user_id = #{userId} GROUP BY status")
+    List<Map<String, Object>> countGroupByStatusForUser(@Param("userId") Long userId);
+    
+    /**
+     * 按实验室统计各状态预约数量和使用人次（已通过、已完成的预约）
+     */
+    @Select("<script>" +
+            "SELECT r.lab_id AS labId, MAX(l.lab_name) AS labName, COUNT(*) AS total, " +
+            "SUM(r.status = 0) AS pending, SUM(r.status = 1) AS approved, SUM(r.status = 2) AS rejected, " +
+            "SUM(r.status = 3) AS cancelled, SUM(r.status = 4) AS completed, " +
+            "IFNULL(SUM(CASE WHEN r.status IN (1, 4) THEN r.people_num ELSE 0 END), 0) AS people " +
+            "FROM reservation r LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.lab_id ORDER BY total DESC" +
+            "</script>")
+    List<Map<String, Object>> statGroupByLab(@Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 按时间段和星期统计占用（待审核、已通过、已完成）的预约数量，weekday 0-6 对应周一至周日
+     */
+    @Select("<script>" +
+            "SELECT r.time_slot AS timeSlot, WEEKDAY(r.reserve_date) AS weekday, COUNT(*) AS total " +
+            "FROM reservation r WHERE r.status IN (0, 1, 4)" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            " GROUP BY r.time_slot, WEEKDAY(r.reserve_date)" +
+            "</script>")
+    List<Map<String, Object>> statGroupBySlot(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+    
+    /**
+     * 按预约日期统计各状态预约数量
+     */
+    @Select("<script>" +
+            "SELECT r.reserve_date AS reserveDate, COUNT(*) AS total, " +
+            "SUM(r.status = 0) AS pending, SUM(r.status = 1) AS approved, SUM(r.status = 2) AS rejected, " +
+            "SUM(r.status = 3) AS cancelled, SUM(r.status = 4) AS completed " +
+            "FROM reservation r " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.reserve_date ORDER BY r.reserve_date" +
+            "</script>")
+    List<Map<String, Object>> statGroupByDay(@Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
     
     /**
      * 统计用户预约次数
@@ -0,0 +1,197 @@
+package com.example.shiyanshi.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预约统计汇总表数据访问层
+ * reservation_daily_rollup：按 (实验室, 日期, 时间段, 状态) 汇总
+ * reservation_user_rollup：按 (用户, 状态) 汇总
+ * 查询方法返回的列与 ReservationMapper 中对应的分组统计方法一致，可直接替换使用
+ */
+@Mapper
+public interface ReservationRollupMapper {
+
+    /**
+     * 增量更新每日汇总
+     */
+    @Insert("INSERT INTO reservation_daily_rollup (lab_id, reserve_date, time_slot, status, reservation_count, people_count) " +
+            "VALUES (#{labId}, #{reserveDate}, #{timeSlot}, #{status}, #{countDelta}, #{peopleDelta}) " +
+            "ON DUPLICATE KEY UPDATE reservation_count = reservation_count + VALUES(reservation_count), " +
+            "people_count = people_count + VALUES(people_count)")
+    int incrementDaily(@Param("labId") Long labId,
+                       @Param("reserveDate") LocalDate reserveDate,
+                       @Param("timeSlot") String timeSlot,
+                       @Param("status") Integer status,
+                       @Param("countDelta") int countDelta,
+                       @Param("peopleDelta") int peopleDelta);
+
+    /**
+     * 增量更新用户汇总
+     */
+    @Insert("INSERT INTO reservation_user_rollup (user_id, status, reservation_count) " +
+            "VALUES (#{userId}, #{status}, #{countDelta}) " +
+            "ON DUPLICATE KEY UPDATE reservation_count = reservation_count + VALUES(reservation_count)")
+    int incrementUser(@Param("userId") Long userId,
+                      @Param("status") Integer status,
+                      @Param("countDelta") int countDelta);
+
+    /**
+     * 批量增量更新每日汇总，rows 每项包含 labId、reserveDate、timeSlot、status、countDelta、peopleDelta
+     */
+    @Insert("<script>" +
+            "INSERT INTO reservation_daily_rollup (lab_id, reserve_date, time_slot, status, reservation_count, people_count) VALUES " +
+            "<foreach collection='rows' item='row' separator=','>" +
+            "(#{row.labId}, #{row.reserveDate}, #{row.timeSlot}, #{row.status}, #{row.countDelta}, #{row.peopleDelta})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE reservation_count = reservation_count + VALUES(reservation_count), " +
+            "people_count = people_count + VALUES(people_count)" +
+            "</script>")
+    int incrementDailyBatch(@Param("rows") List<Map<String, Object>> rows);
+
+    /**
+     * 批量增量更新用户汇总，rows 每项包含 userId、status、countDelta
+     */
+    @Insert("<script>" +
+            "INSERT INTO reservation_user_rollup (user_id, status, reservation_count) VALUES " +
+            "<foreach collection='rows' item='row' separator=','>" +
+            "(#{row.userId}, #{row.status}, #{row.countDelta})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE reservation_count = reservation_count + VALUES(reservation_count)" +
+            "</script>")
+    int incrementUserBatch(@Param("rows") List<Map<String, Object>> rows);
+
+    /**
+     * 检查汇总表是否存在（表不存在时抛出异常）
+     */
+    @Select("SELECT COUNT(*) FROM (SELECT 1 FROM reservation_daily_rollup LIMIT 1) d, " +
+            "(SELECT 1 FROM reservation_user_rollup LIMIT 1) u")
+    int probeTables();
+
+    /**
+     * 预约表和每日汇总表中最早的日期，分段重建的起点（覆盖已没有预约的汇总行）
+     */
+    @Select("SELECT MIN(d) FROM (SELECT MIN(reserve_date) AS d FROM reservation " +
+            "UNION ALL SELECT MIN(reserve_date) FROM reservation_daily_rollup) t")
+    LocalDate findMinRebuildDate();
+
+    /**
+     * 预约表和每日汇总表中最晚的日期，分段重建的终点
+     */
+    @Select("SELECT MAX(d) FROM (SELECT MAX(reserve_date) AS d FROM reservation " +
+            "UNION ALL SELECT MAX(reserve_date) FROM reservation_daily_rollup) t")
+    LocalDate findMaxRebuildDate();
+
+    /**
+     * 预约表和用户汇总表中最大的用户ID，分段重建的终点
+     */
+    @Select("SELECT MAX(id) FROM (SELECT MAX(user_id) AS id FROM reservation " +
+            "UNION ALL SELECT MAX(user_id) FROM reservation_user_rollup) t")
+    Long findMaxRebuildUserId();
+
+    @Delete("DELETE FROM reservation_daily_rollup WHERE reserve_date BETWEEN #{startDate} AND #{endDate}")
+    int clearDailyRange(@Param("startDate") LocalDate startDate,
+                        @Param("endDate") LocalDate endDate);
+
+    /**
+     * 从预约表重建日期范围内的每日汇总
+     */
+    @Insert("INSERT INTO reservation_daily_rollup (lab_id, reserve_date, time_slot, status, reservation_count, people_count) " +
+            "SELECT lab_id, reserve_date, time_slot, status, COUNT(*), IFNULL(SUM(people_num), 0) " +
+            "FROM reservation WHERE reserve_date BETWEEN #{startDate} AND #{endDate} " +
+            "GROUP BY lab_id, reserve_date, time_slot, status")
+    int rebuildDailyRange(@Param("startDate") LocalDate startDate,
+                          @Param("endDate") LocalDate endDate);
+
+    @Delete("DELETE FROM reservation_user_rollup WHERE user_id BETWEEN #{fromId} AND #{toId}")
+    int clearUserRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 从预约表重建用户ID范围内的用户汇总
+     */
+    @Insert("INSERT INTO reservation_user_rollup (user_id, status, reservation_count) " +
+            "SELECT user_id, status, COUNT(*) FROM reservation WHERE user_id BETWEEN #{fromId} AND #{toId} " +
+            "GROUP BY user_id, status")
+    int rebuildUserRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 查询用户各状态预约数量
+     */
+    @Select("SELECT status, reservation_count AS total FROM reservation_user_rollup WHERE user_id = #{userId}")
+    List<Map<String, Object>> findUserCounts(@Param("userId") Long userId);
+
+    /**
+     * 按状态统计预约数量
+     */
+    @Select("<script>" +
+            "SELECT r.status AS status, SUM(r.reservation_count) AS total FROM reservation_daily_rollup r " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.status" +
+            "</script>")
+    List<Map<String, Object>> countGroupByStatus(@Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按实验室统计各状态预约数量和使用人次（已通过、已完成的预约）
+     */
+    @Select("<script>" +
+            "SELECT r.lab_id AS labId, MAX(l.lab_name) AS labName, SUM(r.reservation_count) AS total, " +
+            "SUM(CASE WHEN r.status = 0 THEN r.reservation_count ELSE 0 END) AS pending, " +
+            "SUM(CASE WHEN r.status = 1 THEN r.reservation_count ELSE 0 END) AS approved, " +
+            "SUM(CASE WHEN r.status = 2 THEN r.reservation_count ELSE 0 END) AS rejected, " +
+            "SUM(CASE WHEN r.status = 3 THEN r.reservation_count ELSE 0 END) AS cancelled, " +
+            "SUM(CASE WHEN r.status = 4 THEN r.reservation_count ELSE 0 END) AS completed, " +
+            "SUM(CASE WHEN r.status IN (1, 4) THEN r.people_count ELSE 0 END) AS people " +
+            "FROM reservation_daily_rollup r LEFT JOIN laboratory l ON l.id = r.lab_id " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.lab_id HAVING total &gt; 0 ORDER BY total DESC" +
+            "</script>")
+    List<Map<String, Object>> statGroupByLab(@Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按时间段和星期统计占用（待审核、已通过、已完成）的预约数量，weekday 0-6 对应周一至周日
+     */
+    @Select("<script>" +
+            "SELECT r.time_slot AS timeSlot, WEEKDAY(r.reserve_date) AS weekday, SUM(r.reservation_count) AS total " +
+            "FROM reservation_daily_rollup r WHERE r.status IN (0, 1, 4)" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            " GROUP BY r.time_slot, WEEKDAY(r.reserve_date) HAVING total &gt; 0" +
+            "</script>")
+    List<Map<String, Object>> statGroupBySlot(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按预约日期统计各状态预约数量
+     */
+    @Select("<script>" +
+            "SELECT r.reserve_date AS reserveDate, SUM(r.reservation_count) AS total, " +
+            "SUM(CASE WHEN r.status = 0 THEN r.reservation_count ELSE 0 END) AS pending, " +
+            "SUM(CASE WHEN r.status = 1 THEN r.reservation_count ELSE 0 END) AS approved, " +
+            "SUM(CASE WHEN r.status = 2 THEN r.reservation_count ELSE 0 END) AS rejected, " +
+            "SUM(CASE WHEN r.status = 3 THEN r.reservation_count ELSE 0 END) AS cancelled, " +
+            "SUM(CASE WHEN r.status = 4 THEN r.reservation_count ELSE 0 END) AS completed " +
+            "FROM reservation_daily_rollup r " +
+            "<where>" +
+            "<if test='startDate != null'> AND r.reserve_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND r.reserve_date &lt;= #{endDate}</if>" +
+            "</where>" +
+            " GROUP BY r.reserve_date HAVING total &gt; 0 ORDER BY r.reserve_date" +
+            "</script>")
+    List<Map<String, Object>> statGroupByDay(@Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+}
@@ -44,6 +44,36 @@ public interface UserMapper extends BaseMapper<User> {
                 .orderByDesc(User::getCreateTime));
     }
     
+    /**
+     * 游标分页查询用户，按创建时间、ID倒序
+     *
+     * @param cursorTime 上一页最后一条的创建时间，为空表示第一页
+     * @param cursorId 上一页最后一条的ID
+     */
+    default java.util.List<User> scroll(java.time.LocalDateTime cursorTime, Long cursorId, int limit) {
+        com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<User> wrapper =
+                new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<>();
+        if (cursorTime != null) {
+            wrapper.and(w -> w.lt(User::getCreateTime, cursorTime)
+                    .or(o -> o.eq(User::getCreateTime, cursorTime).lt(User::getId, cursorId)));
+        }
+        wrapper.orderByDesc(User::getCreateTime)
+                .orderByDesc(User::getId)
+                .last("LIMIT " + limit);
+        return selectList(wrapper);
+    }
+    
+    /**
+     * 按ID顺序分页查询用户ID和用户名（键集分页，用于批量广播）
+     */
+    default java.util.List<User> findIdAndUsernameAfter(Long afterId, int limit) {
+        return selectList(new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<User>()
+                .select(User::getId, User::getUsername)
+                .gt(User::getId, afterId)
+                .orderByAsc(User::getId)
+                .last("LIMIT " + limit));
+    }
+    
     /**
      * 根据用户类型查询
      */
@@ -0,0 +1,203 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.Laboratory;
+import com.example.shiyanshi.entity.TimeSlot;
+import com.example.shiyanshi.util.TimeRangeUtil;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 空闲实验室搜索服务
+ *
+ * 一次调用返回日期范围内满足人数、设备要求的空闲 (实验室, 日期, 时间段) 组合：
+ * 实验室和时间段来自基础数据缓存，占用情况一次性从占用索引批量读取（见 OccupancyIndexService），
+ * 不再按实验室、时间段逐个查询冲突。
+ *
+ * 排序：偏好时间段优先，其次日期早的优先，再次容量与人数最接近的优先，最后按时间段顺序。
+ */
+@Service
+public class AvailabilitySearchService {
+
+    /**
+     * 单次搜索最大日期跨度（天）
+     */
+    private static final int MAX_RANGE_DAYS = 31;
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 200;
+
+    @Autowired
+    private LaboratoryService laboratoryService;
+
+    @Autowired
+    private TimeSlotService timeSlotService;
+
+    @Autowired
+    private OccupancyIndexService occupancyIndexService;
+
+    /**
+     * 搜索空闲实验室
+     *
+     * @param startDate 开始日期
+     * @param endDate 结束日期（可选，默认与开始日期相同）
+     * @param peopleNum 预约人数（可选），只返回容量不小于该人数的实验室
+     * @param equipment 设备关键字（可选），多个用逗号或空格分隔，实验室设备清单需包含全部关键字
+     * @param preferredSlotIds 偏好的时间段ID（可选），排序靠前但不排除其他时间段
+     * @param limit 最多返回条数，默认20，最大200
+     */
+    public List<Candidate> search(LocalDate startDate, LocalDate endDate, Integer peopleNum, String equipment,
+                                  List<Long> preferredSlotIds, Integer limit) {
+        if (startDate == null) {
+            throw new RuntimeException("开始日期不能为空");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate start = startDate.isBefore(today) ? today : startDate;
+        LocalDate end = endDate != null ? endDate : startDate;
+        if (end.isBefore(start)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS) {
+            throw new RuntimeException("日期范围不能超过" + MAX_RANGE_DAYS + "天");
+        }
+        int max = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        int people = peopleNum != null ? peopleNum : 0;
+        List<String> keywords = splitKeywords(equipment);
+        Set<Long> preferred = preferredSlotIds != null ? new HashSet<>(preferredSlotIds) : Collections.emptySet();
+
+        List<Laboratory> labs = new ArrayList<>();
+        Set<Long> labIds = new HashSet<>();
+        for (Laboratory lab : laboratoryService.findByStatus(1)) {
+            if (lab.getCapacity() != null && lab.getCapacity() >= people && hasEquipment(lab, keywords)) {
+                labs.add(lab);
+                labIds.add(lab.getId());
+            }
+        }
+        List<TimeSlot> slots = new ArrayList<>();
+        for (TimeSlot slot : timeSlotService.findEnabled()) {
+            if (occupancyIndexService.overlapMask(slot) != 0L) {
+                slots.add(slot);
+            }
+        }
+        if (labs.isEmpty() || slots.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Map<LocalDate, Long>> occupied = occupancyIndexService.occupiedBits(labIds, start, end);
+        LocalTime now = LocalTime.now();
+        int nowMinute = now.getHour() * 60 + now.getMinute();
+        List<Candidate> candidates = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            for (TimeSlot slot : slots) {
+                if (date.equals(today) && hasStarted(slot, nowMinute)) {
+                    continue;
+                }
+                long mask = occupancyIndexService.overlapMask(slot);
+                for (Laboratory lab : labs) {
+                    long cell = occupied.getOrDefault(lab.getId(), Collections.emptyMap()).getOrDefault(date, 0L);
+                    if ((cell & mask) == 0) {
+                        candidates.add(new Candidate(lab, date, slot, preferred.contains(slot.getId()),
+                                lab.getCapacity() - people));
+                    }
+                }
+            }
+        }
+
+        candidates.sort(Comparator.comparing(Candidate::isPreferred).reversed()
+                .thenComparing(Candidate::getReserveDate)
+                .thenComparingInt(Candidate::getSpareCapacity)
+                .thenComparing(Candidate::getSortOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Candidate::getLabId));
+        return candidates.size() > max ? new ArrayList<>(candidates.subList(0, max)) : candidates;
+    }
+
+    private static List<String> splitKeywords(String equipment) {
+        List<String> keywords = new ArrayList<>();
+        if (equipment != null) {
+            for (String keyword : equipment.split("[,，\\s]+")) {
+                if (!keyword.isEmpty()) {
+                    keywords.add(keyword.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return keywords;
+    }
+
+    private static boolean hasEquipment(Laboratory lab, List<String> keywords) {
+        if (keywords.isEmpty()) {
+            return true;
+        }
+        if (lab.getEquipment() == null) {
+            return false;
+        }
+        String text = lab.getEquipment().toLowerCase(Locale.ROOT);
+        for (String keyword : keywords) {
+            if (!text.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 当天已开始的时间段不再返回，时间格式无法解析时保留
+     */
+    private static boolean hasStarted(TimeSlot slot, int nowMinute) {
+        Integer startMinute = TimeRangeUtil.toMinute(slot.getStartTime());
+        return startMinute != null && startMinute <= nowMinute;
+    }
+
+    /**
+     * 空闲候选
+     */
+    @Data
+    public static class Candidate {
+        private Long labId;
+        private String labName;
+        private String labNumber;
+        private String location;
+        private Integer capacity;
+        private LocalDate reserveDate;
+        private Long timeSlotId;
+        private String slotName;
+
+        /**
+         * 时间段文本，与创建预约时的 timeSlot 格式一致，如 08:00-10:00
+         */
+        private String timeSlot;
+        private Integer sortOrder;
+        private boolean preferred;
+
+        /**
+         * 容量减去预约人数
+         */
+        private int spareCapacity;
+
+        public Candidate(Laboratory lab, LocalDate reserveDate, TimeSlot slot, boolean preferred, int spareCapacity) {
+            this.labId = lab.getId();
+            this.labName = lab.getLabName();
+            this.labNumber = lab.getLabNumber();
+            this.location = lab.getLocation();
+            this.capacity = lab.getCapacity();
+            this.reserveDate = reserveDate;
+            this.timeSlotId = slot.getId();
+            this.slotName = slot.getSlotName();
+            this.timeSlot = slot.getStartTime() + "-" + slot.getEndTime();
+            this.sortOrder = slot.getSortOrder();
+            this.preferred = preferred;
+            this.spareCapacity = spareCapacity;
+        }
+    }
+}
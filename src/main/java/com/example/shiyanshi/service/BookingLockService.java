@@ -0,0 +1,220 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 预约锁服务
+ * 预约同一时间段的请求串行执行，抢不到锁的请求立即失败，不在数据库上排队。
+ * 锁的粒度是(实验室, 日期, 时间段序号)，同一实验室同一天不同时间段的预约互不阻塞：
+ * - 区间与某个时间段完全一致：按序号升序锁住与该区间重叠的所有时间段（时间段之间也可能重叠）
+ * - 自定义区间或占用索引未就绪：锁整天，与当天所有按时间段加锁的请求互斥
+ * - local模式：进程内分段锁。每天一个读写锁（按时间段加锁时持读锁，锁整天时持写锁），每个时间段一个互斥锁
+ * - redis模式：在进程内锁之外再加Redis锁（SET NX PX + 校验token后删除），用于多节点部署；
+ *   自定义区间同时锁整天和与之重叠的时间段
+ * 锁在当前事务结束（提交或回滚）后释放，必须在@Transactional方法中调用。
+ * local模式下锁内的冲突检查由占用索引直接回答；redis模式下位图空闲时使用加锁读（SELECT ... FOR UPDATE），
+ * 跨节点的并发插入由数据库临键锁阻止；
+ * 完全相同的时间段另由数据库唯一索引 uk_active_slot 兜底（见 mysql/reservation_active_slot_unique.sql）。
+ */
+@Slf4j
+@Service
+public class BookingLockService {
+
+    private static final String LOCK_KEY_PREFIX = "booking:lock:";
+
+    private static final String DAY_BUSY_MESSAGE = "该实验室当天正在被其他用户预约，请稍后重试";
+
+    private static final String SLOT_BUSY_MESSAGE = "该时间段正在被其他用户预约，请稍后重试";
+
+    /**
+     * 仅当value与加锁时的token一致才删除，避免误删其他请求的锁
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private OccupancyIndexService occupancyIndexService;
+
+    /**
+     * 锁模式：local 或 redis
+     */
+    @Value("${booking.lock.mode:local}")
+    private String mode;
+
+    /**
+     * 进程内分段锁数量（整天的读写锁和时间段锁各一组）
+     */
+    @Value("${booking.lock.stripes:1024}")
+    private int stripeCount;
+
+    /**
+     * 获取锁的最长等待时间（毫秒），用于吸收不同键落到同一分段上的短暂竞争
+     */
+    @Value("${booking.lock.wait-millis:50}")
+    private long waitMillis;
+
+    /**
+     * Redis锁过期时间（秒），防止节点宕机后锁无法释放
+     */
+    @Value("${booking.lock.redis-ttl-seconds:10}")
+    private long redisTtlSeconds;
+
+    private ReentrantReadWriteLock[] dayStripes;
+
+    private ReentrantLock[] slotStripes;
+
+    @PostConstruct
+    public void init() {
+        int count = Math.max(stripeCount, 1);
+        dayStripes = new ReentrantReadWriteLock[count];
+        slotStripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            dayStripes[i] = new ReentrantReadWriteLock();
+            slotStripes[i] = new ReentrantLock();
+        }
+        log.info("预约锁初始化完成：mode={}, stripes={}", mode, count);
+    }
+
+    /**
+     * 获取预约锁，获取失败抛出异常；锁在当前事务结束后自动释放
+     *
+     * @param startMinute 预约开始分钟数
+     * @param endMinute 预约结束分钟数
+     */
+    public void lock(Long labId, LocalDate date, int startMinute, int endMinute) {
+        String dayKey = labId + ":" + date;
+        List<Integer> slots = occupancyIndexService.overlappingSlots(startMinute, endMinute);
+        boolean perSlot = slots != null && !slots.isEmpty() && occupancyIndexService.isSlotRange(startMinute, endMinute);
+
+        List<Lock> localLocks = new ArrayList<>();
+        try {
+            ReentrantReadWriteLock dayLock = dayStripes[stripeOf(dayKey, dayStripes.length)];
+            acquire(perSlot ? dayLock.readLock() : dayLock.writeLock(), DAY_BUSY_MESSAGE, localLocks);
+            if (perSlot) {
+                // 按分段下标升序加锁，多个请求锁住重叠的时间段集合时不会互相等待
+                TreeSet<Integer> indexes = new TreeSet<>();
+                for (Integer slot : slots) {
+                    indexes.add(stripeOf(dayKey + ":" + slot, slotStripes.length));
+                }
+                for (Integer index : indexes) {
+                    acquire(slotStripes[index], SLOT_BUSY_MESSAGE, localLocks);
+                }
+            }
+        } catch (RuntimeException e) {
+            releaseLocal(localLocks);
+            throw e;
+        }
+
+        Map<String, String> redisTokens = new LinkedHashMap<>();
+        if ("redis".equalsIgnoreCase(mode)) {
+            List<String> keys = new ArrayList<>();
+            if (!perSlot) {
+                keys.add(dayKey);
+            }
+            if (slots != null) {
+                for (Integer slot : slots) {
+                    keys.add(dayKey + ":" + slot);
+                }
+            }
+            try {
+                for (String key : keys) {
+                    String token = acquireRedisLock(key, key.equals(dayKey) ? DAY_BUSY_MESSAGE : SLOT_BUSY_MESSAGE);
+                    if (token != null) {
+                        redisTokens.put(key, token);
+                    }
+                }
+            } catch (RuntimeException e) {
+                releaseRedis(redisTokens);
+                releaseLocal(localLocks);
+                throw e;
+            }
+        }
+
+        TransactionUtil.afterCompletion(() -> {
+            releaseRedis(redisTokens);
+            releaseLocal(localLocks);
+        });
+    }
+
+    private void acquire(Lock lock, String busyMessage, List<Lock> acquired) {
+        boolean locked;
+        try {
+            locked = lock.tryLock(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            locked = false;
+        }
+        if (!locked) {
+            throw new RuntimeException(busyMessage);
+        }
+        acquired.add(lock);
+    }
+
+    private static void releaseLocal(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private String acquireRedisLock(String key, String busyMessage) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY_PREFIX + key, token, Duration.ofSeconds(redisTtlSeconds));
+        } catch (Exception e) {
+            // Redis不可用时仅依赖进程内锁和数据库唯一索引
+            log.warn("获取Redis预约锁失败，降级为进程内锁: key={}", key, e);
+            return null;
+        }
+        if (!Boolean.TRUE.equals(acquired)) {
+            throw new RuntimeException(busyMessage);
+        }
+        return token;
+    }
+
+    private void releaseRedis(Map<String, String> tokens) {
+        tokens.forEach(this::releaseRedisLock);
+    }
+
+    private void releaseRedisLock(String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LOCK_KEY_PREFIX + key), token);
+        } catch (Exception e) {
+            log.warn("释放Redis预约锁失败，将等待过期: key={}", key, e);
+        }
+    }
+
+    private static int stripeOf(String key, int length) {
+        return Math.floorMod(spread(key.hashCode()), length);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.shiyanshi.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.example.shiyanshi.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 基础数据（实验室、时间段）两级缓存
+ *
+ * - 一级：进程内缓存，命中时不访问Redis和数据库
+ * - 二级：Redis，键中带命名空间版本号 catalog:{命名空间}:{版本}:{名称}，失效时版本号加一，旧键等待过期
+ * - 数据变更提交后通过 catalog:invalidate 频道通知所有节点清除一级缓存；消息丢失时由一级缓存的过期时间兜底
+ * - 每个缓存条目附带内容摘要作为ETag，列表接口据此返回304
+ * - 返回的列表为共享对象，调用方不得修改
+ */
+@Slf4j
+@Service
+public class CatalogCacheService implements MessageListener {
+
+    public static final String NS_LABORATORY = "lab";
+    public static final String NS_TIME_SLOT = "timeslot";
+
+    private static final String CHANNEL = "catalog:invalidate";
+    private static final String KEY_PREFIX = "catalog:";
+    private static final String VERSION_KEY_PREFIX = "catalog:version:";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Value("${catalog.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 一级缓存过期时间（秒）
+     */
+    @Value("${catalog.cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    /**
+     * 二级缓存过期时间（秒）
+     */
+    @Value("${catalog.cache.redis-ttl-seconds:3600}")
+    private long redisTtlSeconds;
+
+    private final Map<String, CachedList<?>> localCache = new ConcurrentHashMap<>();
+
+    /**
+     * 各命名空间的本地失效计数：加载开始后发生过失效的结果不写入一级缓存，避免旧数据覆盖
+     */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 各命名空间的失效监听器，本节点提交变更或收到其他节点的失效通知时调用
+     */
+    private final Map<String, List<Runnable>> invalidationListeners = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 读取缓存的列表，一级、二级都未命中时调用loader从数据库加载
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CachedList<T> getList(String namespace, String name, Class<T> type, Supplier<List<T>> loader) {
+        if (!enabled) {
+            List<T> items = loader.get();
+            return new CachedList<>(items, digest(JSON.toJSONString(items)), Long.MAX_VALUE);
+        }
+        String localKey = namespace + ":" + name;
+        long now = System.currentTimeMillis();
+        CachedList<?> cached = localCache.get(localKey);
+        if (cached != null && cached.expiresAt > now) {
+            return (CachedList<T>) cached;
+        }
+
+        long generation = generation(namespace).get();
+        String redisKey = null;
+        String json = null;
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY_PREFIX + namespace);
+            redisKey = KEY_PREFIX + namespace + ":" + (version != null ? version : "0") + ":" + name;
+            json = redisTemplate.opsForValue().get(redisKey);
+        } catch (Exception e) {
+            log.warn("读取Redis基础数据缓存失败，直接查询数据库: key={}", localKey, e);
+        }
+
+        List<T> items;
+        if (json != null) {
+            items = JSON.parseArray(json, type);
+        } else {
+            items = loader.get();
+            json = JSON.toJSONString(items);
+            if (redisKey != null) {
+                try {
+                    redisTemplate.opsForValue().set(redisKey, json, Duration.ofSeconds(redisTtlSeconds));
+                } catch (Exception e) {
+                    log.warn("写入Redis基础数据缓存失败: key={}", redisKey, e);
+                }
+            }
+        }
+
+        CachedList<T> entry = new CachedList<>(Collections.unmodifiableList(items), digest(json),
+                now + localTtlSeconds * 1000);
+        if (generation(namespace).get() == generation) {
+            localCache.put(localKey, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 数据变更后使命名空间下的缓存失效（在当前事务提交后执行）
+     */
+    public void invalidate(String namespace) {
+        TransactionUtil.afterCommit(() -> {
+            evictLocal(namespace);
+            if (!enabled) {
+                return;
+            }
+            try {
+                redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + namespace);
+                redisTemplate.convertAndSend(CHANNEL, namespace);
+            } catch (Exception e) {
+                log.warn("通知基础数据缓存失效失败，其他节点将在一级缓存过期后刷新: namespace={}", namespace, e);
+            }
+        });
+    }
+
+    /**
+     * 注册命名空间失效监听器（如时间段变更后重建占用索引），监听器应尽快返回
+     */
+    public void addInvalidationListener(String namespace, Runnable listener) {
+        invalidationListeners.computeIfAbsent(namespace, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * 收到其他节点（包括本节点）的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evictLocal(String namespace) {
+        generation(namespace).incrementAndGet();
+        localCache.keySet().removeIf(key -> key.startsWith(namespace + ":"));
+        for (Runnable listener : invalidationListeners.getOrDefault(namespace, Collections.emptyList())) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.warn("基础数据失效监听器执行失败: namespace={}", namespace, e);
+            }
+        }
+    }
+
+    private AtomicLong generation(String namespace) {
+        return generations.computeIfAbsent(namespace, key -> new AtomicLong());
+    }
+
+    private static String digest(String json) {
+        return "\"" + DigestUtils.md5DigestAsHex(json.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * 缓存的列表及其ETag
+     */
+    @Getter
+    public static class CachedList<T> {
+        private final List<T> items;
+        private final String etag;
+        private final long expiresAt;
+
+        public CachedList(List<T> items, String etag, long expiresAt) {
+            this.items = items;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -146,70 +146,94 @@ public class EmailService {
      */
     public void sendReservationNotification(String email, String username, Map<String, Object> reservationInfo) {
         try {
-            Context context = new Context();
-            context.setVariable("username", username);
-            context.setVariable("labName", reservationInfo.get("labName"));
-            context.setVariable("reservationDate", reservationInfo.get("reservationDate"));
-            context.setVariable("timeSlot", reservationInfo.get("timeSlot"));
-            context.setVariable("status", reservationInfo.get("status"));
-            context.setVariable("baseUrl", baseUrl);
-
-            String content = templateEngine.process("email-reservation", context);
-            String status = (String) reservationInfo.get("status");
-            sendHtmlEmail(email, "预约通知 - " + getStatusText(status), content);
-            
-            log.info("预约通知邮件已发送至：{}", email);
+            deliverReservationNotification(email, username, reservationInfo);
         } catch (Exception e) {
             log.error("发送预约通知邮件失败：{}", e.getMessage(), e);
         }
     }
 
+    /**
+     * 发送预约通知邮件，失败时抛出异常（供需要重试的调用方使用）
+     */
+    public void deliverReservationNotification(String email, String username, Map<String, Object> reservationInfo)
+            throws UnsupportedEncodingException {
+        Context context = new Context();
+        context.setVariable("username", username);
+        context.setVariable("labName", reservationInfo.get("labName"));
+        context.setVariable("reservationDate", reservationInfo.get("reservationDate"));
+        context.setVariable("timeSlot", reservationInfo.get("timeSlot"));
+        context.setVariable("status", reservationInfo.get("status"));
+        context.setVariable("baseUrl", baseUrl);
+
+        String content = templateEngine.process("email-reservation", context);
+        String status = (String) reservationInfo.get("status");
+        sendHtmlEmail(email, "预约通知 - " + getStatusText(status), content);
+        
+        log.info("预约通知邮件已发送至：{}", email);
+    }
+
     /**
      * 发送审核结果通知邮件
      */
     public void sendApprovalNotification(String email, String username, Map<String, Object> approvalInfo) {
         try {
-            Context context = new Context();
-            context.setVariable("username", username);
-            context.setVariable("labName", approvalInfo.get("labName"));
-            context.setVariable("reservationDate", approvalInfo.get("reservationDate"));
-            context.setVariable("timeSlot", approvalInfo.get("timeSlot"));
-            context.setVariable("approved", approvalInfo.get("approved"));
-            context.setVariable("reason", approvalInfo.get("reason"));
-            context.setVariable("baseUrl", baseUrl);
-
-            String content = templateEngine.process("email-approval", context);
-            boolean approved = (Boolean) approvalInfo.get("approved");
-            String subject = approved ? "预约审核通过" : "预约审核未通过";
-            sendHtmlEmail(email, subject, content);
-            
-            log.info("审核结果通知邮件已发送至：{}", email);
+            deliverApprovalNotification(email, username, approvalInfo);
         } catch (Exception e) {
             log.error("发送审核结果通知邮件失败：{}", e.getMessage(), e);
         }
     }
 
+    /**
+     * 发送审核结果通知邮件，失败时抛出异常（供需要重试的调用方使用）
+     */
+    public void deliverApprovalNotification(String email, String username, Map<String, Object> approvalInfo)
+            throws UnsupportedEncodingException {
+        Context context = new Context();
+        context.setVariable("username", username);
+        context.setVariable("labName", approvalInfo.get("labName"));
+        context.setVariable("reservationDate", approvalInfo.get("reservationDate"));
+        context.setVariable("timeSlot", approvalInfo.get("timeSlot"));
+        context.setVariable("approved", approvalInfo.get("approved"));
+        context.setVariable("reason", approvalInfo.get("reason"));
+        context.setVariable("baseUrl", baseUrl);
+
+        String content = templateEngine.process("email-approval", context);
+        boolean approved = Boolean.TRUE.equals(approvalInfo.get("approved"));
+        String subject = approved ? "预约审核通过" : "预约审核未通过";
+        sendHtmlEmail(email, subject, content);
+        
+        log.info("审核结果通知邮件已发送至：{}", email);
+    }
+
     /**
      * 发送预约提醒邮件
      */
     public void sendReservationReminder(String email, String username, Map<String, Object> reminderInfo) {
         try {
-            Context context = new Context();
-            context.setVariable("username", username);
-            context.setVariable("labName", reminderInfo.get("labName"));
-            context.setVariable("reservationDate", reminderInfo.get("reservationDate"));
-            context.setVariable("timeSlot", reminderInfo.get("timeSlot"));
-            context.setVariable("baseUrl", baseUrl);
-
-            String content = templateEngine.process("email-reminder", context);
-            sendHtmlEmail(email, "预约提醒 - 实验室预约即将开始", content);
-            
-            log.info("预约提醒邮件已发送至：{}", email);
+            deliverReservationReminder(email, username, reminderInfo);
         } catch (Exception e) {
             log.error("发送预约提醒邮件失败：{}", e.getMessage(), e);
         }
     }
 
+    /**
+     * 发送预约提醒邮件，失败时抛出异常（供需要重试的调用方使用）
+     */
+    public void deliverReservationReminder(String email, String username, Map<String, Object> reminderInfo)
+            throws UnsupportedEncodingException {
+        Context context = new Context();
+        context.setVariable("username", username);
+        context.setVariable("labName", reminderInfo.get("labName"));
+        context.setVariable("reservationDate", reminderInfo.get("reservationDate"));
+        context.setVariable("timeSlot", reminderInfo.get("timeSlot"));
+        context.setVariable("baseUrl", baseUrl);
+
+        String content = templateEngine.process("email-reminder", context);
+        sendHtmlEmail(email, "预约提醒 - 实验室预约即将开始", content);
+        
+        log.info("预约提醒邮件已发送至：{}", email);
+    }
+
     /**
      * 发送HTML邮件
      */
@@ -1,13 +1,17 @@
 package com.example.shiyanshi.service;
 
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.entity.Laboratory;
 import com.example.shiyanshi.mapper.LaboratoryMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 实验室服务层
+ * 列表与按ID查询走两级缓存（见 CatalogCacheService），增删改后使缓存失效
  */
 @Service
 public class LaboratoryService {
@@ -15,10 +19,18 @@ public class LaboratoryService {
     @Autowired
     private LaboratoryMapper laboratoryMapper;
     
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+    
     /**
      * 根据ID查询实验室
      */
     public Laboratory findById(Long id) {
+        for (Laboratory laboratory : findAll()) {
+            if (laboratory.getId().equals(id)) {
+                return laboratory;
+            }
+        }
         return laboratoryMapper.findById(id);
     }
     
@@ -26,14 +38,23 @@ public class LaboratoryService {
      * 查询所有实验室
      */
     public List<Laboratory> findAll() {
-        return laboratoryMapper.findAll();
+        return findAllCached().getItems();
+    }
+    
+    /**
+     * 查询所有实验室（带ETag，供列表接口做条件请求）
+     */
+    public CatalogCacheService.CachedList<Laboratory> findAllCached() {
+        return catalogCacheService.getList(CatalogCacheService.NS_LABORATORY, "all", Laboratory.class,
+                laboratoryMapper::findAll);
     }
     
     /**
      * 根据状态查询实验室
      */
     public List<Laboratory> findByStatus(Integer status) {
-        return laboratoryMapper.findByStatus(status);
+        return catalogCacheService.getList(CatalogCacheService.NS_LABORATORY, "status:" + status, Laboratory.class,
+                () -> laboratoryMapper.findByStatus(status)).getItems();
     }
     
     /**
@@ -57,6 +78,7 @@ public class LaboratoryService {
             laboratory.setStatus(1);
         }
         laboratoryMapper.insert(laboratory);
+        catalogCacheService.invalidate(CatalogCacheService.NS_LABORATORY);
         return laboratory;
     }
     
@@ -76,6 +98,7 @@ public class LaboratoryService {
             }
         }
         laboratoryMapper.updateById(laboratory);
+        catalogCacheService.invalidate(CatalogCacheService.NS_LABORATORY);
     }
     
     /**
@@ -87,6 +110,7 @@ public class LaboratoryService {
             throw new RuntimeException("实验室不存在");
         }
         laboratoryMapper.deleteById(id);
+        catalogCacheService.invalidate(CatalogCacheService.NS_LABORATORY);
     }
     
     /**
@@ -96,6 +120,44 @@ public class LaboratoryService {
         return laboratoryMapper.search(keyword, labType, status);
     }
     
+    /**
+     * 根据容量范围查询实验室
+     */
+    public List<Laboratory> findByCapacity(Integer minCapacity, Integer maxCapacity) {
+        return laboratoryMapper.findByCapacity(minCapacity, maxCapacity);
+    }
+    
+    /**
+     * 组合条件分页查询实验室
+     *
+     * @param page 页码，从1开始
+     * @param size 每页条数，默认20，最大100
+     * @return list、total、page、size
+     */
+    public Map<String, Object> query(Integer status, Integer minCapacity, Integer maxCapacity,
+                                     String building, String floor, String labType, String keyword,
+                                     Integer page, Integer size) {
+        if (minCapacity != null && maxCapacity != null && minCapacity > maxCapacity) {
+            throw new RuntimeException("最小容量不能大于最大容量");
+        }
+        int pageNum = page == null || page < 1 ? 1 : page;
+        int pageSize = CursorPage.normalizeSize(size);
+        String trimmedKeyword = keyword != null ? keyword.trim() : null;
+        
+        long total = laboratoryMapper.countQuery(status, minCapacity, maxCapacity, building, floor, labType, trimmedKeyword);
+        List<Laboratory> list = total > (long) (pageNum - 1) * pageSize
+                ? laboratoryMapper.query(status, minCapacity, maxCapacity, building, floor, labType, trimmedKeyword,
+                        (pageNum - 1) * pageSize, pageSize)
+                : List.of();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", list);
+        result.put("total", total);
+        result.put("page", pageNum);
+        result.put("size", pageSize);
+        return result;
+    }
+    
     /**
      * 更新实验室状态
      */
@@ -106,5 +168,6 @@ public class LaboratoryService {
         }
         laboratory.setStatus(status);
         laboratoryMapper.updateById(laboratory);
+        catalogCacheService.invalidate(CatalogCacheService.NS_LABORATORY);
     }
 }
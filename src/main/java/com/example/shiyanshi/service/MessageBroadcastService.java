@@ -0,0 +1,246 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.BroadcastMessage;
+import com.example.shiyanshi.entity.Message;
+import com.example.shiyanshi.entity.User;
+import com.example.shiyanshi.mapper.BroadcastMessageMapper;
+import com.example.shiyanshi.mapper.MessageMapper;
+import com.example.shiyanshi.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 系统消息批量广播服务
+ *
+ * - 按用户ID键集分页读取接收者，每页生成一批消息，用多行INSERT写入，每页一个独立事务
+ * - 广播任务的进度（已发送数量、最后处理的用户ID、状态）保存在Redis中，可随时查询
+ * - 广播消息以 related_type=broadcast、related_id=任务ID 标记，续传时以数据库中已写入的最大接收者ID为断点，
+ *   即使进度未及时写入Redis也不会重复发送
+ * - message.broadcast.mode=read 时不逐个用户写消息，只写一条 broadcast_message，查询时合并（见 MessageService）
+ */
+@Slf4j
+@Service
+public class MessageBroadcastService {
+
+    private static final String RELATED_TYPE = "broadcast";
+    private static final String JOB_SEQ_KEY = "msg:broadcast:job:seq";
+    private static final String JOB_KEY_PREFIX = "msg:broadcast:job:";
+    private static final String JOB_LOCK_PREFIX = "msg:broadcast:lock:";
+    private static final Duration JOB_TTL = Duration.ofDays(7);
+    private static final Duration JOB_LOCK_TTL = Duration.ofMinutes(30);
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private BroadcastMessageMapper broadcastMessageMapper;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private MessagePushService messagePushService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    /**
+     * 每批写入的消息条数
+     */
+    @Value("${message.broadcast.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * 创建广播任务并立即执行
+     *
+     * @return 任务进度（jobId、status、sent、total）
+     */
+    public Map<String, Object> broadcast(String title, String content, Integer priority) {
+        if (messageService.isReadMode()) {
+            return publish(title, content, priority);
+        }
+        Long jobId = redisTemplate.opsForValue().increment(JOB_SEQ_KEY);
+        Long total = userMapper.selectCount(null);
+
+        Map<String, String> job = new HashMap<>();
+        job.put("title", title);
+        job.put("content", content);
+        job.put("priority", String.valueOf(priority != null ? priority : 0));
+        job.put("status", STATUS_RUNNING);
+        job.put("lastUserId", "0");
+        job.put("sent", "0");
+        job.put("total", String.valueOf(total != null ? total : 0));
+        job.put("startTime", LocalDateTime.now().toString());
+        redisTemplate.opsForHash().putAll(jobKey(jobId), job);
+        redisTemplate.expire(jobKey(jobId), JOB_TTL);
+
+        return run(jobId, title, content, priority != null ? priority : 0, 0L, 0L);
+    }
+
+    /**
+     * 读时扩散模式：只写入一条广播记录，写入成本与用户数无关
+     */
+    private Map<String, Object> publish(String title, String content, Integer priority) {
+        BroadcastMessage broadcast = new BroadcastMessage();
+        broadcast.setSenderName("系统");
+        broadcast.setTitle(title);
+        broadcast.setContent(content);
+        broadcast.setPriority(priority != null ? priority : 0);
+        broadcast.setCreateTime(LocalDateTime.now());
+        broadcast.setDeleted(0);
+        broadcastMessageMapper.insert(broadcast);
+        unreadCounterService.onBroadcastPublished(broadcast.getId());
+        messagePushService.publishBroadcast(broadcast);
+
+        Long total = userMapper.selectCount(null);
+        Map<String, Object> result = new HashMap<>();
+        result.put("broadcastId", broadcast.getId());
+        result.put("status", STATUS_COMPLETED);
+        result.put("sent", total != null ? total : 0L);
+        result.put("total", total != null ? total : 0L);
+        return result;
+    }
+
+    /**
+     * 从断点继续执行中断的广播任务
+     */
+    public Map<String, Object> resume(Long jobId) {
+        Map<Object, Object> job = redisTemplate.opsForHash().entries(jobKey(jobId));
+        if (job.isEmpty()) {
+            throw new RuntimeException("广播任务不存在或已过期");
+        }
+        if (STATUS_COMPLETED.equals(job.get("status"))) {
+            throw new RuntimeException("广播任务已完成");
+        }
+
+        Long lastUserId = messageMapper.findMaxReceiverIdByRelated(jobId, RELATED_TYPE);
+        long sent = messageMapper.countByRelated(jobId, RELATED_TYPE);
+        return run(jobId,
+                (String) job.get("title"),
+                (String) job.get("content"),
+                Integer.valueOf((String) job.get("priority")),
+                lastUserId != null ? lastUserId : 0L,
+                sent);
+    }
+
+    /**
+     * 查询广播任务进度
+     */
+    public Map<String, Object> getProgress(Long jobId) {
+        Map<Object, Object> job = redisTemplate.opsForHash().entries(jobKey(jobId));
+        if (job.isEmpty()) {
+            throw new RuntimeException("广播任务不存在或已过期");
+        }
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("jobId", jobId);
+        progress.put("title", job.get("title"));
+        progress.put("status", job.get("status"));
+        progress.put("sent", Long.valueOf((String) job.get("sent")));
+        progress.put("total", Long.valueOf((String) job.get("total")));
+        progress.put("lastUserId", Long.valueOf((String) job.get("lastUserId")));
+        progress.put("startTime", job.get("startTime"));
+        progress.put("finishTime", job.get("finishTime"));
+        progress.put("error", job.get("error"));
+        return progress;
+    }
+
+    private Map<String, Object> run(Long jobId, String title, String content, Integer priority,
+                                    long lastUserId, long sent) {
+        String lockKey = JOB_LOCK_PREFIX + jobId;
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(lockKey, "1", JOB_LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            throw new RuntimeException("广播任务正在执行中");
+        }
+
+        String key = jobKey(jobId);
+        long startMillis = System.currentTimeMillis();
+        try {
+            redisTemplate.opsForHash().put(key, "status", STATUS_RUNNING);
+            redisTemplate.opsForHash().delete(key, "error");
+            LocalDateTime now = LocalDateTime.now();
+            while (true) {
+                List<User> users = userMapper.findIdAndUsernameAfter(lastUserId, chunkSize);
+                if (users.isEmpty()) {
+                    break;
+                }
+
+                List<Message> messages = new ArrayList<>(users.size());
+                for (User user : users) {
+                    messages.add(buildMessage(jobId, user, title, content, priority, now));
+                }
+                // 每批单独提交，失败时已提交的批次保留，续传从断点继续
+                messageService.saveMessagesBatch(messages);
+
+                lastUserId = users.get(users.size() - 1).getId();
+                sent += users.size();
+                Map<String, String> progress = new HashMap<>();
+                progress.put("lastUserId", String.valueOf(lastUserId));
+                progress.put("sent", String.valueOf(sent));
+                redisTemplate.opsForHash().putAll(key, progress);
+
+                if (users.size() < chunkSize) {
+                    break;
+                }
+            }
+
+            Map<String, String> finish = new HashMap<>();
+            finish.put("status", STATUS_COMPLETED);
+            finish.put("finishTime", LocalDateTime.now().toString());
+            redisTemplate.opsForHash().putAll(key, finish);
+            log.info("系统消息广播完成: jobId={}, sent={}, 耗时{}ms", jobId, sent, System.currentTimeMillis() - startMillis);
+        } catch (Exception e) {
+            log.error("系统消息广播中断: jobId={}, sent={}, lastUserId={}", jobId, sent, lastUserId, e);
+            Map<String, String> failure = new HashMap<>();
+            failure.put("status", STATUS_FAILED);
+            failure.put("error", String.valueOf(e.getMessage()));
+            redisTemplate.opsForHash().putAll(key, failure);
+            throw new RuntimeException("广播中断，已发送" + sent + "条，可续传任务" + jobId);
+        } finally {
+            redisTemplate.delete(lockKey);
+        }
+        return getProgress(jobId);
+    }
+
+    private Message buildMessage(Long jobId, User user, String title, String content, Integer priority,
+                                 LocalDateTime createTime) {
+        Message message = new Message();
+        message.setSenderId(0L);
+        message.setSenderName("系统");
+        message.setReceiverId(user.getId());
+        message.setReceiverName(user.getUsername());
+        message.setMessageType("system");
+        message.setTitle(title);
+        message.setContent(content);
+        message.setRelatedId(jobId);
+        message.setRelatedType(RELATED_TYPE);
+        message.setIsRead(0);
+        message.setPriority(priority);
+        message.setCreateTime(createTime);
+        message.setDeleted(0);
+        return message;
+    }
+
+    private static String jobKey(Long jobId) {
+        return JOB_KEY_PREFIX + jobId;
+    }
+}
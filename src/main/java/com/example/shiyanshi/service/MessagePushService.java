@@ -0,0 +1,292 @@
+package com.example.shiyanshi.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.example.shiyanshi.entity.BroadcastMessage;
+import com.example.shiyanshi.entity.Message;
+import com.example.shiyanshi.mapper.MessageMapper;
+import com.example.shiyanshi.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 站内消息实时推送服务（SSE）
+ *
+ * - 客户端通过 /api/messages/stream 建立连接，按JWT中的用户ID登记在本节点的连接表中
+ * - 消息写入并提交后发布到Redis频道 msg:push，各节点收到后推送给本节点上该用户的连接；读时扩散的广播推送给所有连接
+ * - 连接总数和每个用户的连接数有上限，超出每用户上限时关闭最早的连接
+ * - 定时发送心跳注释，及时发现断开的连接并防止代理超时
+ * - 事件ID为消息ID，断线重连时按 Last-Event-ID 补发之后的消息；补发与实时推送可能重复，客户端按ID去重
+ */
+@Slf4j
+@Service
+public class MessagePushService implements MessageListener {
+
+    private static final String CHANNEL = "msg:push";
+
+    /**
+     * 断线重连单次最多补发的消息数
+     */
+    private static final int RESUME_LIMIT = 100;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Value("${message.push.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 本节点最大连接数
+     */
+    @Value("${message.push.max-connections:5000}")
+    private int maxConnections;
+
+    /**
+     * 每个用户最大连接数（多个标签页/设备）
+     */
+    @Value("${message.push.max-per-user:3}")
+    private int maxPerUser;
+
+    /**
+     * 连接超时时间（分钟），超时后客户端自动重连
+     */
+    @Value("${message.push.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    private final Map<Long, List<SseEmitter>> connections = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (List<SseEmitter> emitters : connections.values()) {
+            for (SseEmitter emitter : emitters) {
+                emitter.complete();
+            }
+        }
+        connections.clear();
+    }
+
+    /**
+     * 建立推送连接
+     *
+     * @param lastEventId 客户端收到的最后一条消息ID（可选），连接后先补发之后的消息
+     */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        if (!enabled) {
+            throw new RuntimeException("消息推送未启用");
+        }
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            throw new RuntimeException("推送连接数已达上限，请稍后重试");
+        }
+        SseEmitter emitter = new SseEmitter(Duration.ofMinutes(timeoutMinutes).toMillis());
+        List<SseEmitter> emitters = connections.compute(userId, (id, list) -> {
+            List<SseEmitter> target = list != null ? list : new CopyOnWriteArrayList<>();
+            target.add(emitter);
+            return target;
+        });
+        while (emitters.size() > maxPerUser) {
+            SseEmitter oldest = emitters.get(0);
+            unregister(userId, oldest);
+            oldest.complete();
+        }
+        emitter.onCompletion(() -> unregister(userId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unregister(userId, emitter));
+
+        if (lastEventId != null) {
+            for (Message message : messageMapper.findByReceiverIdAfter(userId, lastEventId, RESUME_LIMIT)) {
+                send(userId, emitter, toEvent(PushMessage.of(message)));
+            }
+        }
+        send(userId, emitter, SseEmitter.event().name("unread").data(unreadCounterService.getCounts(userId)));
+        return emitter;
+    }
+
+    /**
+     * 新消息写入后推送给接收者（事务提交后发布）
+     */
+    public void publish(List<Message> messages) {
+        if (!enabled || messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<PushMessage> payload = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            payload.add(PushMessage.of(message));
+        }
+        String json = JSON.toJSONString(payload);
+        TransactionUtil.afterCommit(() -> fanOut(json));
+    }
+
+    /**
+     * 读时扩散的广播发布后推送给所有在线用户（事务提交后发布）
+     */
+    public void publishBroadcast(BroadcastMessage broadcast) {
+        if (!enabled || broadcast == null) {
+            return;
+        }
+        PushMessage push = new PushMessage();
+        push.setId(-broadcast.getId());
+        push.setMessageType("system");
+        push.setTitle(broadcast.getTitle());
+        push.setPriority(broadcast.getPriority());
+        push.setRelatedId(broadcast.getId());
+        push.setRelatedType("broadcast");
+        push.setCreateTime(broadcast.getCreateTime());
+        String json = JSON.toJSONString(List.of(push));
+        TransactionUtil.afterCommit(() -> fanOut(json));
+    }
+
+    /**
+     * 通过Redis频道分发到所有节点，Redis不可用时只推送本节点
+     */
+    private void fanOut(String json) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, json);
+        } catch (Exception e) {
+            log.warn("发布消息推送失败，仅推送本节点连接", e);
+            deliver(json);
+        }
+    }
+
+    /**
+     * 收到推送频道的消息（包括本节点发布的）
+     */
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        if (connectionCount.get() == 0) {
+            return;
+        }
+        deliver(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void deliver(String json) {
+        // 事件构建器在发送时会被修改，每个连接单独构建
+        for (PushMessage push : JSON.parseArray(json, PushMessage.class)) {
+            if (push.getReceiverId() == null) {
+                connections.forEach((userId, emitters) ->
+                        emitters.forEach(emitter -> send(userId, emitter, toEvent(push))));
+                continue;
+            }
+            List<SseEmitter> emitters = connections.get(push.getReceiverId());
+            if (emitters != null) {
+                for (SseEmitter emitter : emitters) {
+                    send(push.getReceiverId(), emitter, toEvent(push));
+                }
+            }
+        }
+    }
+
+    /**
+     * 定时心跳，发送失败的连接随即移除
+     */
+    @Scheduled(fixedDelayString = "${message.push.heartbeat-millis:25000}")
+    public void heartbeat() {
+        if (connectionCount.get() == 0) {
+            return;
+        }
+        connections.forEach((userId, emitters) ->
+                emitters.forEach(emitter -> send(userId, emitter, SseEmitter.event().comment("ping"))));
+    }
+
+    /**
+     * 本节点当前连接数
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void send(Long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (Exception e) {
+            unregister(userId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unregister(Long userId, SseEmitter emitter) {
+        connections.computeIfPresent(userId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connectionCount.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    /**
+     * 个人消息以消息ID作为事件ID，广播（ID为负）不设置事件ID，避免影响断线补发
+     */
+    private static SseEmitter.SseEventBuilder toEvent(PushMessage push) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name("message").data(push);
+        if (push.getId() != null && push.getId() > 0) {
+            event.id(String.valueOf(push.getId()));
+        }
+        return event;
+    }
+
+    /**
+     * 推送内容（只含列表展示所需字段，正文由客户端按需查询详情）
+     */
+    @Data
+    public static class PushMessage {
+        private Long id;
+        private Long receiverId;
+        private String senderName;
+        private String messageType;
+        private String title;
+        private Integer priority;
+        private Long relatedId;
+        private String relatedType;
+        private LocalDateTime createTime;
+
+        public static PushMessage of(Message message) {
+            PushMessage push = new PushMessage();
+            push.setId(message.getId());
+            push.setReceiverId(message.getReceiverId());
+            push.setSenderName(message.getSenderName());
+            push.setMessageType(message.getMessageType());
+            push.setTitle(message.getTitle());
+            push.setPriority(message.getPriority());
+            push.setRelatedId(message.getRelatedId());
+            push.setRelatedType(message.getRelatedType());
+            push.setCreateTime(message.getCreateTime());
+            return push;
+        }
+    }
+}
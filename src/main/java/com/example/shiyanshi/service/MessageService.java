@@ -2,14 +2,20 @@ package com.example.shiyanshi.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.shiyanshi.common.CursorPage;
+import com.example.shiyanshi.entity.BroadcastMessage;
 import com.example.shiyanshi.entity.Message;
 import com.example.shiyanshi.entity.User;
+import com.example.shiyanshi.mapper.BroadcastMessageMapper;
 import com.example.shiyanshi.mapper.MessageMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +32,21 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private BroadcastMessageMapper broadcastMessageMapper;
+    
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    
+    @Autowired
+    private MessagePushService messagePushService;
+    
+    /**
+     * 广播存储模式：write-为每个用户写一条消息，read-只存一条广播，查询时合并
+     */
+    @Value("${message.broadcast.mode:write}")
+    private String broadcastMode;
+    
     /**
      * 发送系统消息（单个用户）
      */
@@ -50,45 +71,10 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         message.setDeleted(0);
         
         messageMapper.insert(message);
+        onMessagesCreated(Collections.singletonList(message));
         return message;
     }
     
-    /**
-     * 广播系统消息给所有用户
-     */
-    @Transactional
-    public int broadcastSystemMessage(String title, String content, Integer priority) {
-        // 获取所有用户
-        List<User> allUsers = userService.findAll();
-        if (allUsers == null || allUsers.isEmpty()) {
-            return 0;
-        }
-        
-        int count = 0;
-        LocalDateTime now = LocalDateTime.now();
-        
-        // 为每个用户创建一条系统消息
-        for (User user : allUsers) {
-            Message message = new Message();
-            message.setSenderId(0L);
-            message.setSenderName("系统");
-            message.setReceiverId(user.getId());
-            message.setReceiverName(user.getUsername());
-            message.setMessageType("system");
-            message.setTitle(title);
-            message.setContent(content);
-            message.setIsRead(0);
-            message.setPriority(priority != null ? priority : 0);
-            message.setCreateTime(now);
-            message.setDeleted(0);
-            
-            messageMapper.insert(message);
-            count++;
-        }
-        
-        return count;
-    }
-    
     /**
      * 发送用户消息
      */
@@ -115,6 +101,7 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         message.setDeleted(0);
         
         messageMapper.insert(message);
+        onMessagesCreated(Collections.singletonList(message));
         return message;
     }
     
@@ -144,6 +131,7 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         message.setDeleted(0);
         
         messageMapper.insert(message);
+        onMessagesCreated(Collections.singletonList(message));
         return message;
     }
     
@@ -173,6 +161,7 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         message.setDeleted(0);
         
         messageMapper.insert(message);
+        onMessagesCreated(Collections.singletonList(message));
         return message;
     }
     
@@ -202,13 +191,30 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         message.setDeleted(0);
         
         messageMapper.insert(message);
+        onMessagesCreated(Collections.singletonList(message));
         return message;
     }
     
+    /**
+     * 批量保存消息（消息已由调用方组装好，不再逐条校验接收者）
+     */
+    @Transactional
+    public int saveMessagesBatch(List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+        int inserted = messageMapper.insertBatch(messages);
+        onMessagesCreated(messages);
+        return inserted;
+    }
+
     /**
      * 获取用户的所有消息
      */
     public List<Message> getUserMessages(Long userId) {
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, null, false, null, null, false, null, null, null, null);
+        }
         return messageMapper.findByReceiverId(userId);
     }
     
@@ -216,6 +222,9 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      * 获取用户的未读消息
      */
     public List<Message> getUnreadMessages(Long userId) {
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, null, true, null, null, false, null, null, null, null);
+        }
         return messageMapper.findUnreadByReceiverId(userId);
     }
     
@@ -223,6 +232,9 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      * 根据类型获取用户消息
      */
     public List<Message> getUserMessagesByType(Long userId, String messageType) {
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, messageType, false, null, null, false, null, null, null, null);
+        }
         return messageMapper.findByReceiverIdAndType(userId, messageType);
     }
     
@@ -230,13 +242,20 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      * 获取用户的未读消息数量
      */
     public int getUnreadCount(Long userId) {
-        return messageMapper.countUnreadByReceiverId(userId);
+        return unreadCounterService.getCounts(userId).get("total");
     }
     
     /**
      * 根据类型获取用户的未读消息数量
      */
     public int getUnreadCountByType(Long userId, String messageType) {
+        Integer count = unreadCounterService.getCounts(userId).get(messageType);
+        if (count != null) {
+            return count;
+        }
+        if (isReadMode()) {
+            return messageMapper.countMergedUnread(userId, messageType);
+        }
         return messageMapper.countUnreadByReceiverIdAndType(userId, messageType);
     }
     
@@ -244,14 +263,7 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      * 获取各类型未读消息数量统计
      */
     public Map<String, Integer> getUnreadCountByTypes(Long userId) {
-        Map<String, Integer> result = new HashMap<>();
-        result.put("total", getUnreadCount(userId));
-        result.put("system", getUnreadCountByType(userId, "system"));
-        result.put("reservation", getUnreadCountByType(userId, "reservation"));
-        result.put("approval", getUnreadCountByType(userId, "approval"));
-        result.put("reminder", getUnreadCountByType(userId, "reminder"));
-        result.put("user", getUnreadCountByType(userId, "user"));
-        return result;
+        return new HashMap<>(unreadCounterService.getCounts(userId));
     }
     
     /**
@@ -259,10 +271,23 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     @Transactional
     public boolean markAsRead(Long messageId, Long userId) {
+        if (isBroadcastId(messageId)) {
+            Long broadcastId = -messageId;
+            if (broadcastMessageMapper.findVisible(broadcastId, userId) == null) {
+                return false;
+            }
+            List<Long> broadcastIds = Collections.singletonList(broadcastId);
+            consumeUnread(Collections.emptyList(), broadcastIds, userId);
+            broadcastMessageMapper.markRead(broadcastIds, userId);
+            return true;
+        }
         Message message = messageMapper.selectById(messageId);
         if (message == null || !message.getReceiverId().equals(userId)) {
             return false;
         }
+        if (isUnread(message)) {
+            unreadCounterService.onMessagesConsumed(userId, Collections.singletonList(message.getMessageType()));
+        }
         return messageMapper.markAsRead(messageId) > 0;
     }
     
@@ -271,17 +296,20 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     @Transactional
     public boolean batchMarkAsRead(List<Long> messageIds, Long userId) {
-        // 验证所有消息都属于该用户
-        LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
-        wrapper.in(Message::getId, messageIds)
-               .eq(Message::getReceiverId, userId);
-        long count = messageMapper.selectCount(wrapper);
+        List<Long> personalIds = new ArrayList<>();
+        List<Long> broadcastIds = new ArrayList<>();
+        splitMessageIds(messageIds, personalIds, broadcastIds);
+        checkOwnership(personalIds, broadcastIds, userId);
+        consumeUnread(personalIds, broadcastIds, userId);
         
-        if (count != messageIds.size()) {
-            throw new RuntimeException("部分消息不属于当前用户");
+        int updated = 0;
+        if (!personalIds.isEmpty()) {
+            updated += messageMapper.batchMarkAsRead(personalIds);
         }
-        
-        return messageMapper.batchMarkAsRead(messageIds) > 0;
+        if (!broadcastIds.isEmpty()) {
+            updated += broadcastMessageMapper.markRead(broadcastIds, userId);
+        }
+        return updated > 0;
     }
     
     /**
@@ -289,6 +317,10 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     @Transactional
     public boolean markAllAsRead(Long userId) {
+        if (isReadMode()) {
+            broadcastMessageMapper.advanceWatermark(userId);
+        }
+        unreadCounterService.onAllRead(userId);
         return messageMapper.markAllAsReadByReceiverId(userId) >= 0;
     }
     
@@ -297,10 +329,22 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     @Transactional
     public boolean deleteMessage(Long messageId, Long userId) {
+        if (isBroadcastId(messageId)) {
+            Long broadcastId = -messageId;
+            if (broadcastMessageMapper.findVisible(broadcastId, userId) == null) {
+                return false;
+            }
+            List<Long> broadcastIds = Collections.singletonList(broadcastId);
+            consumeUnread(Collections.emptyList(), broadcastIds, userId);
+            return broadcastMessageMapper.markDeleted(broadcastIds, userId) > 0;
+        }
         Message message = messageMapper.selectById(messageId);
         if (message == null || !message.getReceiverId().equals(userId)) {
             return false;
         }
+        if (isUnread(message)) {
+            unreadCounterService.onMessagesConsumed(userId, Collections.singletonList(message.getMessageType()));
+        }
         return messageMapper.softDelete(messageId) > 0;
     }
     
@@ -309,23 +353,29 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     @Transactional
     public boolean batchDeleteMessages(List<Long> messageIds, Long userId) {
-        // 验证所有消息都属于该用户
-        LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
-        wrapper.in(Message::getId, messageIds)
-               .eq(Message::getReceiverId, userId);
-        long count = messageMapper.selectCount(wrapper);
+        List<Long> personalIds = new ArrayList<>();
+        List<Long> broadcastIds = new ArrayList<>();
+        splitMessageIds(messageIds, personalIds, broadcastIds);
+        checkOwnership(personalIds, broadcastIds, userId);
+        consumeUnread(personalIds, broadcastIds, userId);
         
-        if (count != messageIds.size()) {
-            throw new RuntimeException("部分消息不属于当前用户");
+        int updated = 0;
+        if (!personalIds.isEmpty()) {
+            updated += messageMapper.batchSoftDelete(personalIds);
         }
-        
-        return messageMapper.batchSoftDelete(messageIds) > 0;
+        if (!broadcastIds.isEmpty()) {
+            updated += broadcastMessageMapper.markDeleted(broadcastIds, userId);
+        }
+        return updated > 0;
     }
     
     /**
      * 获取消息详情
      */
     public Message getMessageDetail(Long messageId, Long userId) {
+        if (isBroadcastId(messageId)) {
+            return getBroadcastDetail(-messageId, userId);
+        }
         Message message = messageMapper.selectById(messageId);
         if (message == null || !message.getReceiverId().equals(userId)) {
             return null;
@@ -334,6 +384,7 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
         // 自动标记为已读
         if (message.getIsRead() == 0) {
             messageMapper.markAsRead(messageId);
+            unreadCounterService.onMessagesConsumed(userId, Collections.singletonList(message.getMessageType()));
             message.setIsRead(1);
             message.setReadTime(LocalDateTime.now());
         }
@@ -360,13 +411,39 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      */
     public List<Message> getUserMessagesWithPage(Long userId, int page, int pageSize) {
         int offset = (page - 1) * pageSize;
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, null, false, null, null, false, null, null, offset, pageSize);
+        }
         return messageMapper.findByReceiverIdWithPage(userId, offset, pageSize);
     }
     
+    /**
+     * 游标分页查询用户消息，翻页深度不影响查询耗时
+     *
+     * @param cursor 上一页返回的游标，为空表示第一页
+     */
+    public CursorPage<Message> scrollUserMessages(Long userId, String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        CursorPage.Cursor position = CursorPage.decode(cursor);
+        LocalDateTime cursorTime = position != null ? position.getCreateTime() : null;
+        Long cursorId = position != null ? position.getId() : null;
+        List<Message> rows;
+        if (isReadMode()) {
+            rows = messageMapper.findMergedByReceiverId(userId, null, false, null, null, false,
+                    cursorTime, cursorId, 0, pageSize + 1);
+        } else {
+            rows = messageMapper.scrollByReceiverId(userId, cursorTime, cursorId, pageSize + 1);
+        }
+        return CursorPage.of(rows, pageSize, Message::getCreateTime, Message::getId);
+    }
+    
     /**
      * 根据优先级获取消息
      */
     public List<Message> getMessagesByPriority(Long userId, Integer priority) {
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, null, false, priority, null, false, null, null, null, null);
+        }
         return messageMapper.findByReceiverIdAndPriority(userId, priority);
     }
     
@@ -374,6 +451,9 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
      * 获取高优先级未读消息
      */
     public List<Message> getHighPriorityUnreadMessages(Long userId) {
+        if (isReadMode()) {
+            return messageMapper.findMergedByReceiverId(userId, null, true, null, 1, true, null, null, null, null);
+        }
         LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Message::getReceiverId, userId)
                .eq(Message::getIsRead, 0)
@@ -383,4 +463,111 @@ public class MessageService extends ServiceImpl<MessageMapper, Message> {
                .orderByDesc(Message::getCreateTime);
         return messageMapper.selectList(wrapper);
     }
+    
+    /**
+     * 是否为读时扩散模式
+     */
+    public boolean isReadMode() {
+        return "read".equalsIgnoreCase(broadcastMode);
+    }
+    
+    /**
+     * 新消息写入后更新未读计数并推送给在线的接收者（均在事务提交后生效）
+     */
+    private void onMessagesCreated(List<Message> messages) {
+        unreadCounterService.onMessagesCreated(messages);
+        messagePushService.publish(messages);
+    }
+    
+    /**
+     * 合并视图中广播消息的ID为负的广播ID
+     */
+    private static boolean isBroadcastId(Long messageId) {
+        return messageId != null && messageId < 0;
+    }
+    
+    private static boolean isUnread(Message message) {
+        return Integer.valueOf(0).equals(message.getIsRead()) && !Integer.valueOf(1).equals(message.getDeleted());
+    }
+    
+    private static void splitMessageIds(List<Long> messageIds, List<Long> personalIds, List<Long> broadcastIds) {
+        for (Long id : messageIds) {
+            if (isBroadcastId(id)) {
+                broadcastIds.add(-id);
+            } else {
+                personalIds.add(id);
+            }
+        }
+    }
+    
+    /**
+     * 验证所有消息都属于该用户
+     */
+    private void checkOwnership(List<Long> personalIds, List<Long> broadcastIds, Long userId) {
+        long count = 0;
+        if (!personalIds.isEmpty()) {
+            LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
+            wrapper.in(Message::getId, personalIds)
+                   .eq(Message::getReceiverId, userId);
+            count += messageMapper.selectCount(wrapper);
+        }
+        if (!broadcastIds.isEmpty()) {
+            count += broadcastMessageMapper.countVisible(broadcastIds, userId);
+        }
+        if (count != personalIds.size() + broadcastIds.size()) {
+            throw new RuntimeException("部分消息不属于当前用户");
+        }
+    }
+    
+    /**
+     * 在状态变更前找出其中未读的消息，变更提交后扣减未读计数
+     */
+    private void consumeUnread(List<Long> personalIds, List<Long> broadcastIds, Long userId) {
+        List<String> types = new ArrayList<>();
+        if (!personalIds.isEmpty()) {
+            for (Message message : messageMapper.findUnreadByIds(personalIds, userId)) {
+                types.add(message.getMessageType());
+            }
+        }
+        if (!broadcastIds.isEmpty()) {
+            for (int i = broadcastMessageMapper.findUnreadIds(broadcastIds, userId).size(); i > 0; i--) {
+                types.add("system");
+            }
+        }
+        unreadCounterService.onMessagesConsumed(userId, types);
+    }
+    
+    /**
+     * 获取广播消息详情（以合并视图中的消息形式返回），并自动标记为已读
+     */
+    private Message getBroadcastDetail(Long broadcastId, Long userId) {
+        BroadcastMessage broadcast = broadcastMessageMapper.findVisible(broadcastId, userId);
+        if (broadcast == null) {
+            return null;
+        }
+        boolean read = broadcastMessageMapper.isRead(broadcastId, userId) == 1;
+        if (!read) {
+            broadcastMessageMapper.markRead(Collections.singletonList(broadcastId), userId);
+            unreadCounterService.onMessagesConsumed(userId, Collections.singletonList("system"));
+        }
+        
+        User receiver = userService.findById(userId);
+        Message message = new Message();
+        message.setId(-broadcastId);
+        message.setSenderId(0L);
+        message.setSenderName(broadcast.getSenderName());
+        message.setReceiverId(userId);
+        message.setReceiverName(receiver != null ? receiver.getUsername() : null);
+        message.setMessageType("system");
+        message.setTitle(broadcast.getTitle());
+        message.setContent(broadcast.getContent());
+        message.setRelatedId(broadcastId);
+        message.setRelatedType("broadcast");
+        message.setIsRead(1);
+        message.setPriority(broadcast.getPriority());
+        message.setCreateTime(broadcast.getCreateTime());
+        message.setReadTime(read ? null : LocalDateTime.now());
+        message.setDeleted(0);
+        return message;
+    }
 }
@@ -0,0 +1,544 @@
+package com.example.shiyanshi.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.example.shiyanshi.entity.Message;
+import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.entity.User;
+import com.example.shiyanshi.event.ReservationStatusChangedEvent;
+import com.example.shiyanshi.mapper.ReservationMapper;
+import com.example.shiyanshi.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预约通知服务
+ *
+ * 预约事务提交后接收状态变更事件，把站内消息和邮件放入有界队列，由后台工作线程处理；
+ * 到期的预约提醒（ReservationReminderScheduler）也经由该队列发送：
+ * - 每次从队列取出一批任务，批量查询接收者、批量写入站内消息
+ * - 发送失败按指数退避重试，超过最大次数后放弃并记录日志
+ * - 队列已满（或服务未启动、已关闭）时写入Redis列表 notification:pending，由溢出搬运任务在队列有空位时取回；
+ *   Redis不可用时暂存在进程内溢出队列。调用线程（预约请求、调度线程）从不查询数据库或发送邮件
+ * - 重试任务到期后走同一入队路径，队列满时同样溢出，不丢弃
+ */
+@Slf4j
+@Service
+public class NotificationService {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private static final String PENDING_KEY = "notification:pending";
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${notification.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${notification.workers:2}")
+    private int workerCount;
+
+    @Value("${notification.batch-size:50}")
+    private int batchSize;
+
+    @Value("${notification.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${notification.retry-backoff-millis:2000}")
+    private long retryBackoffMillis;
+
+    /**
+     * 入队最长等待时间，超时后写入溢出列表
+     */
+    @Value("${notification.offer-timeout-millis:200}")
+    private long offerTimeoutMillis;
+
+    /**
+     * 虚拟线程模式下工作线程使用虚拟线程，阻塞在SMTP、数据库上时不占用平台线程
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private BlockingQueue<NotificationTask> queue;
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running = false;
+
+    /**
+     * Redis不可用时的进程内溢出队列
+     */
+    private final Queue<NotificationTask> localOverflow = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory workerFactory = virtualThreads
+                ? Thread.ofVirtual().name("notification-worker-", 1).factory()
+                : runnable -> {
+                    Thread thread = new Thread(runnable, "notification-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                };
+        workers = Executors.newFixedThreadPool(Math.max(workerCount, 1), workerFactory);
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < Math.max(workerCount, 1); i++) {
+            workers.submit(this::workLoop);
+        }
+        log.info("通知服务已启动：workers={}, queueCapacity={}, batchSize={}, virtualThreads={}",
+                workerCount, queueCapacity, batchSize, virtualThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("通知服务关闭超时，队列中剩余{}条通知未处理", queue.size());
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        // 未处理的通知写入溢出列表，重启后继续发送
+        List<NotificationTask> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.addAll(localOverflow);
+        localOverflow.clear();
+        remaining.forEach(this::spill);
+    }
+
+    /**
+     * 预约状态变更事务提交后生成通知任务
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        Integer status = event.getNewStatus();
+        if (status == null || status < 1 || status > 4) {
+            return;
+        }
+        submit(NotificationTask.of(NotificationKind.MESSAGE, event));
+        if (status != 4) {
+            submit(NotificationTask.of(NotificationKind.EMAIL, event));
+        }
+    }
+
+    /**
+     * 提交预约提醒（站内消息和邮件），发送前由工作线程重新查询预约，已不是通过状态的不再发送
+     *
+     * @param title 消息标题
+     * @param leadText 距离开始的时间描述，如 1小时
+     * @param priority 站内消息优先级：0普通 1重要 2紧急
+     */
+    public void submitReminder(Long reservationId, String title, String leadText, Integer priority) {
+        submit(NotificationTask.reminder(NotificationKind.REMINDER_MESSAGE, reservationId, title, leadText, priority));
+        submit(NotificationTask.reminder(NotificationKind.REMINDER_EMAIL, reservationId, title, leadText, priority));
+    }
+
+    /**
+     * 当前内存队列中待处理的通知数量（不含溢出列表）
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void submit(NotificationTask task) {
+        boolean accepted = false;
+        if (running) {
+            try {
+                accepted = queue.offer(task, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!accepted) {
+            log.warn("通知队列已满，写入溢出列表: kind={}, reservationId={}", task.kind, task.reservationId);
+            spill(task);
+        }
+    }
+
+    /**
+     * 写入Redis溢出列表，失败时暂存进程内
+     */
+    private void spill(NotificationTask task) {
+        try {
+            redisTemplate.opsForList().rightPush(PENDING_KEY, JSON.toJSONString(task));
+        } catch (Exception e) {
+            log.warn("写入通知溢出列表失败，暂存进程内: reservationId={}", task.reservationId, e);
+            localOverflow.add(task);
+        }
+    }
+
+    /**
+     * 溢出搬运：内存队列有空位时取回溢出的通知，先取进程内的，再取Redis列表（多节点共享，哪个节点取到由哪个节点处理）
+     */
+    @Scheduled(fixedDelayString = "${notification.overflow-poll-millis:1000}")
+    public void drainOverflow() {
+        if (!running) {
+            return;
+        }
+        NotificationTask local;
+        while (queue.remainingCapacity() > 0 && (local = localOverflow.poll()) != null) {
+            if (!queue.offer(local)) {
+                localOverflow.add(local);
+                return;
+            }
+        }
+        try {
+            while (queue.remainingCapacity() > 0) {
+                String json = redisTemplate.opsForList().leftPop(PENDING_KEY);
+                if (json == null) {
+                    return;
+                }
+                NotificationTask task = JSON.parseObject(json, NotificationTask.class);
+                if (!queue.offer(task)) {
+                    redisTemplate.opsForList().leftPush(PENDING_KEY, json);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("读取通知溢出列表失败", e);
+        }
+    }
+
+    private void workLoop() {
+        List<NotificationTask> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                NotificationTask first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, Math.max(batchSize, 1) - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("处理通知批次失败", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 处理一批通知：一次查询所有接收者，站内消息批量写入，邮件逐封发送
+     */
+    private void processBatch(List<NotificationTask> batch) {
+        batch = resolveReminders(batch);
+        Set<Long> userIds = new HashSet<>();
+        for (NotificationTask task : batch) {
+            userIds.add(task.userId);
+        }
+        Map<Long, User> users = new HashMap<>();
+        try {
+            for (User user : userMapper.selectByIds(userIds)) {
+                users.put(user.getId(), user);
+            }
+        } catch (Exception e) {
+            log.error("查询通知接收者失败", e);
+            batch.forEach(this::retry);
+            return;
+        }
+
+        List<NotificationTask> messageTasks = new ArrayList<>();
+        List<Message> messages = new ArrayList<>();
+        List<NotificationTask> emailTasks = new ArrayList<>();
+        for (NotificationTask task : batch) {
+            User user = users.get(task.userId);
+            if (user == null) {
+                log.warn("通知接收者不存在: userId={}", task.userId);
+                continue;
+            }
+            if (task.kind == NotificationKind.MESSAGE) {
+                messageTasks.add(task);
+                messages.add(buildMessage(task, user));
+            } else if (task.kind == NotificationKind.REMINDER_MESSAGE) {
+                messageTasks.add(task);
+                messages.add(buildReminderMessage(task, user));
+            } else if (user.getEmail() != null && !user.getEmail().isEmpty()
+                    && (task.kind == NotificationKind.EMAIL || Integer.valueOf(1).equals(user.getEmailVerified()))) {
+                emailTasks.add(task);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            try {
+                messageService.saveMessagesBatch(messages);
+            } catch (Exception e) {
+                log.error("批量保存站内消息失败: count={}", messages.size(), e);
+                messageTasks.forEach(this::retry);
+            }
+        }
+
+        for (NotificationTask task : emailTasks) {
+            try {
+                sendEmail(task, users.get(task.userId));
+            } catch (Exception e) {
+                log.error("发送通知邮件失败: reservationId={}, attempt={}", task.reservationId, task.attempts + 1, e);
+                retry(task);
+            }
+        }
+    }
+
+    /**
+     * 按指数退避重新入队，超过最大次数后放弃；队列已满或服务关闭时写入溢出列表
+     */
+    private void retry(NotificationTask task) {
+        task.attempts++;
+        if (task.attempts >= maxAttempts) {
+            log.error("通知发送失败且已达最大重试次数，放弃: kind={}, reservationId={}", task.kind, task.reservationId);
+            return;
+        }
+        long delay = retryBackoffMillis * (1L << (task.attempts - 1));
+        try {
+            retryScheduler.schedule(() -> {
+                if (!running || !queue.offer(task)) {
+                    spill(task);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            spill(task);
+        }
+    }
+
+    /**
+     * 为提醒任务补齐预约信息：一次查询批次内的全部预约，已不是通过状态的提醒丢弃
+     */
+    private List<NotificationTask> resolveReminders(List<NotificationTask> batch) {
+        Set<Long> reservationIds = new HashSet<>();
+        for (NotificationTask task : batch) {
+            if (task.kind.isReminder()) {
+                reservationIds.add(task.reservationId);
+            }
+        }
+        if (reservationIds.isEmpty()) {
+            return batch;
+        }
+        Map<Long, Reservation> reservations = new HashMap<>();
+        List<NotificationTask> resolved = new ArrayList<>(batch.size());
+        try {
+            for (Reservation reservation : reservationMapper.findByIdsWithLab(reservationIds)) {
+                reservations.put(reservation.getId(), reservation);
+            }
+        } catch (Exception e) {
+            log.error("查询提醒预约失败", e);
+            for (NotificationTask task : batch) {
+                if (task.kind.isReminder()) {
+                    retry(task);
+                } else {
+                    resolved.add(task);
+                }
+            }
+            return resolved;
+        }
+        for (NotificationTask task : batch) {
+            if (!task.kind.isReminder()) {
+                resolved.add(task);
+                continue;
+            }
+            Reservation reservation = reservations.get(task.reservationId);
+            if (reservation == null || !Integer.valueOf(1).equals(reservation.getStatus())) {
+                continue;
+            }
+            task.userId = reservation.getUserId();
+            task.labName = reservation.getLabName();
+            task.reserveDate = reservation.getReserveDate();
+            task.timeSlot = reservation.getTimeSlot();
+            resolved.add(task);
+        }
+        return resolved;
+    }
+
+    private Message buildReminderMessage(NotificationTask task, User user) {
+        Message message = new Message();
+        message.setSenderId(0L);
+        message.setSenderName("系统");
+        message.setReceiverId(user.getId());
+        message.setReceiverName(user.getUsername());
+        message.setMessageType("reminder");
+        message.setTitle(task.title);
+        message.setContent(String.format("您预约的实验室 %s 将于 %s 后开始使用（%s %s），请做好准备并准时到达。",
+                task.labName, task.note, task.reserveDate.format(DATE_FORMATTER), task.timeSlot));
+        message.setRelatedId(task.reservationId);
+        message.setRelatedType("reservation");
+        message.setIsRead(0);
+        message.setPriority(task.priority != null ? task.priority : 0);
+        message.setCreateTime(LocalDateTime.now());
+        message.setDeleted(0);
+        return message;
+    }
+
+    private Message buildMessage(NotificationTask task, User user) {
+        String reservationText = String.format("%s - %s %s",
+                task.labName, task.reserveDate.format(DATE_FORMATTER), task.timeSlot);
+        String note = task.note;
+
+        Message message = new Message();
+        message.setSenderId(0L);
+        message.setSenderName("系统");
+        message.setReceiverId(user.getId());
+        message.setReceiverName(user.getUsername());
+        message.setIsRead(0);
+        message.setCreateTime(LocalDateTime.now());
+        message.setDeleted(0);
+
+        switch (task.status) {
+            case 1:
+            case 2:
+                message.setMessageType("approval");
+                message.setTitle("预约审核通知");
+                message.setContent(String.format("您的预约[%s]审核结果：%s。%s", reservationText,
+                        task.status == 1 ? "已通过" : "已拒绝",
+                        note != null ? "审核意见：" + note : ""));
+                message.setRelatedId(task.reservationId);
+                message.setRelatedType("reservation");
+                message.setPriority(1);
+                break;
+            case 3:
+                message.setMessageType("system");
+                message.setTitle("预约取消通知");
+                message.setContent(String.format("您的预约[%s]已被取消。%s", reservationText,
+                        note != null ? "取消原因：" + note : ""));
+                message.setPriority(1);
+                break;
+            default:
+                message.setMessageType("system");
+                message.setTitle("预约完成通知");
+                message.setContent(String.format("您的预约[%s]已完成。评分：%d星。%s", reservationText,
+                        task.rating != null ? task.rating : 5,
+                        note != null ? "评价：" + note : ""));
+                message.setPriority(0);
+                break;
+        }
+        return message;
+    }
+
+    private void sendEmail(NotificationTask task, User user) throws Exception {
+        Map<String, Object> info = new HashMap<>();
+        info.put("username", user.getRealName());
+        info.put("labName", task.labName);
+        info.put("reservationDate", task.reserveDate.format(DATE_FORMATTER));
+        info.put("timeSlot", task.timeSlot);
+        if (task.kind == NotificationKind.REMINDER_EMAIL) {
+            emailService.deliverReservationReminder(user.getEmail(),
+                    user.getRealName() != null ? user.getRealName() : user.getUsername(), info);
+        } else if (task.status == 3) {
+            info.put("status", "cancelled");
+            emailService.deliverReservationNotification(user.getEmail(), user.getRealName(), info);
+        } else {
+            info.put("approved", task.status == 1);
+            info.put("reason", task.note != null ? task.note : "无");
+            emailService.deliverApprovalNotification(user.getEmail(), user.getRealName(), info);
+        }
+    }
+
+    enum NotificationKind {
+        MESSAGE, EMAIL, REMINDER_MESSAGE, REMINDER_EMAIL;
+
+        boolean isReminder() {
+            return this == REMINDER_MESSAGE || this == REMINDER_EMAIL;
+        }
+    }
+
+    /**
+     * 通知任务：保存发送所需的预约快照，可序列化后写入溢出列表
+     */
+    @Data
+    @NoArgsConstructor
+    static class NotificationTask {
+        private NotificationKind kind;
+        private Long reservationId;
+        private Long userId;
+        private String labName;
+        private LocalDate reserveDate;
+        private String timeSlot;
+        private Integer status;
+        private String note;
+        private Integer rating;
+        private String title;
+        private Integer priority;
+        private int attempts;
+
+        static NotificationTask of(NotificationKind kind, ReservationStatusChangedEvent event) {
+            NotificationTask task = new NotificationTask();
+            task.kind = kind;
+            task.reservationId = event.getReservationId();
+            task.userId = event.getUserId();
+            task.labName = event.getLabName();
+            task.reserveDate = event.getReserveDate();
+            task.timeSlot = event.getTimeSlot();
+            task.status = event.getNewStatus();
+            task.note = event.getNote();
+            task.rating = event.getRating();
+            return task;
+        }
+
+        /**
+         * 提醒任务只带预约ID，预约信息由工作线程查询补齐；note 保存距离开始的时间描述
+         */
+        static NotificationTask reminder(NotificationKind kind, Long reservationId, String title, String leadText,
+                                         Integer priority) {
+            NotificationTask task = new NotificationTask();
+            task.kind = kind;
+            task.reservationId = reservationId;
+            task.title = title;
+            task.note = leadText;
+            task.priority = priority;
+            return task;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.entity.TimeSlot;
+import com.example.shiyanshi.mapper.ReservationMapper;
+import com.example.shiyanshi.mapper.TimeSlotMapper;
+import com.example.shiyanshi.util.IntervalIndex;
+import com.example.shiyanshi.util.TimeRangeUtil;
+import com.example.shiyanshi.util.TransactionUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 实验室占用索引服务
+ *
+ * 为每个(实验室, 日期)维护一个long位图，第N位表示序号为N的时间段已被占用（待审核或已通过）。
+ * - 启动时从数据库预热[今天, 今天+horizonDays]范围内的占用情况，每天零点滚动窗口
+ * - 预约创建/修改/审核/取消/完成后（事务提交后）增量更新
+ * - 按分钟区间判断冲突：请求区间与哪些时间段重叠，就检查这些时间段的位，不要求文本相同；
+ *   位图命中即拒绝；位图空闲时单节点（local锁模式）直接放行，多节点（redis锁模式）以数据库加锁读确认
+ * - 窗口外的日期、与时间段配置不完全一致的预约（自定义区间），回退到数据库区间重叠查询
+ * - 时间段配置变更时（收到基础数据缓存失效通知）停用索引并在后台重建，预约请求线程上从不重建
+ */
+@Slf4j
+@Service
+public class OccupancyIndexService {
+
+    /**
+     * 单元格标志位：当天存在无法映射到时间段序号的预约，冲突检查需回退数据库
+     */
+    private static final long UNINDEXED_FLAG = 1L << 63;
+
+    /**
+     * 位图可表示的最大时间段数量（第63位留作标志位）
+     */
+    private static final int MAX_SLOTS = 63;
+
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private TimeSlotMapper timeSlotMapper;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    /**
+     * 预热窗口天数
+     */
+    @Value("${occupancy.horizon-days:30}")
+    private int horizonDays;
+
+    /**
+     * 预约锁模式，与 BookingLockService 一致；redis模式（多节点）下位图空闲时需数据库确认
+     */
+    @Value("${booking.lock.mode:local}")
+    private String lockMode;
+
+    /**
+     * (实验室ID:日期) -> 占用位图
+     */
+    private volatile Map<String, Long> cells = new ConcurrentHashMap<>();
+
+    /**
+     * 时间段ID -> 序号（只追加，不复用，保证已有位图含义不变）
+     */
+    private final Map<Long, Integer> slotOrdinalsById = new ConcurrentHashMap<>();
+
+    /**
+     * 时间段区间键（见 rangeKey） -> 序号
+     */
+    private volatile Map<Integer, Integer> slotOrdinals = Collections.emptyMap();
+
+    /**
+     * 时间段区间索引，元素为时间段序号
+     */
+    private volatile IntervalIndex<Integer> slotIntervals = IntervalIndex.empty();
+
+    private volatile LocalDate horizonStart;
+    private volatile LocalDate horizonEnd;
+    private volatile boolean ready = false;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * 保护 cells 的替换和增量更新，持有时间很短（不访问数据库）
+     */
+    private final ReentrantLock deltaLock = new ReentrantLock();
+
+    /**
+     * 全量重建或窗口滚动期间提交的增量更新，替换/合并位图前按顺序重放；不在重建时为null
+     */
+    private List<Consumer<Map<String, Long>>> pendingDeltas;
+
+    /**
+     * 时间段配置变更后在后台重建索引，不占用预约请求线程
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "occupancy-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    /**
+     * 应用启动完成后预热索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        catalogCacheService.addInvalidationListener(CatalogCacheService.NS_TIME_SLOT, this::onTimeSlotsChanged);
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 时间段配置变更（本节点或其他节点）：立即停用索引使冲突检查回退数据库，并在后台重建
+     * 连续多次变更只重建一次
+     */
+    private void onTimeSlotsChanged() {
+        ready = false;
+        if (rebuildRequested.compareAndSet(false, true)) {
+            rebuildExecutor.execute(() -> {
+                rebuildRequested.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    /**
+     * 重新加载时间段配置并全量重建占用索引
+     * 读取数据库期间提交的增量更新会被记录，替换位图前在新位图上重放，不会丢失
+     */
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            deltaLock.lock();
+            try {
+                pendingDeltas = new ArrayList<>();
+            } finally {
+                deltaLock.unlock();
+            }
+            reloadSlotOrdinals();
+            LocalDate start = LocalDate.now();
+            LocalDate end = start.plusDays(horizonDays);
+            Map<String, Long> newCells = new ConcurrentHashMap<>();
+            List<Reservation> reservations = reservationMapper.findActiveSlots(start, end);
+            for (Reservation reservation : reservations) {
+                newCells.merge(cellKey(reservation.getLabId(), reservation.getReserveDate()),
+                        bitsOf(reservation), (a, b) -> a | b);
+            }
+            deltaLock.lock();
+            try {
+                for (Consumer<Map<String, Long>> delta : pendingDeltas) {
+                    delta.accept(newCells);
+                }
+                cells = newCells;
+                horizonStart = start;
+                horizonEnd = end;
+                ready = true;
+            } finally {
+                deltaLock.unlock();
+            }
+            log.info("占用索引构建完成：{} 至 {}，共{}条预约，{}个单元格", start, end, reservations.size(), newCells.size());
+        } catch (Exception e) {
+            ready = false;
+            log.error("占用索引构建失败，冲突检查将回退到数据库", e);
+        } finally {
+            deltaLock.lock();
+            try {
+                pendingDeltas = null;
+            } finally {
+                deltaLock.unlock();
+            }
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * 每天零点滚动预热窗口：移除过去的日期，加载新进入窗口的日期
+     * 新日期在合并完成前不属于窗口（冲突检查回退数据库）；读取数据库期间提交的增量更新会被记录，
+     * 合并前在新日期的位图上重放，不会丢失
+     */
+    @Scheduled(cron = "0 0 0 * * ?")
+    public void rollHorizon() {
+        if (!ready) {
+            rebuild();
+            return;
+        }
+        rebuildLock.lock();
+        try {
+            LocalDate start = LocalDate.now();
+            LocalDate end = start.plusDays(horizonDays);
+            LocalDate previousEnd = horizonEnd;
+            Map<String, Long> added = new HashMap<>();
+            if (end.isAfter(previousEnd)) {
+                deltaLock.lock();
+                try {
+                    pendingDeltas = new ArrayList<>();
+                } finally {
+                    deltaLock.unlock();
+                }
+                for (Reservation reservation : reservationMapper.findActiveSlots(previousEnd.plusDays(1), end)) {
+                    added.merge(cellKey(reservation.getLabId(), reservation.getReserveDate()),
+                            bitsOf(reservation), (a, b) -> a | b);
+                }
+            }
+            deltaLock.lock();
+            try {
+                if (pendingDeltas != null) {
+                    for (Consumer<Map<String, Long>> delta : pendingDeltas) {
+                        delta.accept(added);
+                    }
+                }
+                // 窗口内原有日期的增量已直接作用于当前位图，这里只合并新进入窗口的日期
+                added.forEach((key, bits) -> {
+                    if (dateOf(key).isAfter(previousEnd)) {
+                        putCell(cells, key, bits);
+                    }
+                });
+                horizonEnd = end;
+                horizonStart = start;
+                cells.keySet().removeIf(key -> dateOf(key).isBefore(start));
+            } finally {
+                deltaLock.unlock();
+            }
+            log.info("占用索引窗口已滚动至 {} 至 {}", start, end);
+        } catch (Exception e) {
+            log.error("占用索引窗口滚动失败，重新全量构建", e);
+            ready = false;
+        } finally {
+            deltaLock.lock();
+            try {
+                pendingDeltas = null;
+            } finally {
+                deltaLock.unlock();
+            }
+            rebuildLock.unlock();
+        }
+        if (!ready) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 检查时间冲突：[startMinute, endMinute) 是否与当天已有的有效预约重叠
+     * 位图命中时直接判定冲突；位图显示空闲时：
+     * - local锁模式（单节点）：直接判定无冲突，不访问数据库。所有写入都经过本节点的预约锁，
+     *   位图在事务提交后、释放锁之前更新，持锁时读到的位图不会落后于已提交的预约
+     * - redis锁模式（多节点）：位图只反映本节点提交的变更，以数据库加锁读（FOR UPDATE）为准
+     * 直接改库写入的预约不经过位图，完全相同的时间段由数据库唯一索引 uk_active_slot 兜底。
+     * 必须在 BookingLockService 加锁后、同一事务内调用。
+     *
+     * @param timeSlot 时间段文本，仅用于匹配未迁移分钟数的旧预约
+     * @param excludeId 修改预约时排除自身，可为空
+     */
+    public boolean hasConflict(Long labId, LocalDate date, int startMinute, int endMinute, String timeSlot, Long excludeId) {
+        if (excludeId == null && covers(date)) {
+            long cell = cells.getOrDefault(cellKey(labId, date), 0L);
+            if ((cell & UNINDEXED_FLAG) == 0) {
+                if ((cell & overlapMask(startMinute, endMinute)) != 0) {
+                    return true;
+                }
+                if (!"redis".equalsIgnoreCase(lockMode)) {
+                    return false;
+                }
+            }
+        }
+        return reservationMapper.countOverlapping(labId, date, startMinute, endMinute, timeSlot, excludeId) > 0;
+    }
+
+    /**
+     * 与 [startMinute, endMinute) 重叠的时间段序号，升序；索引未就绪（时间段配置未加载或正在重建）时返回null
+     * 用于按时间段加预约锁
+     */
+    public List<Integer> overlappingSlots(int startMinute, int endMinute) {
+        if (!ready) {
+            return null;
+        }
+        List<Integer> ordinals = new ArrayList<>(slotIntervals.overlapping(startMinute, endMinute));
+        Collections.sort(ordinals);
+        return ordinals;
+    }
+
+    /**
+     * [startMinute, endMinute) 是否与某个时间段完全一致（索引未就绪时按否处理）
+     */
+    public boolean isSlotRange(int startMinute, int endMinute) {
+        return ready && slotOrdinals.containsKey(rangeKey(startMinute, endMinute));
+    }
+
+    /**
+     * 标记预约占用的时间段（事务提交后生效）
+     */
+    public void markOccupied(Reservation reservation) {
+        String key = cellKey(reservation.getLabId(), reservation.getReserveDate());
+        TransactionUtil.afterCommit(() -> {
+            long bits = bitsOf(reservation);
+            Consumer<Map<String, Long>> delta = target -> target.merge(key, bits, (a, b) -> a | b);
+            applyDelta(reservation.getReserveDate(), delta, delta);
+        });
+    }
+
+    /**
+     * 从数据库重新加载某实验室某天的占用情况（事务提交后生效）
+     * 用于取消、拒绝、完成、删除等释放时间段的场景
+     */
+    public void refresh(Long labId, LocalDate date) {
+        TransactionUtil.afterCommit(() -> {
+            long bits = loadCell(labId, date);
+            String key = cellKey(labId, date);
+            // 重放时重新读取数据库，避免用重建开始前读到的旧值覆盖新位图
+            applyDelta(date, target -> putCell(target, key, bits),
+                    target -> putCell(target, key, loadCell(labId, date)));
+        });
+    }
+
+    /**
+     * 应用增量更新：窗口内时立即作用于当前位图；正在重建或滚动窗口时同时记录，替换/合并位图前重放
+     * 重建期间索引可能处于未就绪状态，此时也必须记录，否则重建读取之后提交的变更会丢失
+     */
+    private void applyDelta(LocalDate date, Consumer<Map<String, Long>> delta, Consumer<Map<String, Long>> replay) {
+        deltaLock.lock();
+        try {
+            if (pendingDeltas != null) {
+                pendingDeltas.add(replay);
+            }
+            if (covers(date)) {
+                delta.accept(cells);
+            }
+        } finally {
+            deltaLock.unlock();
+        }
+    }
+
+    /**
+     * 从数据库读取某实验室某天的占用位图，失败时返回标志位使冲突检查回退数据库
+     */
+    private long loadCell(Long labId, LocalDate date) {
+        try {
+            long bits = 0L;
+            for (Reservation reservation : reservationMapper.findActiveSlotsByLab(labId, date, date)) {
+                bits |= bitsOf(reservation);
+            }
+            return bits;
+        } catch (Exception e) {
+            log.error("刷新占用索引失败: labId={}, date={}", labId, date, e);
+            return UNINDEXED_FLAG;
+        }
+    }
+
+    private static void putCell(Map<String, Long> target, String key, long bits) {
+        if (bits == 0L) {
+            target.remove(key);
+        } else {
+            target.put(key, bits);
+        }
+    }
+
+    /**
+     * 查询实验室一周内每天的空闲时间段（仅启用的时间段）
+     *
+     * @param labId 实验室ID
+     * @param weekStart 一周的第一天
+     * @return 日期(yyyy-MM-dd) -> 空闲时间段列表，按日期顺序排列
+     */
+    public Map<String, List<TimeSlot>> findFreeSlots(Long labId, LocalDate weekStart) {
+        List<TimeSlot> enabledSlots = timeSlotMapper.findEnabled();
+        LocalDate weekEnd = weekStart.plusDays(6);
+        Map<LocalDate, Long> occupied = occupiedBits(labId, weekStart, weekEnd);
+
+        Map<String, List<TimeSlot>> result = new LinkedHashMap<>();
+        for (LocalDate date = weekStart; !date.isAfter(weekEnd); date = date.plusDays(1)) {
+            long cell = occupied.getOrDefault(date, 0L);
+            List<TimeSlot> freeSlots = new ArrayList<>();
+            for (TimeSlot slot : enabledSlots) {
+                long mask = overlapMask(slot);
+                if (mask != 0L && (cell & mask) == 0) {
+                    freeSlots.add(slot);
+                }
+            }
+            result.put(date.toString(), freeSlots);
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取多个实验室在日期范围内每天的占用位图
+     * 整个范围都能由索引回答时直接读内存，否则一次性从数据库加载该范围内所有实验室的占用
+     *
+     * @return 实验室ID -> (日期 -> 位图)，没有占用的实验室或日期不出现
+     */
+    public Map<Long, Map<LocalDate, Long>> occupiedBits(Collection<Long> labIds, LocalDate start, LocalDate end) {
+        Map<Long, Map<LocalDate, Long>> result = new HashMap<>();
+        boolean needDatabase = !covers(start) || !covers(end);
+        if (!needDatabase) {
+            outer:
+            for (Long labId : labIds) {
+                for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                    long cell = cells.getOrDefault(cellKey(labId, date), 0L);
+                    if ((cell & UNINDEXED_FLAG) != 0) {
+                        needDatabase = true;
+                        break outer;
+                    }
+                    if (cell != 0L) {
+                        result.computeIfAbsent(labId, key -> new HashMap<>()).put(date, cell);
+                    }
+                }
+            }
+        }
+        if (needDatabase) {
+            result.clear();
+            for (Reservation reservation : reservationMapper.findActiveSlots(start, end)) {
+                if (!labIds.contains(reservation.getLabId())) {
+                    continue;
+                }
+                result.computeIfAbsent(reservation.getLabId(), key -> new HashMap<>())
+                        .merge(reservation.getReserveDate(), occupiedMaskOf(reservation),
+                                (a, b) -> a | b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 与时间段重叠的所有时间段对应的位，时间段格式无效或未分配序号时返回0
+     * 位图与该掩码相与不为0表示时间段已被占用
+     */
+    public long overlapMask(TimeSlot slot) {
+        int[] range = TimeRangeUtil.parse(slot.getStartTime() + "-" + slot.getEndTime());
+        if (range == null || slotOrdinals.get(rangeKey(range[0], range[1])) == null) {
+            return 0L;
+        }
+        return overlapMask(range[0], range[1]);
+    }
+
+    /**
+     * 获取实验室在日期范围内每天的占用位图
+     * 整个范围都能由索引回答时直接读内存，否则一次性从数据库加载该范围
+     */
+    private Map<LocalDate, Long> occupiedBits(Long labId, LocalDate start, LocalDate end) {
+        Map<LocalDate, Long> result = new HashMap<>();
+        boolean needDatabase = false;
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            if (!covers(date)) {
+                needDatabase = true;
+                break;
+            }
+            long cell = cells.getOrDefault(cellKey(labId, date), 0L);
+            if ((cell & UNINDEXED_FLAG) != 0) {
+                needDatabase = true;
+                break;
+            }
+            result.put(date, cell);
+        }
+        if (needDatabase) {
+            result.clear();
+            for (Reservation reservation : reservationMapper.findActiveSlotsByLab(labId, start, end)) {
+                result.merge(reservation.getReserveDate(), occupiedMaskOf(reservation),
+                        (a, b) -> a | b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 与 [startMinute, endMinute) 重叠的时间段对应的位
+     */
+    private long overlapMask(int startMinute, int endMinute) {
+        long mask = 0L;
+        for (Integer ordinal : slotIntervals.overlapping(startMinute, endMinute)) {
+            mask |= 1L << ordinal;
+        }
+        return mask;
+    }
+
+    /**
+     * 重新加载时间段配置，为新时间段分配序号
+     */
+    private void reloadSlotOrdinals() {
+        Map<Integer, Integer> ordinals = new HashMap<>();
+        Map<Integer, int[]> ranges = new HashMap<>();
+        for (TimeSlot slot : timeSlotMapper.findAll()) {
+            int[] range = TimeRangeUtil.parse(slot.getStartTime() + "-" + slot.getEndTime());
+            if (range == null) {
+                log.warn("时间段[{}]的开始、结束时间格式无效，已忽略", slot.getSlotName());
+                continue;
+            }
+            Integer ordinal = slotOrdinalsById.get(slot.getId());
+            if (ordinal == null) {
+                if (slotOrdinalsById.size() >= MAX_SLOTS) {
+                    log.warn("时间段数量超过占用索引上限{}，时间段[{}]将回退数据库检查", MAX_SLOTS, slot.getSlotName());
+                    continue;
+                }
+                ordinal = slotOrdinalsById.size();
+                slotOrdinalsById.put(slot.getId(), ordinal);
+            }
+            ordinals.put(rangeKey(range[0], range[1]), ordinal);
+            ranges.put(ordinal, range);
+        }
+        slotIntervals = IntervalIndex.build(ranges.keySet(), ordinal -> ranges.get(ordinal)[0],
+                ordinal -> ranges.get(ordinal)[1]);
+        slotOrdinals = ordinals;
+    }
+
+    /**
+     * 预约对应的位：区间与某个时间段完全一致时为该时间段的位，否则返回标志位
+     * 未迁移分钟数的旧预约按时间段文本解析
+     */
+    private long bitsOf(Reservation reservation) {
+        Integer start = reservation.getStartMinute();
+        Integer end = reservation.getEndMinute();
+        if (start == null || end == null) {
+            int[] range = TimeRangeUtil.parse(reservation.getTimeSlot());
+            if (range == null) {
+                return UNINDEXED_FLAG;
+            }
+            start = range[0];
+            end = range[1];
+        }
+        Integer ordinal = slotOrdinals.get(rangeKey(start, end));
+        return ordinal != null ? 1L << ordinal : UNINDEXED_FLAG;
+    }
+
+    /**
+     * 预约占用的时间段位：与时间段完全一致时为该时间段的位，自定义区间为与之重叠的所有时间段的位
+     * 用于展示空闲时间段，不含标志位
+     */
+    private long occupiedMaskOf(Reservation reservation) {
+        long bits = bitsOf(reservation);
+        if ((bits & UNINDEXED_FLAG) == 0) {
+            return bits;
+        }
+        int[] range = reservation.getStartMinute() != null && reservation.getEndMinute() != null
+                ? new int[]{reservation.getStartMinute(), reservation.getEndMinute()}
+                : TimeRangeUtil.parse(reservation.getTimeSlot());
+        return range != null ? overlapMask(range[0], range[1]) : 0L;
+    }
+
+    private static int rangeKey(int startMinute, int endMinute) {
+        return startMinute * 2000 + endMinute;
+    }
+
+    private boolean covers(LocalDate date) {
+        return ready && date != null && !date.isBefore(horizonStart) && !date.isAfter(horizonEnd);
+    }
+
+    private static String cellKey(Long labId, LocalDate date) {
+        return labId + ":" + date;
+    }
+
+    private static LocalDate dateOf(String cellKey) {
+        return LocalDate.parse(cellKey.substring(cellKey.indexOf(':') + 1));
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.event.ReservationStatusChangedEvent;
+import com.example.shiyanshi.mapper.ReservationRollupMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 预约统计汇总服务
+ *
+ * - 预约状态变更事件在发布它的事务内同步处理：旧状态计数减一、新状态计数加一，与预约记录同时提交或回滚
+ * - 新建预约旧状态为空，删除预约新状态为空
+ * - 批量审核、周期预约按 (实验室, 日期, 时间段, 状态) 和 (用户, 状态) 合并增量，各用一条多行upsert写入，
+ *   随后发布的逐条事件标记为已汇总，不再逐条更新
+ * - rebuild 从预约表分段重建汇总（首次启用、数据修复），并按 rollup.rebuild-cron 定期执行以纠正级联删除等未经过服务层的变更
+ * - rollup.read-enabled=true 时报表和统计接口读取汇总表，否则仍直接聚合预约表
+ */
+@Slf4j
+@Service
+public class ReservationRollupService {
+
+    /**
+     * 每日汇总重建每段的天数
+     */
+    private static final int REBUILD_CHUNK_DAYS = 31;
+
+    /**
+     * 用户汇总重建每段的用户ID个数
+     */
+    private static final long REBUILD_USER_CHUNK = 1000;
+
+    @Autowired
+    private ReservationRollupMapper reservationRollupMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 是否维护汇总表（需先执行 mysql/reservation_rollup.sql），默认关闭；开启后启动时检查汇总表是否存在
+     */
+    @Value("${rollup.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 报表是否读取汇总表（需先完成一次重建）
+     */
+    @Value("${rollup.read-enabled:false}")
+    private boolean readEnabled;
+
+    /**
+     * 开启汇总时检查汇总表，表不存在则启动失败，避免之后每次预约写入都因汇总更新失败而回滚
+     */
+    @PostConstruct
+    public void checkTables() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reservationRollupMapper.probeTables();
+        } catch (Exception e) {
+            throw new IllegalStateException(
+                    "已开启 rollup.enabled 但汇总表不可用，请先执行 mysql/reservation_rollup.sql 或关闭 rollup.enabled", e);
+        }
+    }
+
+    public boolean isReadEnabled() {
+        return enabled && readEnabled;
+    }
+
+    /**
+     * 预约状态变更时更新汇总（与预约在同一事务内执行）
+     */
+    @EventListener
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        if (!enabled || event.isRollupApplied()) {
+            return;
+        }
+        int people = event.getPeopleNum() != null ? event.getPeopleNum() : 0;
+        if (event.getOldStatus() != null) {
+            apply(event.getLabId(), event.getReserveDate(), event.getTimeSlot(), event.getUserId(),
+                    event.getOldStatus(), -1, -people);
+        }
+        if (event.getNewStatus() != null) {
+            apply(event.getLabId(), event.getReserveDate(), event.getTimeSlot(), event.getUserId(),
+                    event.getNewStatus(), 1, people);
+        }
+    }
+
+    /**
+     * 一批预约由同一旧状态变为同一新状态时合并更新汇总（与预约在同一事务内执行）
+     * 调用方随后发布的事件需标记 rollupApplied，避免重复计数
+     *
+     * @param oldStatus 变更前状态，新建预约时为null
+     * @param newStatus 变更后状态
+     */
+    public void onBatchStatusChanged(Collection<Reservation> reservations, Integer oldStatus, Integer newStatus) {
+        if (!enabled || reservations.isEmpty()) {
+            return;
+        }
+        Map<List<Object>, Map<String, Object>> daily = new LinkedHashMap<>();
+        Map<List<Object>, Map<String, Object>> user = new LinkedHashMap<>();
+        for (Reservation reservation : reservations) {
+            int people = reservation.getPeopleNum() != null ? reservation.getPeopleNum() : 0;
+            if (oldStatus != null) {
+                accumulate(daily, user, reservation, oldStatus, -1, -people);
+            }
+            if (newStatus != null) {
+                accumulate(daily, user, reservation, newStatus, 1, people);
+            }
+        }
+        daily.values().removeIf(row -> (int) row.get("countDelta") == 0 && (int) row.get("peopleDelta") == 0);
+        user.values().removeIf(row -> (int) row.get("countDelta") == 0);
+        if (!daily.isEmpty()) {
+            reservationRollupMapper.incrementDailyBatch(new ArrayList<>(daily.values()));
+        }
+        if (!user.isEmpty()) {
+            reservationRollupMapper.incrementUserBatch(new ArrayList<>(user.values()));
+        }
+    }
+
+    /**
+     * 待审核预约修改了实验室、日期、时间段或人数时，把计数从旧位置移到新位置
+     */
+    public void onReservationMoved(Reservation before, Reservation after) {
+        if (!enabled) {
+            return;
+        }
+        int peopleBefore = before.getPeopleNum() != null ? before.getPeopleNum() : 0;
+        int peopleAfter = after.getPeopleNum() != null ? after.getPeopleNum() : 0;
+        if (Objects.equals(before.getLabId(), after.getLabId())
+                && Objects.equals(before.getReserveDate(), after.getReserveDate())
+                && Objects.equals(before.getTimeSlot(), after.getTimeSlot())
+                && peopleBefore == peopleAfter) {
+            return;
+        }
+        reservationRollupMapper.incrementDaily(before.getLabId(), before.getReserveDate(), before.getTimeSlot(),
+                before.getStatus(), -1, -peopleBefore);
+        reservationRollupMapper.incrementDaily(after.getLabId(), after.getReserveDate(), after.getTimeSlot(),
+                after.getStatus(), 1, peopleAfter);
+    }
+
+    /**
+     * 未经过预约服务的状态变更（如定时任务直接更新状态）同步汇总
+     */
+    public void onStatusChanged(Reservation reservation, Integer oldStatus, Integer newStatus) {
+        if (!enabled) {
+            return;
+        }
+        int people = reservation.getPeopleNum() != null ? reservation.getPeopleNum() : 0;
+        apply(reservation.getLabId(), reservation.getReserveDate(), reservation.getTimeSlot(), reservation.getUserId(),
+                oldStatus, -1, -people);
+        apply(reservation.getLabId(), reservation.getReserveDate(), reservation.getTimeSlot(), reservation.getUserId(),
+                newStatus, 1, people);
+    }
+
+    /**
+     * 从用户汇总读取各状态预约数量，返回的数组下标为状态码0-4
+     */
+    public int[] getUserCounts(Long userId) {
+        int[] counts = new int[5];
+        for (Map<String, Object> row : reservationRollupMapper.findUserCounts(userId)) {
+            int status = (int) ReservationStatisticsService.toLong(row.get("status"));
+            if (status >= 0 && status < counts.length) {
+                counts[status] = (int) ReservationStatisticsService.toLong(row.get("total"));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 从预约表全量重建汇总
+     * 每日汇总按日期、用户汇总按用户ID分段重建，每段在独立的短事务内先删除再插入，
+     * 不会长时间锁住汇总表和预约表；读取方在任一时刻看到的每一段要么是旧汇总，要么是新汇总
+     *
+     * @return 重建后的汇总行数
+     */
+    public Map<String, Integer> rebuild() {
+        long start = System.currentTimeMillis();
+        int dailyRows = rebuildDaily();
+        int userRows = rebuildUser();
+        log.info("预约汇总重建完成：每日汇总{}行，用户汇总{}行，耗时{}ms",
+                dailyRows, userRows, System.currentTimeMillis() - start);
+
+        Map<String, Integer> result = new HashMap<>();
+        result.put("dailyRows", dailyRows);
+        result.put("userRows", userRows);
+        return result;
+    }
+
+    private int rebuildDaily() {
+        // 范围同时覆盖汇总表中已没有预约的日期，不单独删除范围外的行，避免误删重建期间新写入的汇总
+        LocalDate minDate = reservationRollupMapper.findMinRebuildDate();
+        LocalDate maxDate = reservationRollupMapper.findMaxRebuildDate();
+        if (minDate == null || maxDate == null) {
+            return 0;
+        }
+        int rows = 0;
+        for (LocalDate from = minDate; !from.isAfter(maxDate); from = from.plusDays(REBUILD_CHUNK_DAYS)) {
+            LocalDate chunkStart = from;
+            LocalDate chunkEnd = from.plusDays(REBUILD_CHUNK_DAYS - 1);
+            LocalDate to = chunkEnd.isAfter(maxDate) ? maxDate : chunkEnd;
+            rows += transactionTemplate.execute(status -> {
+                reservationRollupMapper.clearDailyRange(chunkStart, to);
+                return reservationRollupMapper.rebuildDailyRange(chunkStart, to);
+            });
+        }
+        return rows;
+    }
+
+    private int rebuildUser() {
+        Long maxUserId = reservationRollupMapper.findMaxRebuildUserId();
+        if (maxUserId == null) {
+            return 0;
+        }
+        int rows = 0;
+        for (long from = 0; from <= maxUserId; from += REBUILD_USER_CHUNK) {
+            long fromId = from;
+            long toId = from + REBUILD_USER_CHUNK - 1;
+            rows += transactionTemplate.execute(status -> {
+                reservationRollupMapper.clearUserRange(fromId, toId);
+                return reservationRollupMapper.rebuildUserRange(fromId, toId);
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * 定期重建，纠正实验室、用户删除时数据库级联删除的预约等未经过服务层的变更
+     */
+    @Scheduled(cron = "${rollup.rebuild-cron:0 30 3 * * ?}")
+    public void scheduledRebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("定时重建预约汇总失败", e);
+        }
+    }
+
+    private static void accumulate(Map<List<Object>, Map<String, Object>> daily,
+                                   Map<List<Object>, Map<String, Object>> user,
+                                   Reservation reservation, Integer status, int countDelta, int peopleDelta) {
+        Map<String, Object> dailyRow = daily.computeIfAbsent(
+                Arrays.asList(reservation.getLabId(), reservation.getReserveDate(), reservation.getTimeSlot(), status),
+                key -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("labId", reservation.getLabId());
+                    row.put("reserveDate", reservation.getReserveDate());
+                    row.put("timeSlot", reservation.getTimeSlot());
+                    row.put("status", status);
+                    row.put("countDelta", 0);
+                    row.put("peopleDelta", 0);
+                    return row;
+                });
+        dailyRow.merge("countDelta", countDelta, (a, b) -> (int) a + (int) b);
+        dailyRow.merge("peopleDelta", peopleDelta, (a, b) -> (int) a + (int) b);
+
+        Map<String, Object> userRow = user.computeIfAbsent(Arrays.asList(reservation.getUserId(), status), key -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put("userId", reservation.getUserId());
+            row.put("status", status);
+            row.put("countDelta", 0);
+            return row;
+        });
+        userRow.merge("countDelta", countDelta, (a, b) -> (int) a + (int) b);
+    }
+
+    private void apply(Long labId, LocalDate reserveDate, String timeSlot, Long userId,
+                       Integer status, int countDelta, int peopleDelta) {
+        reservationRollupMapper.incrementDaily(labId, reserveDate, timeSlot, status, countDelta, peopleDelta);
+        reservationRollupMapper.incrementUser(userId, status, countDelta);
+    }
+}
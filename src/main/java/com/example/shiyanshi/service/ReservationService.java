@@ -1,20 +1,40 @@
 package com.example.shiyanshi.service;
 
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.entity.Laboratory;
 import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.entity.TimeSlot;
 import com.example.shiyanshi.entity.User;
+import com.example.shiyanshi.event.ReservationStatusChangedEvent;
 import com.example.shiyanshi.mapper.LaboratoryMapper;
 import com.example.shiyanshi.mapper.ReservationMapper;
 import com.example.shiyanshi.mapper.UserMapper;
+import com.example.shiyanshi.util.TimeRangeUtil;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * 预约服务层
@@ -33,10 +53,52 @@ public class ReservationService {
     private LaboratoryMapper laboratoryMapper;
     
     @Autowired
-    private MessageService messageService;
+    private ApplicationEventPublisher eventPublisher;
     
     @Autowired
-    private EmailService emailService;
+    private OccupancyIndexService occupancyIndexService;
+    
+    @Autowired
+    private BookingLockService bookingLockService;
+    
+    @Autowired
+    private TimeSlotService timeSlotService;
+    
+    @Autowired
+    private ReservationRollupService reservationRollupService;
+    
+    /**
+     * 用户预约统计缓存最大条目数
+     */
+    private static final int USER_STATS_CACHE_MAX_SIZE = 10000;
+    
+    /**
+     * 用户预约统计缓存时间（秒），0表示不缓存；预约状态变更时立即清除对应用户的缓存
+     */
+    @Value("${reservation.user-stats.cache-ttl-seconds:30}")
+    private long userStatsCacheTtlSeconds;
+    
+    private final Map<Long, CachedUserStats> userStatsCache = new ConcurrentHashMap<>();
+    
+    /**
+     * 周期预约单次最多生成的预约数量
+     */
+    private static final int MAX_SERIES_OCCURRENCES = 100;
+    
+    /**
+     * 周期预约最长跨度（天）
+     */
+    private static final int MAX_SERIES_DAYS = 366;
+    
+    /**
+     * 批量审核单次最多处理的预约数量
+     */
+    private static final int MAX_BATCH_APPROVE = 500;
+    
+    /**
+     * 走全文索引的最短关键字长度，与MySQL ngram_token_size 一致
+     */
+    private static final int FULLTEXT_MIN_LENGTH = 2;
     
     /**
      * 根据ID查询预约
@@ -59,6 +121,22 @@ public class ReservationService {
         return reservationMapper.findByUserId(userId);
     }
     
+    /**
+     * 游标分页查询预约
+     *
+     * @param userId 用户ID，为空时查询全部
+     * @param cursor 上一页返回的游标，为空表示第一页
+     */
+    public CursorPage<Reservation> scroll(Long userId, String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        CursorPage.Cursor position = CursorPage.decode(cursor);
+        List<Reservation> rows = reservationMapper.scroll(userId,
+                position != null ? position.getCreateTime() : null,
+                position != null ? position.getId() : null,
+                pageSize + 1);
+        return CursorPage.of(rows, pageSize, Reservation::getCreateTime, Reservation::getId);
+    }
+    
     /**
      * 根据实验室ID查询预约
      */
@@ -85,6 +163,24 @@ public class ReservationService {
      */
     @Transactional
     public Reservation createReservation(Reservation reservation) {
+        resolveTimeRange(reservation);
+        
+        // 预约重叠时间段的请求串行处理，抢不到锁直接失败
+        bookingLockService.lock(reservation.getLabId(), reservation.getReserveDate(),
+            reservation.getStartMinute(), reservation.getEndMinute());
+        
+        // 检查时间冲突（区间重叠）
+        if (occupancyIndexService.hasConflict(
+            reservation.getLabId(),
+            reservation.getReserveDate(),
+            reservation.getStartMinute(),
+            reservation.getEndMinute(),
+            reservation.getTimeSlot(),
+            null
+        )) {
+            throw new RuntimeException("该时间段已被预约");
+        }
+        
         // 验证用户
         User user = userMapper.findById(reservation.getUserId());
         if (user == null) {
@@ -105,16 +201,6 @@ public class ReservationService {
             throw new RuntimeException("不能预约过去的日期");
         }
         
-        // 检查时间冲突
-        int conflict = reservationMapper.checkTimeConflict(
-            reservation.getLabId(),
-            reservation.getReserveDate(),
-            reservation.getTimeSlot()
-        );
-        if (conflict > 0) {
-            throw new RuntimeException("该时间段已被预约");
-        }
-        
         // 检查人数是否超过容量
         if (reservation.getPeopleNum() > laboratory.getCapacity()) {
             throw new RuntimeException("预约人数超过实验室容量");
@@ -125,10 +211,212 @@ public class ReservationService {
         reservation.setLabName(laboratory.getLabName());
         reservation.setStatus(0); // 待审核
         
-        reservationMapper.insert(reservation);
+        try {
+            reservationMapper.insert(reservation);
+        } catch (DuplicateKeyException e) {
+            // 数据库唯一索引兜底（多节点未开启Redis锁等情况）
+            throw new RuntimeException("该时间段已被预约");
+        }
+        occupancyIndexService.markOccupied(reservation);
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, null, 0, null));
         return reservation;
     }
     
+    /**
+     * 确定预约的时间段：指定 timeSlotId 时使用时间段配置，否则解析 timeSlot 文本并匹配时间段配置
+     * 设置规范化后的 timeSlot 文本、timeSlotId（自定义区间为空）、startMinute、endMinute
+     */
+    private void resolveTimeRange(Reservation reservation) {
+        if (reservation.getTimeSlotId() != null) {
+            TimeSlot slot = timeSlotService.findById(reservation.getTimeSlotId());
+            if (slot == null) {
+                throw new RuntimeException("时间段不存在");
+            }
+            reservation.setTimeSlot(slot.getStartTime() + "-" + slot.getEndTime());
+        }
+        int[] range = TimeRangeUtil.parse(reservation.getTimeSlot());
+        if (range == null) {
+            throw new RuntimeException("时间段格式无效，应为HH:mm-HH:mm且结束时间晚于开始时间");
+        }
+        reservation.setStartMinute(range[0]);
+        reservation.setEndMinute(range[1]);
+        reservation.setTimeSlot(TimeRangeUtil.format(range[0]) + "-" + TimeRangeUtil.format(range[1]));
+        if (reservation.getTimeSlotId() == null) {
+            for (TimeSlot slot : timeSlotService.findAll()) {
+                int[] slotRange = TimeRangeUtil.parse(slot.getStartTime() + "-" + slot.getEndTime());
+                if (slotRange != null && slotRange[0] == range[0] && slotRange[1] == range[1]) {
+                    reservation.setTimeSlotId(slot.getId());
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 创建周期预约（如16周内每周二同一时间段）
+     * 用户、实验室只校验一次；所有日期的冲突用一条查询检查，空闲日期用一条多行INSERT写入。
+     * - ALL_OR_NOTHING：任一日期冲突则不创建任何预约
+     * - BEST_EFFORT：跳过冲突日期，创建其余预约
+     */
+    @Transactional
+    public SeriesResult createSeries(SeriesRequest request) {
+        if (request.getUserId() == null || request.getLabId() == null
+                || (request.getTimeSlot() == null && request.getTimeSlotId() == null) || request.getStartDate() == null) {
+            throw new RuntimeException("预约信息不完整");
+        }
+        boolean bestEffort = "BEST_EFFORT".equalsIgnoreCase(request.getMode());
+        if (!bestEffort && request.getMode() != null && !"ALL_OR_NOTHING".equalsIgnoreCase(request.getMode())) {
+            throw new RuntimeException("预约模式无效，应为 ALL_OR_NOTHING 或 BEST_EFFORT");
+        }
+        if (request.getStartDate().isBefore(LocalDate.now())) {
+            throw new RuntimeException("不能预约过去的日期");
+        }
+        List<LocalDate> dates = expandSeries(request);
+        if (dates.isEmpty()) {
+            throw new RuntimeException("周期规则没有生成任何预约日期");
+        }
+        Reservation slot = new Reservation();
+        slot.setTimeSlot(request.getTimeSlot());
+        slot.setTimeSlotId(request.getTimeSlotId());
+        resolveTimeRange(slot);
+        
+        User user = userMapper.findById(request.getUserId());
+        if (user == null) {
+            throw new RuntimeException("用户不存在");
+        }
+        Laboratory laboratory = laboratoryMapper.findById(request.getLabId());
+        if (laboratory == null) {
+            throw new RuntimeException("实验室不存在");
+        }
+        if (laboratory.getStatus() != 1) {
+            throw new RuntimeException("实验室当前不可预约");
+        }
+        if (request.getPeopleNum() != null && request.getPeopleNum() > laboratory.getCapacity()) {
+            throw new RuntimeException("预约人数超过实验室容量");
+        }
+        
+        // 逐个日期加锁，抢不到锁的日期按冲突处理；锁在事务结束后释放
+        Map<LocalDate, String> conflicts = new LinkedHashMap<>();
+        List<LocalDate> locked = new ArrayList<>();
+        for (LocalDate date : dates) {
+            try {
+                bookingLockService.lock(request.getLabId(), date, slot.getStartMinute(), slot.getEndMinute());
+                locked.add(date);
+            } catch (RuntimeException e) {
+                conflicts.put(date, e.getMessage());
+            }
+        }
+        // 加锁读：读取最新提交的预约并锁住区间，不受前面查询建立的事务快照影响
+        if (!locked.isEmpty()) {
+            for (Reservation occupied : reservationMapper.findOverlappingByDates(request.getLabId(), locked,
+                    slot.getStartMinute(), slot.getEndMinute(), slot.getTimeSlot())) {
+                conflicts.put(occupied.getReserveDate(), "该时间段已被预约");
+            }
+        }
+        
+        SeriesResult result = new SeriesResult();
+        result.setMode(bestEffort ? "BEST_EFFORT" : "ALL_OR_NOTHING");
+        result.setRequested(dates.size());
+        for (LocalDate date : dates) {
+            if (conflicts.containsKey(date)) {
+                Map<String, Object> conflict = new HashMap<>();
+                conflict.put("reserveDate", date);
+                conflict.put("reason", conflicts.get(date));
+                result.getConflicts().add(conflict);
+            }
+        }
+        if (!conflicts.isEmpty() && !bestEffort) {
+            return result;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<Reservation> reservations = new ArrayList<>();
+        for (LocalDate date : dates) {
+            if (conflicts.containsKey(date)) {
+                continue;
+            }
+            Reservation reservation = new Reservation();
+            reservation.setUserId(request.getUserId());
+            reservation.setLabId(request.getLabId());
+            reservation.setReserveDate(date);
+            reservation.setTimeSlot(slot.getTimeSlot());
+            reservation.setTimeSlotId(slot.getTimeSlotId());
+            reservation.setStartMinute(slot.getStartMinute());
+            reservation.setEndMinute(slot.getEndMinute());
+            reservation.setPeopleNum(request.getPeopleNum());
+            reservation.setPurpose(request.getPurpose());
+            reservation.setExperimentName(request.getExperimentName());
+            reservation.setEquipment(request.getEquipment());
+            reservation.setStatus(0); // 待审核
+            reservation.setCreateTime(now);
+            reservation.setUpdateTime(now);
+            reservation.setUserName(user.getRealName());
+            reservation.setLabName(laboratory.getLabName());
+            reservations.add(reservation);
+        }
+        if (!reservations.isEmpty()) {
+            try {
+                reservationMapper.insertBatch(reservations);
+            } catch (DuplicateKeyException e) {
+                // 数据库唯一索引兜底，整批回滚
+                throw new RuntimeException("部分时间段刚被其他用户预约，请重试");
+            }
+            // 统计汇总合并为一次批量更新，逐条事件只供通知等其他监听方使用
+            reservationRollupService.onBatchStatusChanged(reservations, null, 0);
+            for (Reservation reservation : reservations) {
+                occupancyIndexService.markOccupied(reservation);
+                eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, null, 0, null, null, true));
+            }
+        }
+        result.setCreated(reservations);
+        return result;
+    }
+    
+    /**
+     * 按周期规则展开预约日期
+     * 未指定星期时使用开始日期的星期；未指定结束日期时需指定次数
+     */
+    static List<LocalDate> expandSeries(SeriesRequest request) {
+        LocalDate start = request.getStartDate();
+        Integer occurrences = request.getOccurrences();
+        if (request.getEndDate() == null && occurrences == null) {
+            throw new RuntimeException("结束日期和预约次数至少指定一个");
+        }
+        if (occurrences != null && (occurrences <= 0 || occurrences > MAX_SERIES_OCCURRENCES)) {
+            throw new RuntimeException("预约次数应在1-" + MAX_SERIES_OCCURRENCES + "之间");
+        }
+        LocalDate end = request.getEndDate() != null ? request.getEndDate() : start.plusDays(MAX_SERIES_DAYS - 1);
+        if (end.isBefore(start)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_SERIES_DAYS) {
+            throw new RuntimeException("周期预约跨度不能超过" + MAX_SERIES_DAYS + "天");
+        }
+        int intervalWeeks = request.getIntervalWeeks() != null ? request.getIntervalWeeks() : 1;
+        if (intervalWeeks < 1) {
+            throw new RuntimeException("间隔周数至少为1");
+        }
+        Set<Integer> daysOfWeek = request.getDaysOfWeek() != null && !request.getDaysOfWeek().isEmpty()
+                ? new HashSet<>(request.getDaysOfWeek())
+                : Set.of(start.getDayOfWeek().getValue());
+        
+        LocalDate firstMonday = start.minusDays(start.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            long week = ChronoUnit.DAYS.between(firstMonday, date) / 7;
+            if (week % intervalWeeks == 0 && daysOfWeek.contains(date.getDayOfWeek().getValue())) {
+                dates.add(date);
+                if (occurrences != null && dates.size() >= occurrences) {
+                    break;
+                }
+                if (dates.size() > MAX_SERIES_OCCURRENCES) {
+                    throw new RuntimeException("周期预约最多生成" + MAX_SERIES_OCCURRENCES + "个预约");
+                }
+            }
+        }
+        return dates;
+    }
+    
     /**
      * 更新预约
      */
@@ -142,20 +430,49 @@ public class ReservationService {
             throw new RuntimeException("只能修改待审核的预约");
         }
         
-        // 如果修改了日期或时间段，检查冲突
-        if (!existReservation.getReserveDate().equals(reservation.getReserveDate()) ||
-            !existReservation.getTimeSlot().equals(reservation.getTimeSlot())) {
-            int conflict = reservationMapper.checkTimeConflict(
-                reservation.getLabId(),
-                reservation.getReserveDate(),
-                reservation.getTimeSlot()
-            );
-            if (conflict > 0) {
+        // 未修改时间段时沿用原时间段（同时为迁移前的旧预约补齐分钟数）
+        if (reservation.getTimeSlot() == null && reservation.getTimeSlotId() == null) {
+            reservation.setTimeSlot(existReservation.getTimeSlot());
+            reservation.setTimeSlotId(existReservation.getTimeSlotId());
+        }
+        resolveTimeRange(reservation);
+        Long labId = reservation.getLabId() != null ? reservation.getLabId() : existReservation.getLabId();
+        LocalDate reserveDate = reservation.getReserveDate() != null ? reservation.getReserveDate() : existReservation.getReserveDate();
+        
+        // 如果修改了实验室、日期或时间段，检查冲突
+        if (!labId.equals(existReservation.getLabId()) ||
+            !reserveDate.equals(existReservation.getReserveDate()) ||
+            !Objects.equals(reservation.getStartMinute(), existReservation.getStartMinute()) ||
+            !Objects.equals(reservation.getEndMinute(), existReservation.getEndMinute())) {
+            // 冲突检查为加锁读，读取加锁后最新提交的预约，不受前面查询建立的事务快照影响
+            bookingLockService.lock(labId, reserveDate, reservation.getStartMinute(), reservation.getEndMinute());
+            if (occupancyIndexService.hasConflict(
+                labId,
+                reserveDate,
+                reservation.getStartMinute(),
+                reservation.getEndMinute(),
+                reservation.getTimeSlot(),
+                reservation.getId()
+            )) {
                 throw new RuntimeException("该时间段已被预约");
             }
         }
         
-        reservationMapper.updateById(reservation);
+        try {
+            reservationMapper.updateById(reservation);
+        } catch (DuplicateKeyException e) {
+            throw new RuntimeException("该时间段已被预约");
+        }
+        occupancyIndexService.refresh(existReservation.getLabId(), existReservation.getReserveDate());
+        occupancyIndexService.refresh(labId, reserveDate);
+        
+        Reservation moved = new Reservation();
+        moved.setLabId(labId);
+        moved.setReserveDate(reserveDate);
+        moved.setTimeSlot(reservation.getTimeSlot());
+        moved.setPeopleNum(reservation.getPeopleNum() != null ? reservation.getPeopleNum() : existReservation.getPeopleNum());
+        moved.setStatus(existReservation.getStatus());
+        reservationRollupService.onReservationMoved(existReservation, moved);
     }
     
     /**
@@ -174,49 +491,77 @@ public class ReservationService {
             throw new RuntimeException("审核状态无效");
         }
         reservationMapper.approve(id, status, approver, comment);
+        if (status == 2) {
+            occupancyIndexService.refresh(reservation.getLabId(), reservation.getReserveDate());
+        }
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, 0, status, comment));
+    }
+    
+    /**
+     * 批量审核预约
+     * 一条查询校验状态，一条条件UPDATE修改状态；站内消息和邮件由通知服务在事务提交后异步批量处理。
+     * 不存在或已审核的预约跳过并返回原因，不影响其他预约。
+     *
+     * @return processed 已审核的预约ID，skipped 跳过的预约（id、reason）
+     */
+    @Transactional
+    public Map<String, Object> approveBatch(List<Long> ids, Integer status, String approver, String comment) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RuntimeException("预约ID列表不能为空");
+        }
+        if (ids.size() > MAX_BATCH_APPROVE) {
+            throw new RuntimeException("单次最多审核" + MAX_BATCH_APPROVE + "条预约");
+        }
+        if (status == null || (status != 1 && status != 2)) {
+            throw new RuntimeException("审核状态无效");
+        }
         
-        // 发送审核结果通知
-        try {
-            User user = userMapper.findById(reservation.getUserId());
-            if (user != null) {
-                String statusText = status == 1 ? "已通过" : "已拒绝";
-                String title = "预约审核通知";
-                String content = String.format("您的预约[%s - %s %s]审核结果：%s。%s",
-                    reservation.getLabName(),
-                    reservation.getReserveDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    reservation.getTimeSlot(),
-                    statusText,
-                    comment != null ? "审核意见：" + comment : "");
-                
-                // 发送站内消息
-                messageService.sendApprovalMessage(
-                    reservation.getUserId(),
-                    title,
-                    content,
-                    reservation.getId(),
-                    1
-                );
-                
-                // 发送邮件通知
-                if (user.getEmail() != null && !user.getEmail().isEmpty()) {
-                    Map<String, Object> approvalInfo = new HashMap<>();
-                    approvalInfo.put("username", user.getRealName());
-                    approvalInfo.put("labName", reservation.getLabName());
-                    approvalInfo.put("reservationDate", reservation.getReserveDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-                    approvalInfo.put("timeSlot", reservation.getTimeSlot());
-                    approvalInfo.put("status", statusText);
-                    approvalInfo.put("note", comment != null ? comment : "无");
-                    
-                    emailService.sendApprovalNotification(
-                        user.getEmail(),
-                        user.getRealName(),
-                        approvalInfo
-                    );
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        Map<Long, Reservation> found = new HashMap<>();
+        for (Reservation reservation : reservationMapper.findByIdsWithLab(uniqueIds)) {
+            found.put(reservation.getId(), reservation);
+        }
+        List<Reservation> pending = new ArrayList<>();
+        List<Map<String, Object>> skipped = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            Reservation reservation = found.get(id);
+            String reason = reservation == null ? "预约不存在"
+                    : reservation.getStatus() != 0 ? "该预约已经审核过了" : null;
+            if (reason != null) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", id);
+                item.put("reason", reason);
+                skipped.add(item);
+            } else {
+                pending.add(reservation);
+            }
+        }
+        
+        List<Long> processed = new ArrayList<>();
+        if (!pending.isEmpty()) {
+            for (Reservation reservation : pending) {
+                processed.add(reservation.getId());
+            }
+            int updated = reservationMapper.approveBatch(processed, status, approver, comment);
+            if (updated != processed.size()) {
+                // 校验后有预约被其他管理员处理，整批回滚，避免事件与实际状态不一致
+                throw new RuntimeException("部分预约已被其他管理员处理，请刷新后重试");
+            }
+            // 统计汇总合并为一次批量更新，逐条事件只供通知等其他监听方使用
+            reservationRollupService.onBatchStatusChanged(pending, 0, status);
+            Set<String> refreshed = new HashSet<>();
+            for (Reservation reservation : pending) {
+                if (status == 2 && refreshed.add(reservation.getLabId() + ":" + reservation.getReserveDate())) {
+                    occupancyIndexService.refresh(reservation.getLabId(), reservation.getReserveDate());
                 }
+                eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, 0, status, comment, null, true));
             }
-        } catch (Exception e) {
-            log.error("发送审核通知失败", e);
         }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("processed", processed);
+        result.put("skipped", skipped);
+        return result;
     }
     
     /**
@@ -232,46 +577,9 @@ public class ReservationService {
             throw new RuntimeException("该预约不能取消");
         }
         reservationMapper.cancel(id, cancelReason);
-        
-        // 发送取消通知
-        try {
-            User user = userMapper.findById(reservation.getUserId());
-            if (user != null) {
-                String title = "预约取消通知";
-                String content = String.format("您的预约[%s - %s %s]已被取消。%s",
-                    reservation.getLabName(),
-                    reservation.getReserveDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    reservation.getTimeSlot(),
-                    cancelReason != null ? "取消原因：" + cancelReason : "");
-                
-                // 发送站内消息
-                messageService.sendSystemMessage(
-                    reservation.getUserId(),
-                    title,
-                    content,
-                    1
-                );
-                
-                // 发送邮件通知
-                if (user.getEmail() != null && !user.getEmail().isEmpty()) {
-                    Map<String, Object> cancelInfo = new HashMap<>();
-                    cancelInfo.put("username", user.getRealName());
-                    cancelInfo.put("labName", reservation.getLabName());
-                    cancelInfo.put("reservationDate", reservation.getReserveDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-                    cancelInfo.put("timeSlot", reservation.getTimeSlot());
-                    cancelInfo.put("status", "已取消");
-                    cancelInfo.put("note", cancelReason != null ? cancelReason : "无");
-                    
-                    emailService.sendApprovalNotification(
-                        user.getEmail(),
-                        user.getRealName(),
-                        cancelInfo
-                    );
-                }
-            }
-        } catch (Exception e) {
-            log.error("发送取消通知失败", e);
-        }
+        occupancyIndexService.refresh(reservation.getLabId(), reservation.getReserveDate());
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(
+            reservation, reservation.getStatus(), 3, cancelReason));
     }
     
     /**
@@ -290,48 +598,77 @@ public class ReservationService {
             throw new RuntimeException("评分必须在1-5之间");
         }
         reservationMapper.complete(id, rating, comment);
-        
-        // 发送完成通知
-        try {
-            User user = userMapper.findById(reservation.getUserId());
-            if (user != null) {
-                String title = "预约完成通知";
-                String content = String.format("您的预约[%s - %s %s]已完成。评分：%d星。%s",
-                    reservation.getLabName(),
-                    reservation.getReserveDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    reservation.getTimeSlot(),
-                    rating,
-                    comment != null ? "评价：" + comment : "");
-                
-                // 发送站内消息
-                messageService.sendSystemMessage(
-                    reservation.getUserId(),
-                    title,
-                    content,
-                    0
-                );
-            }
-        } catch (Exception e) {
-            log.error("发送完成通知失败", e);
-        }
+        occupancyIndexService.refresh(reservation.getLabId(), reservation.getReserveDate());
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, 1, 4, comment, rating));
     }
     
     /**
      * 删除预约
      */
+    @Transactional
     public void deleteById(Long id) {
         Reservation reservation = reservationMapper.findById(id);
         if (reservation == null) {
             throw new RuntimeException("预约不存在");
         }
         reservationMapper.deleteById(id);
+        occupancyIndexService.refresh(reservation.getLabId(), reservation.getReserveDate());
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation, reservation.getStatus(), null, null));
     }
     
     /**
-     * 搜索预约
+     * 搜索预约（分页）
+     * 关键字匹配用户姓名、实验室名称、实验名称，不少于 FULLTEXT_MIN_LENGTH 个字符时走全文索引
+     *
+     * @param page 页码，从1开始
+     * @param size 每页条数，默认20，最大100
+     * @return list、total、page、size
      */
-    public List<Reservation> search(String keyword, Integer status, LocalDate startDate, LocalDate endDate) {
-        return reservationMapper.search(keyword, status, startDate, endDate);
+    public Map<String, Object> search(String keyword, Integer status, Long labId, LocalDate startDate,
+                                      LocalDate endDate, Integer page, Integer size) {
+        int pageNum = page == null || page < 1 ? 1 : page;
+        int pageSize = CursorPage.normalizeSize(size);
+        long offset = (long) (pageNum - 1) * pageSize;
+        String trimmedKeyword = keyword != null && !keyword.trim().isEmpty() ? keyword.trim() : null;
+        String matchKeyword = toMatchPhrase(trimmedKeyword);
+        
+        long total = reservationMapper.countSearch(trimmedKeyword, matchKeyword, status, labId, startDate, endDate);
+        // 偏移量超出结果数时不再查询，传给LIMIT的偏移量因此不会超过 total
+        List<Reservation> list = total > offset
+                ? reservationMapper.search(trimmedKeyword, matchKeyword, status, labId, startDate, endDate,
+                        offset, pageSize)
+                : List.of();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", list);
+        result.put("total", total);
+        result.put("page", pageNum);
+        result.put("size", pageSize);
+        return result;
+    }
+    
+    /**
+     * 关键字转为全文检索的短语（BOOLEAN MODE 下用双引号包裹，去掉运算符），过短时返回null走 LIKE
+     */
+    private static String toMatchPhrase(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String text = keyword.replaceAll("[\"+\\-<>()~*@]", " ").trim();
+        if (text.codePointCount(0, text.length()) < FULLTEXT_MIN_LENGTH) {
+            return null;
+        }
+        return "\"" + text + "\"";
+    }
+    
+    /**
+     * 流式遍历导出数据，每读到一行就交给consumer处理
+     * 所有过滤条件（含实验室ID）都在SQL中完成
+     */
+    public void streamForExport(LocalDate startDate, LocalDate endDate, Long labId, Integer status,
+                                Consumer<Reservation> consumer) {
+        reservationMapper.streamForExport(status, labId, startDate, endDate,
+                context -> consumer.accept(context.getResultObject()));
     }
     
     /**
@@ -385,8 +722,19 @@ public class ReservationService {
      */
     public boolean checkTimeConflict(Long labId, String reserveDate, String timeSlot) {
         LocalDate date = LocalDate.parse(reserveDate);
-        int conflict = reservationMapper.checkTimeConflict(labId, date, timeSlot);
-        return conflict > 0;
+        int[] range = TimeRangeUtil.parse(timeSlot);
+        if (range == null) {
+            throw new RuntimeException("时间段格式无效，应为HH:mm-HH:mm且结束时间晚于开始时间");
+        }
+        return occupancyIndexService.hasConflict(labId, date, range[0], range[1],
+                TimeRangeUtil.format(range[0]) + "-" + TimeRangeUtil.format(range[1]), null);
+    }
+    
+    /**
+     * 查询实验室一周内每天的空闲时间段
+     */
+    public Map<String, List<TimeSlot>> findFreeSlots(Long labId, String weekStart) {
+        return occupancyIndexService.findFreeSlots(labId, LocalDate.parse(weekStart));
     }
     
     /**
@@ -395,7 +743,7 @@ public class ReservationService {
     public List<Reservation> findByDateRange(String startDate, String endDate) {
         LocalDate start = LocalDate.parse(startDate);
         LocalDate end = LocalDate.parse(endDate);
-        return search(null, null, start, end);
+        return reservationMapper.findByDateRange(start, end);
     }
     
     /**
@@ -426,15 +774,138 @@ public class ReservationService {
      * - rejected: 已拒绝(2)
      * - canceled: 已取消(3)
      * - completed: 已完成(4)
+     * 一次分组查询得到所有状态的数量，结果按 reservation.user-stats.cache-ttl-seconds 短时缓存
      */
     public Map<String, Integer> getUserReservationStats(Long userId) {
+        if (userStatsCacheTtlSeconds > 0) {
+            CachedUserStats cached = userStatsCache.get(userId);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                return new HashMap<>(cached.stats);
+            }
+        }
+        
+        int[] counts;
+        if (reservationRollupService.isReadEnabled()) {
+            counts = reservationRollupService.getUserCounts(userId);
+        } else {
+            counts = new int[5];
+            for (Map<String, Object> row : reservationMapper.countGroupByStatusForUser(userId)) {
+                int status = (int) ReservationStatisticsService.toLong(row.get("status"));
+                if (status >= 0 && status < counts.length) {
+                    counts[status] = (int) ReservationStatisticsService.toLong(row.get("total"));
+                }
+            }
+        }
         Map<String, Integer> stats = new HashMap<>();
-        stats.put("total", countByUserId(userId));
-        stats.put("pending", countByUserIdAndStatus(userId, 0));
-        stats.put("approved", countByUserIdAndStatus(userId, 1));
-        stats.put("rejected", countByUserIdAndStatus(userId, 2));
-        stats.put("canceled", countByUserIdAndStatus(userId, 3));
-        stats.put("completed", countByUserIdAndStatus(userId, 4));
+        stats.put("total", counts[1] + counts[4]);
+        stats.put("pending", counts[0]);
+        stats.put("approved", counts[1]);
+        stats.put("rejected", counts[2]);
+        stats.put("canceled", counts[3]);
+        stats.put("completed", counts[4]);
+        
+        if (userStatsCacheTtlSeconds > 0) {
+            if (userStatsCache.size() >= USER_STATS_CACHE_MAX_SIZE) {
+                long now = System.currentTimeMillis();
+                userStatsCache.values().removeIf(entry -> entry.expiresAt <= now);
+                if (userStatsCache.size() >= USER_STATS_CACHE_MAX_SIZE) {
+                    userStatsCache.clear();
+                }
+            }
+            userStatsCache.put(userId, new CachedUserStats(
+                new HashMap<>(stats), System.currentTimeMillis() + userStatsCacheTtlSeconds * 1000));
+        }
         return stats;
     }
+    
+    /**
+     * 用户的预约状态变更提交后清除其统计缓存
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void evictUserStats(ReservationStatusChangedEvent event) {
+        if (event.getUserId() != null) {
+            userStatsCache.remove(event.getUserId());
+        }
+    }
+    
+    /**
+     * 用户预约统计缓存条目
+     */
+    private static class CachedUserStats {
+        private final Map<String, Integer> stats;
+        private final long expiresAt;
+        
+        CachedUserStats(Map<String, Integer> stats, long expiresAt) {
+            this.stats = stats;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    /**
+     * 周期预约请求
+     */
+    @Data
+    public static class SeriesRequest {
+        private Long userId;
+        private Long labId;
+        
+        /**
+         * 时间段文本（如 08:00-10:00），与 timeSlotId 至少指定一个
+         */
+        private String timeSlot;
+        private Long timeSlotId;
+        private Integer peopleNum;
+        private String purpose;
+        private String experimentName;
+        private String equipment;
+        private LocalDate startDate;
+        
+        /**
+         * 结束日期（含），与 occurrences 至少指定一个
+         */
+        private LocalDate endDate;
+        
+        /**
+         * 预约次数，达到后停止
+         */
+        private Integer occurrences;
+        
+        /**
+         * 星期几（1-周一 ... 7-周日），为空时使用开始日期的星期
+         */
+        private List<Integer> daysOfWeek;
+        
+        /**
+         * 每隔几周，默认1
+         */
+        private Integer intervalWeeks;
+        
+        /**
+         * ALL_OR_NOTHING（默认）或 BEST_EFFORT
+         */
+        private String mode;
+    }
+    
+    /**
+     * 周期预约结果
+     */
+    @Data
+    public static class SeriesResult {
+        private String mode;
+        
+        /**
+         * 周期规则展开的日期数量
+         */
+        private int requested;
+        
+        /**
+         * 已创建的预约
+         */
+        private List<Reservation> created = new ArrayList<>();
+        
+        /**
+         * 冲突的日期：reserveDate、reason
+         */
+        private List<Map<String, Object>> conflicts = new ArrayList<>();
+    }
 }
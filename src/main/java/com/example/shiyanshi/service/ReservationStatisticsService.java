@@ -0,0 +1,174 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.TimeSlot;
+import com.example.shiyanshi.mapper.ReservationMapper;
+import com.example.shiyanshi.mapper.ReservationRollupMapper;
+import com.example.shiyanshi.mapper.TimeSlotMapper;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预约统计服务
+ * 聚合全部在MySQL中用GROUP BY完成，Java侧只处理分组结果，
+ * 耗时和内存只与实验室数、时间段数、天数有关，与预约记录数无关。
+ * 开启 rollup.read-enabled 后从汇总表读取（见 ReservationRollupService），不再扫描预约表。
+ */
+@Service
+public class ReservationStatisticsService {
+
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private TimeSlotMapper timeSlotMapper;
+
+    @Autowired
+    private ReservationRollupMapper reservationRollupMapper;
+
+    @Autowired
+    private ReservationRollupService reservationRollupService;
+
+    /**
+     * 生成统计报告（状态汇总、实验室使用率、时间段热力图、每日趋势）
+     *
+     * @param startDate 开始日期（可选）
+     * @param endDate 结束日期（可选）
+     */
+    public Report buildReport(LocalDate startDate, LocalDate endDate) {
+        boolean fromRollup = reservationRollupService.isReadEnabled();
+        Report report = new Report();
+        report.setStartDate(startDate);
+        report.setEndDate(endDate);
+
+        Map<Integer, Long> statusCounts = new LinkedHashMap<>();
+        for (int status = 0; status <= 4; status++) {
+            statusCounts.put(status, 0L);
+        }
+        long total = 0;
+        for (Map<String, Object> row : (fromRollup
+                ? reservationRollupMapper.countGroupByStatus(startDate, endDate)
+                : reservationMapper.countGroupByStatus(startDate, endDate))) {
+            long count = toLong(row.get("total"));
+            statusCounts.put((int) toLong(row.get("status")), count);
+            total += count;
+        }
+        report.setStatusCounts(statusCounts);
+        report.setTotal(total);
+
+        List<Map<String, Object>> daily = fromRollup
+                ? reservationRollupMapper.statGroupByDay(startDate, endDate)
+                : reservationMapper.statGroupByDay(startDate, endDate);
+        report.setDaily(daily);
+
+        List<TimeSlot> enabledSlots = timeSlotMapper.findEnabled();
+        long days = countDays(startDate, endDate, daily);
+        long availableSlots = days * enabledSlots.size();
+        List<Map<String, Object>> labs = fromRollup
+                ? reservationRollupMapper.statGroupByLab(startDate, endDate)
+                : reservationMapper.statGroupByLab(startDate, endDate);
+        for (Map<String, Object> lab : labs) {
+            long usedSlots = toLong(lab.get("approved")) + toLong(lab.get("completed"));
+            lab.put("usedSlots", usedSlots);
+            lab.put("availableSlots", availableSlots);
+            lab.put("utilization", availableSlots > 0 ? usedSlots * 100.0 / availableSlots : 0.0);
+        }
+        report.setLabs(labs);
+        report.setDays(days);
+
+        // 热力图行按启用时间段的排序，数据中出现的其他时间段（已停用或旧格式）排在后面
+        Map<String, long[]> heatmap = new LinkedHashMap<>();
+        for (TimeSlot slot : enabledSlots) {
+            heatmap.put(slot.getStartTime() + "-" + slot.getEndTime(), new long[7]);
+        }
+        for (Map<String, Object> row : (fromRollup
+                ? reservationRollupMapper.statGroupBySlot(startDate, endDate)
+                : reservationMapper.statGroupBySlot(startDate, endDate))) {
+            String timeSlot = String.valueOf(row.get("timeSlot"));
+            int weekday = (int) toLong(row.get("weekday"));
+            heatmap.computeIfAbsent(timeSlot, key -> new long[7])[weekday] += toLong(row.get("total"));
+        }
+        report.setSlotHeatmap(heatmap);
+        return report;
+    }
+
+    /**
+     * 统计天数：给定起止日期时按区间计算，否则按数据中最早和最晚的预约日期计算
+     */
+    private long countDays(LocalDate startDate, LocalDate endDate, List<Map<String, Object>> daily) {
+        LocalDate first = startDate;
+        LocalDate last = endDate;
+        if (!daily.isEmpty()) {
+            if (first == null) {
+                first = toLocalDate(daily.get(0).get("reserveDate"));
+            }
+            if (last == null) {
+                last = toLocalDate(daily.get(daily.size() - 1).get("reserveDate"));
+            }
+        }
+        if (first == null || last == null || last.isBefore(first)) {
+            return 0;
+        }
+        return ChronoUnit.DAYS.between(first, last) + 1;
+    }
+
+    /**
+     * 分组结果中的COUNT/SUM在不同驱动版本下可能是Long或BigDecimal
+     */
+    public static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        return value != null ? LocalDate.parse(value.toString()) : null;
+    }
+
+    /**
+     * 统计报告
+     */
+    @Data
+    public static class Report {
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private long total;
+
+        /**
+         * 统计天数
+         */
+        private long days;
+
+        /**
+         * 各状态预约数量，键为状态码0-4
+         */
+        private Map<Integer, Long> statusCounts = new HashMap<>();
+
+        /**
+         * 各实验室统计：labId、labName、total、各状态数量、people、usedSlots、availableSlots、utilization（百分比）
+         */
+        private List<Map<String, Object>> labs = new ArrayList<>();
+
+        /**
+         * 时间段热力图：时间段 -> 周一至周日的占用预约数
+         */
+        private Map<String, long[]> slotHeatmap = new LinkedHashMap<>();
+
+        /**
+         * 每日趋势：reserveDate、total、各状态数量
+         */
+        private List<Map<String, Object>> daily = new ArrayList<>();
+    }
+}
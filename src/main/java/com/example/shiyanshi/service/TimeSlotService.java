@@ -2,16 +2,21 @@ package com.example.shiyanshi.service;
 
 import com.example.shiyanshi.entity.TimeSlot;
 import com.example.shiyanshi.mapper.TimeSlotMapper;
+import com.example.shiyanshi.util.IntervalIndex;
+import com.example.shiyanshi.util.TimeRangeUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 时间段业务逻辑层
+ * 列表与按ID查询走两级缓存（见 CatalogCacheService），增删改后使缓存失效
+ * 冲突检查和新增排序值由内存中的区间索引回答，缓存内容变化后重建
  */
 @Service
 public class TimeSlotService {
@@ -19,10 +24,23 @@ public class TimeSlotService {
     @Autowired
     private TimeSlotMapper timeSlotMapper;
 
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    /**
+     * 基于缓存的全部时间段构建的索引，缓存ETag变化时整体替换
+     */
+    private volatile SlotIndex slotIndex;
+
     /**
      * 根据ID查询时间段
      */
     public TimeSlot findById(Long id) {
+        for (TimeSlot timeSlot : findAll()) {
+            if (timeSlot.getId().equals(id)) {
+                return timeSlot;
+            }
+        }
         return timeSlotMapper.findById(id);
     }
 
@@ -30,21 +48,38 @@ public class TimeSlotService {
      * 查询所有时间段
      */
     public List<TimeSlot> findAll() {
-        return timeSlotMapper.findAll();
+        return findAllCached().getItems();
+    }
+
+    /**
+     * 查询所有时间段（带ETag）
+     */
+    public CatalogCacheService.CachedList<TimeSlot> findAllCached() {
+        return catalogCacheService.getList(CatalogCacheService.NS_TIME_SLOT, "all", TimeSlot.class,
+                timeSlotMapper::findAll);
     }
 
     /**
      * 查询启用的时间段
      */
     public List<TimeSlot> findEnabled() {
-        return timeSlotMapper.findEnabled();
+        return findEnabledCached().getItems();
+    }
+
+    /**
+     * 查询启用的时间段（带ETag）
+     */
+    public CatalogCacheService.CachedList<TimeSlot> findEnabledCached() {
+        return catalogCacheService.getList(CatalogCacheService.NS_TIME_SLOT, "enabled", TimeSlot.class,
+                timeSlotMapper::findEnabled);
     }
 
     /**
      * 根据状态查询时间段
      */
     public List<TimeSlot> findByStatus(Integer status) {
-        return timeSlotMapper.findByStatus(status);
+        return catalogCacheService.getList(CatalogCacheService.NS_TIME_SLOT, "status:" + status, TimeSlot.class,
+                () -> timeSlotMapper.findByStatus(status)).getItems();
     }
 
     /**
@@ -56,16 +91,13 @@ public class TimeSlotService {
         if (timeSlot.getStatus() == null) {
             timeSlot.setStatus(1);
         }
-        // 如果没有设置排序，获取当前最大排序值+1
+        // 如果没有设置排序，使用当前最大排序值+1
         if (timeSlot.getSortOrder() == null) {
-            List<TimeSlot> allSlots = timeSlotMapper.findAll();
-            int maxOrder = allSlots.stream()
-                    .mapToInt(TimeSlot::getSortOrder)
-                    .max()
-                    .orElse(0);
-            timeSlot.setSortOrder(maxOrder + 1);
+            timeSlot.setSortOrder(slotIndex().maxSortOrder + 1);
         }
-        return timeSlotMapper.insert(timeSlot);
+        int result = timeSlotMapper.insert(timeSlot);
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
+        return result;
     }
 
     /**
@@ -73,7 +105,9 @@ public class TimeSlotService {
      */
     @Transactional
     public int update(TimeSlot timeSlot) {
-        return timeSlotMapper.update(timeSlot);
+        int result = timeSlotMapper.update(timeSlot);
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
+        return result;
     }
 
     /**
@@ -81,7 +115,9 @@ public class TimeSlotService {
      */
     @Transactional
     public int updateStatus(Long id, Integer status) {
-        return timeSlotMapper.updateStatus(id, status);
+        int result = timeSlotMapper.updateStatus(id, status);
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
+        return result;
     }
 
     /**
@@ -89,7 +125,9 @@ public class TimeSlotService {
      */
     @Transactional
     public int delete(Long id) {
-        return timeSlotMapper.deleteById(id);
+        int result = timeSlotMapper.deleteById(id);
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
+        return result;
     }
 
     /**
@@ -108,6 +146,22 @@ public class TimeSlotService {
                 count += timeSlotMapper.update(timeSlot);
             }
         }
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
+        return count;
+    }
+
+    /**
+     * 批量更新排序（只更新带ID和排序值的时间段）
+     */
+    @Transactional
+    public int batchUpdateSortOrder(List<TimeSlot> timeSlots) {
+        int count = 0;
+        for (TimeSlot timeSlot : timeSlots) {
+            if (timeSlot.getId() != null && timeSlot.getSortOrder() != null) {
+                count += timeSlotMapper.update(timeSlot);
+            }
+        }
+        catalogCacheService.invalidate(CatalogCacheService.NS_TIME_SLOT);
         return count;
     }
 
@@ -117,8 +171,8 @@ public class TimeSlotService {
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
         
-        List<TimeSlot> allSlots = timeSlotMapper.findAll();
-        List<TimeSlot> enabledSlots = timeSlotMapper.findEnabled();
+        List<TimeSlot> allSlots = findAll();
+        List<TimeSlot> enabledSlots = findEnabled();
         
         stats.put("totalCount", allSlots.size());
         stats.put("enabledCount", enabledSlots.size());
@@ -131,28 +185,52 @@ public class TimeSlotService {
      * 检查时间段是否冲突
      */
     public boolean checkTimeConflict(String startTime, String endTime, Long excludeId) {
-        List<TimeSlot> allSlots = timeSlotMapper.findAll();
-        
-        for (TimeSlot slot : allSlots) {
-            // 排除当前编辑的时间段
-            if (excludeId != null && slot.getId().equals(excludeId)) {
-                continue;
-            }
-            
-            // 检查时间是否重叠
-            if (isTimeOverlap(startTime, endTime, slot.getStartTime(), slot.getEndTime())) {
-                return true;
-            }
+        Integer start = TimeRangeUtil.toMinute(startTime);
+        Integer end = TimeRangeUtil.toMinute(endTime);
+        if (start == null || end == null || end <= start) {
+            throw new RuntimeException("时间格式无效，应为HH:mm且结束时间晚于开始时间");
         }
-        
-        return false;
+        // 排除当前编辑的时间段
+        return slotIndex().intervals.anyOverlap(start, end,
+                slot -> excludeId == null || !slot.getId().equals(excludeId));
     }
 
     /**
-     * 判断两个时间段是否重叠
+     * 获取时间段索引，缓存内容变化后重建
      */
-    private boolean isTimeOverlap(String start1, String end1, String start2, String end2) {
-        // start1 < end2 && end1 > start2
-        return start1.compareTo(end2) < 0 && end1.compareTo(start2) > 0;
+    private SlotIndex slotIndex() {
+        CatalogCacheService.CachedList<TimeSlot> all = findAllCached();
+        SlotIndex index = slotIndex;
+        if (index == null || !index.etag.equals(all.getEtag())) {
+            index = new SlotIndex(all);
+            slotIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 时间段索引（不可变）：区间索引和最大排序值
+     */
+    private static class SlotIndex {
+        private final String etag;
+        private final IntervalIndex<TimeSlot> intervals;
+        private final int maxSortOrder;
+
+        SlotIndex(CatalogCacheService.CachedList<TimeSlot> all) {
+            this.etag = all.getEtag();
+            Map<TimeSlot, int[]> ranges = new IdentityHashMap<>();
+            int max = 0;
+            for (TimeSlot slot : all.getItems()) {
+                int[] range = TimeRangeUtil.parse(slot.getStartTime() + "-" + slot.getEndTime());
+                if (range != null) {
+                    ranges.put(slot, range);
+                }
+                if (slot.getSortOrder() != null) {
+                    max = Math.max(max, slot.getSortOrder());
+                }
+            }
+            this.intervals = IntervalIndex.build(ranges.keySet(), slot -> ranges.get(slot)[0], slot -> ranges.get(slot)[1]);
+            this.maxSortOrder = max;
+        }
     }
 }
@@ -0,0 +1,312 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.Message;
+import com.example.shiyanshi.mapper.BroadcastMessageMapper;
+import com.example.shiyanshi.mapper.MessageMapper;
+import com.example.shiyanshi.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 站内消息未读计数服务
+ *
+ * 每个用户一个Redis哈希 msg:unread:{userId}，字段为 total 和各消息类型的未读数。
+ * - 发送/已读/全部已读/删除消息时，在事务提交后用 HINCRBY 原子增减
+ * - 哈希中没有 loaded 字段视为未加载，首次查询时从MySQL统计一次
+ * - 读时扩散模式下，新广播只写入全局有序集合，用户查询时按 broadcastSeen 增量补计，不逐个用户更新
+ * - 定时对近期活跃用户与MySQL对账，修正并发或异常导致的偏差
+ */
+@Slf4j
+@Service
+public class UnreadCounterService {
+
+    private static final String COUNTER_KEY_PREFIX = "msg:unread:";
+    private static final String ACTIVE_USERS_KEY = "msg:unread:active";
+    private static final String BROADCAST_IDS_KEY = "msg:broadcast:ids";
+
+    private static final String FIELD_TOTAL = "total";
+    private static final String FIELD_LOADED = "loaded";
+    private static final String FIELD_BROADCAST_SEEN = "broadcastSeen";
+
+    /**
+     * 消息类型
+     */
+    public static final List<String> MESSAGE_TYPES = Arrays.asList("system", "reservation", "approval", "reminder", "user");
+
+    private static final Duration COUNTER_TTL = Duration.ofDays(7);
+
+    /**
+     * 把用户未计入的新广播补计到 system 和 total
+     */
+    private static final DefaultRedisScript<Long> BROADCAST_CATCH_UP_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], 'loaded') == 0 then return 0 end " +
+            "local seen = tonumber(redis.call('HGET', KEYS[1], 'broadcastSeen') or '0') " +
+            "local latest = redis.call('ZREVRANGE', KEYS[2], 0, 0, 'WITHSCORES') " +
+            "if latest[2] ~= nil and tonumber(latest[2]) > seen then " +
+            "  local n = redis.call('ZCOUNT', KEYS[2], '(' .. seen, '+inf') " +
+            "  redis.call('HINCRBY', KEYS[1], 'system', n) " +
+            "  redis.call('HINCRBY', KEYS[1], 'total', n) " +
+            "  redis.call('HSET', KEYS[1], 'broadcastSeen', latest[2]) " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private BroadcastMessageMapper broadcastMessageMapper;
+
+    @Value("${message.broadcast.mode:write}")
+    private String broadcastMode;
+
+    /**
+     * 对账时只处理最近多少分钟内查询过未读数的用户
+     */
+    @Value("${message.unread.reconcile-active-minutes:30}")
+    private long reconcileActiveMinutes;
+
+    /**
+     * 获取用户各类型未读数（含 total）
+     */
+    public Map<String, Integer> getCounts(Long userId) {
+        String key = counterKey(userId);
+        Map<Object, Object> hash;
+        try {
+            if (isReadMode()) {
+                redisTemplate.execute(BROADCAST_CATCH_UP_SCRIPT, Arrays.asList(key, BROADCAST_IDS_KEY));
+            }
+            hash = redisTemplate.opsForHash().entries(key);
+            redisTemplate.opsForZSet().add(ACTIVE_USERS_KEY, String.valueOf(userId), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("读取未读计数失败，回退数据库统计: userId={}", userId, e);
+            return countFromDatabase(userId);
+        }
+
+        if (!hash.containsKey(FIELD_LOADED)) {
+            return load(userId);
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put(FIELD_TOTAL, parseCount(hash.get(FIELD_TOTAL)));
+        for (String type : MESSAGE_TYPES) {
+            counts.put(type, parseCount(hash.get(type)));
+        }
+        return counts;
+    }
+
+    /**
+     * 新消息写入后增加接收者的未读数（事务提交后生效）
+     */
+    public void onMessagesCreated(List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Integer>> deltas = new HashMap<>();
+        for (Message message : messages) {
+            deltas.computeIfAbsent(message.getReceiverId(), id -> new HashMap<>())
+                    .merge(message.getMessageType(), 1, Integer::sum);
+        }
+        TransactionUtil.afterCommit(() -> applyDeltas(deltas, 1));
+    }
+
+    /**
+     * 消息由未读变为已读或被删除后减少未读数（事务提交后生效）
+     *
+     * @param messageTypes 由未读变为已读/删除的每条消息的类型
+     */
+    public void onMessagesConsumed(Long userId, List<String> messageTypes) {
+        if (messageTypes == null || messageTypes.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> delta = new HashMap<>();
+        for (String type : messageTypes) {
+            delta.merge(type, 1, Integer::sum);
+        }
+        Map<Long, Map<String, Integer>> deltas = new HashMap<>();
+        deltas.put(userId, delta);
+        TransactionUtil.afterCommit(() -> applyDeltas(deltas, -1));
+    }
+
+    /**
+     * 全部已读后把用户的未读数清零（事务提交后生效）
+     */
+    public void onAllRead(Long userId) {
+        TransactionUtil.afterCommit(() -> {
+            try {
+                String key = counterKey(userId);
+                if (Boolean.TRUE.equals(redisTemplate.opsForHash().hasKey(key, FIELD_LOADED))) {
+                    Map<String, String> zeros = new HashMap<>();
+                    zeros.put(FIELD_TOTAL, "0");
+                    for (String type : MESSAGE_TYPES) {
+                        zeros.put(type, "0");
+                    }
+                    redisTemplate.opsForHash().putAll(key, zeros);
+                }
+            } catch (Exception e) {
+                log.warn("清零未读计数失败，删除计数等待重新加载: userId={}", userId, e);
+                evict(userId);
+            }
+        });
+    }
+
+    /**
+     * 发布读时扩散广播后登记到全局广播集合（事务提交后生效）
+     */
+    public void onBroadcastPublished(Long broadcastId) {
+        TransactionUtil.afterCommit(() -> {
+            try {
+                redisTemplate.opsForZSet().add(BROADCAST_IDS_KEY, String.valueOf(broadcastId), broadcastId);
+            } catch (Exception e) {
+                log.warn("登记广播到未读计数失败: broadcastId={}", broadcastId, e);
+            }
+        });
+    }
+
+    /**
+     * 定时对账：用MySQL中的真实未读数覆盖近期活跃用户的计数
+     */
+    @Scheduled(cron = "${message.unread.reconcile-cron:0 */10 * * * ?}")
+    public void reconcile() {
+        try {
+            long now = System.currentTimeMillis();
+            long activeSince = now - Duration.ofMinutes(reconcileActiveMinutes).toMillis();
+            redisTemplate.opsForZSet().removeRangeByScore(ACTIVE_USERS_KEY, 0, activeSince);
+            Set<String> activeUsers = redisTemplate.opsForZSet().rangeByScore(ACTIVE_USERS_KEY, activeSince, now);
+            if (activeUsers == null || activeUsers.isEmpty()) {
+                return;
+            }
+            int fixed = 0;
+            for (String userId : activeUsers) {
+                Map<Object, Object> cached = redisTemplate.opsForHash().entries(counterKey(Long.valueOf(userId)));
+                Map<String, Integer> actual = load(Long.valueOf(userId));
+                if (!cached.isEmpty() && parseCount(cached.get(FIELD_TOTAL)) != actual.get(FIELD_TOTAL)) {
+                    fixed++;
+                }
+            }
+            log.info("未读计数对账完成：检查{}个活跃用户，修正{}个", activeUsers.size(), fixed);
+        } catch (Exception e) {
+            log.error("未读计数对账失败", e);
+        }
+    }
+
+    /**
+     * 删除用户的计数缓存，下次查询时重新从数据库加载
+     */
+    public void evict(Long userId) {
+        try {
+            redisTemplate.delete(counterKey(userId));
+        } catch (Exception e) {
+            log.warn("删除未读计数失败: userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 从数据库统计并写入Redis
+     */
+    private Map<String, Integer> load(Long userId) {
+        long broadcastSeen = isReadMode() ? broadcastMessageMapper.findMaxId() : 0L;
+        Map<String, Integer> counts = countFromDatabase(userId);
+
+        Map<String, String> hash = new HashMap<>();
+        counts.forEach((field, count) -> hash.put(field, String.valueOf(count)));
+        hash.put(FIELD_BROADCAST_SEEN, String.valueOf(broadcastSeen));
+        hash.put(FIELD_LOADED, "1");
+        try {
+            String key = counterKey(userId);
+            redisTemplate.opsForHash().putAll(key, hash);
+            redisTemplate.expire(key, COUNTER_TTL);
+        } catch (Exception e) {
+            log.warn("写入未读计数失败: userId={}", userId, e);
+        }
+        return counts;
+    }
+
+    private Map<String, Integer> countFromDatabase(Long userId) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put(FIELD_TOTAL, 0);
+        for (String type : MESSAGE_TYPES) {
+            counts.put(type, 0);
+        }
+        int total = 0;
+        for (Map<String, Object> row : messageMapper.countUnreadGroupByType(userId)) {
+            String type = (String) row.get("messageType");
+            int count = ((Number) row.get("cnt")).intValue();
+            counts.merge(type, count, Integer::sum);
+            total += count;
+        }
+        if (isReadMode()) {
+            int broadcastUnread = broadcastMessageMapper.countUnread(userId);
+            counts.merge("system", broadcastUnread, Integer::sum);
+            total += broadcastUnread;
+        }
+        counts.put(FIELD_TOTAL, total);
+        return counts;
+    }
+
+    /**
+     * 批量增减计数
+     * 未加载的用户哈希中没有 loaded 字段，下次查询时会被数据库统计结果整体覆盖
+     */
+    private void applyDeltas(Map<Long, Map<String, Integer>> deltas, int sign) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<Long, Map<String, Integer>> entry : deltas.entrySet()) {
+                    byte[] key = bytes(counterKey(entry.getKey()));
+                    int total = 0;
+                    for (Map.Entry<String, Integer> typeDelta : entry.getValue().entrySet()) {
+                        hIncrBy(connection, key, typeDelta.getKey(), sign * typeDelta.getValue());
+                        total += typeDelta.getValue();
+                    }
+                    hIncrBy(connection, key, FIELD_TOTAL, sign * total);
+                    connection.keyCommands().expire(key, COUNTER_TTL.getSeconds());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("更新未读计数失败，删除相关计数等待重新加载: users={}", deltas.keySet(), e);
+            deltas.keySet().forEach(this::evict);
+        }
+    }
+
+    private static void hIncrBy(RedisConnection connection, byte[] key, String field, long delta) {
+        connection.hashCommands().hIncrBy(key, bytes(field), delta);
+    }
+
+    private boolean isReadMode() {
+        return "read".equalsIgnoreCase(broadcastMode);
+    }
+
+    private static int parseCount(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return Math.max(Integer.parseInt(value.toString()), 0);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String counterKey(Long userId) {
+        return COUNTER_KEY_PREFIX + userId;
+    }
+}
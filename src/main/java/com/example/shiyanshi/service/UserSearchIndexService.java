@@ -0,0 +1,385 @@
+package com.example.shiyanshi.service;
+
+import com.example.shiyanshi.entity.User;
+import com.example.shiyanshi.mapper.UserMapper;
+import com.example.shiyanshi.util.PinyinUtil;
+import com.example.shiyanshi.util.TransactionUtil;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 用户联想搜索索引（管理端输入框实时提示）
+ *
+ * 进程内维护 词条 -> 用户ID 的有序表，按前缀范围查询，不访问数据库：
+ * - 用户名、学号、工号、手机号：前缀匹配
+ * - 姓名：索引姓名的全部后缀，前缀查询即可匹配姓名中任意位置的片段
+ * - 姓名拼音首字母：如 张三 -> zs
+ * 启动时全量构建，UserService 注册/修改/删除后（事务提交后）增量更新，并按 user.suggest.rebuild-cron 定期重建，
+ * 纠正其他节点或直接改库造成的差异。重建期间的增量更新会记录下来，在新索引替换前重放，不会被重建覆盖。
+ * 每个用户的词条数有上限，内存占用与用户数线性相关。
+ */
+@Slf4j
+@Service
+public class UserSearchIndexService {
+
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    /**
+     * 参与索引的字段最大长度，超出部分不索引
+     */
+    private static final int MAX_TERM_LENGTH = 32;
+
+    /**
+     * 单次查询最多收集的候选用户数，保证查询耗时与用户总数无关
+     * 先收集用户名、姓名、拼音首字母前缀命中的用户（排序靠前的一类），再用其他词条补足，达到上限后才截断
+     */
+    private static final int MAX_CANDIDATES = 200;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private volatile Index index = new Index();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 串行化全量重建（启动预热与定时重建可能同时触发）
+     */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * 重建期间记录的增量更新，在 writeLock 下读写；不在重建时为null
+     */
+    private List<Consumer<Index>> pendingDeltas;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    /**
+     * 从数据库全量重建索引
+     */
+    @Scheduled(cron = "${user.suggest.rebuild-cron:0 15 * * * ?}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                pendingDeltas = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            Index rebuilt = new Index();
+            try {
+                for (User user : userMapper.findAll()) {
+                    rebuilt.put(new Entry(user));
+                }
+            } catch (RuntimeException e) {
+                writeLock.lock();
+                try {
+                    pendingDeltas = null;
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            writeLock.lock();
+            try {
+                // 读取全量数据之后提交的变更在新索引上重放，再替换
+                pendingDeltas.forEach(delta -> delta.accept(rebuilt));
+                index = rebuilt;
+            } finally {
+                pendingDeltas = null;
+                writeLock.unlock();
+            }
+            log.info("用户联想索引构建完成: users={}, terms={}", rebuilt.entries.size(), rebuilt.terms.size());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * 新增或更新用户后同步索引（当前事务提交后执行）
+     */
+    public void put(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Entry entry = new Entry(user);
+        TransactionUtil.afterCommit(() -> applyDelta(target -> target.put(entry)));
+    }
+
+    /**
+     * 用户信息部分更新后，从数据库重新读取并同步索引
+     */
+    public void refresh(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        User user = userMapper.findById(userId);
+        if (user == null) {
+            remove(userId);
+        } else {
+            put(user);
+        }
+    }
+
+    /**
+     * 删除用户后同步索引（当前事务提交后执行）
+     */
+    public void remove(Long userId) {
+        TransactionUtil.afterCommit(() -> applyDelta(target -> target.remove(userId)));
+    }
+
+    /**
+     * 应用增量更新：立即作用于当前索引；正在重建时同时记录，替换前在新索引上重放
+     */
+    private void applyDelta(Consumer<Index> delta) {
+        writeLock.lock();
+        try {
+            delta.accept(index);
+            if (pendingDeltas != null) {
+                pendingDeltas.add(delta);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 联想查询
+     *
+     * @param keyword 用户名/学号/工号/手机号前缀、姓名片段或姓名拼音首字母
+     * @param userType 用户类型（可选）
+     * @param limit 返回条数，默认10，最大50
+     */
+    public List<Suggestion> suggest(String keyword, Integer userType, Integer limit) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        String key = normalize(keyword.trim());
+        int max = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        Index current = index;
+
+        // 用户类型在收集时过滤，候选上限只计符合条件的用户
+        Predicate<Long> accepted = id -> {
+            Entry entry = current.entries.get(id);
+            return entry != null && (userType == null || userType.equals(entry.suggestion.getUserType()));
+        };
+        Set<Long> candidates = new LinkedHashSet<>();
+        collect(current.primaryTerms, key, accepted, candidates);
+        collect(current.terms, key, accepted, candidates);
+
+        List<Entry> matched = new ArrayList<>();
+        for (Long id : candidates) {
+            Entry entry = current.entries.get(id);
+            if (entry != null) {
+                matched.add(entry);
+            }
+        }
+        matched.sort(Comparator.comparingInt((Entry entry) -> entry.rank(key))
+                .thenComparingInt(entry -> entry.nameLength)
+                .thenComparing(entry -> entry.suggestion.getId()));
+
+        List<Suggestion> result = new ArrayList<>(Math.min(max, matched.size()));
+        for (Entry entry : matched) {
+            if (result.size() >= max) {
+                break;
+            }
+            result.add(entry.suggestion);
+        }
+        return result;
+    }
+
+    /**
+     * 按前缀范围收集符合条件的候选用户，范围内按词条顺序遍历，完全相同的词条最先命中
+     */
+    private static void collect(NavigableMap<String, Set<Long>> terms, String key, Predicate<Long> accepted,
+                                Set<Long> candidates) {
+        if (candidates.size() >= MAX_CANDIDATES) {
+            return;
+        }
+        for (Set<Long> ids : terms.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            for (Long id : ids) {
+                if (!candidates.contains(id) && accepted.test(id)) {
+                    candidates.add(id);
+                    if (candidates.size() >= MAX_CANDIDATES) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        return lower.length() > MAX_TERM_LENGTH ? lower.substring(0, MAX_TERM_LENGTH) : lower;
+    }
+
+    /**
+     * 索引数据：读取无锁，写入在 writeLock 下进行
+     * terms 包含全部词条，primaryTerms 只包含用户名、完整姓名、拼音首字母
+     */
+    private static class Index {
+        private final ConcurrentSkipListMap<String, Set<Long>> terms = new ConcurrentSkipListMap<>();
+        private final ConcurrentSkipListMap<String, Set<Long>> primaryTerms = new ConcurrentSkipListMap<>();
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+        /**
+         * 先加入新词条再移除不再使用的旧词条，并发查询在更新过程中始终能查到该用户
+         */
+        void put(Entry entry) {
+            Long userId = entry.suggestion.getId();
+            Entry old = entries.put(userId, entry);
+            addAll(terms, entry.terms, userId);
+            addAll(primaryTerms, entry.primaryTerms, userId);
+            if (old != null) {
+                removeStale(terms, old.terms, entry.terms, userId);
+                removeStale(primaryTerms, old.primaryTerms, entry.primaryTerms, userId);
+            }
+        }
+
+        void remove(Long userId) {
+            Entry old = entries.remove(userId);
+            if (old == null) {
+                return;
+            }
+            removeAll(terms, old.terms, userId);
+            removeAll(primaryTerms, old.primaryTerms, userId);
+        }
+
+        private static void addAll(Map<String, Set<Long>> target, Set<String> keys, Long userId) {
+            for (String term : keys) {
+                target.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(userId);
+            }
+        }
+
+        private static void removeStale(Map<String, Set<Long>> target, Set<String> oldKeys, Set<String> newKeys,
+                                        Long userId) {
+            for (String term : oldKeys) {
+                if (!newKeys.contains(term)) {
+                    removeId(target, term, userId);
+                }
+            }
+        }
+
+        private static void removeAll(Map<String, Set<Long>> target, Set<String> keys, Long userId) {
+            for (String term : keys) {
+                removeId(target, term, userId);
+            }
+        }
+
+        private static void removeId(Map<String, Set<Long>> target, String term, Long userId) {
+            target.computeIfPresent(term, (key, ids) -> {
+                ids.remove(userId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * 单个用户的索引条目
+     */
+    private static class Entry {
+        private final Suggestion suggestion;
+        private final Set<String> terms = new LinkedHashSet<>();
+        private final Set<String> primaryTerms = new LinkedHashSet<>();
+        private final String username;
+        private final String realName;
+        private final String initials;
+        private final int nameLength;
+
+        Entry(User user) {
+            this.suggestion = new Suggestion(user);
+            this.username = user.getUsername() != null ? normalize(user.getUsername()) : "";
+            this.realName = user.getRealName() != null ? normalize(user.getRealName().trim()) : "";
+            String pinyin = PinyinUtil.initials(realName);
+            this.initials = pinyin != null ? normalize(pinyin) : "";
+            this.nameLength = realName.length();
+
+            addTerm(username);
+            addTerm(user.getStudentId());
+            addTerm(user.getTeacherId());
+            addTerm(user.getPhone());
+            addTerm(initials);
+            for (int i = 0; i < realName.length(); i++) {
+                addTerm(realName.substring(i));
+            }
+            for (String term : new String[]{username, realName, initials}) {
+                if (!term.isEmpty()) {
+                    primaryTerms.add(term);
+                }
+            }
+        }
+
+        private void addTerm(String value) {
+            if (value != null && !value.trim().isEmpty()) {
+                terms.add(normalize(value.trim()));
+            }
+        }
+
+        /**
+         * 匹配程度，越小越靠前：完全相同 < 用户名/姓名前缀 < 拼音首字母前缀 < 其他（姓名片段、学号、手机号等）
+         */
+        int rank(String key) {
+            if (key.equals(username) || key.equals(realName)) {
+                return 0;
+            }
+            if (username.startsWith(key) || realName.startsWith(key)) {
+                return 1;
+            }
+            if (initials.startsWith(key)) {
+                return 2;
+            }
+            return 3;
+        }
+    }
+
+    /**
+     * 联想结果（不含密码、手机号等敏感字段）
+     */
+    @Data
+    public static class Suggestion {
+        private Long id;
+        private String username;
+        private String realName;
+        private Integer userType;
+        private String studentId;
+        private String teacherId;
+        private String college;
+        private Integer status;
+
+        public Suggestion(User user) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.realName = user.getRealName();
+            this.userType = user.getUserType();
+            this.studentId = user.getStudentId();
+            this.teacherId = user.getTeacherId();
+            this.college = user.getCollege();
+            this.status = user.getStatus();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.shiyanshi.service;
 
+import com.example.shiyanshi.common.CursorPage;
 import com.example.shiyanshi.entity.User;
 import com.example.shiyanshi.mapper.UserMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +17,15 @@ public class UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private UserSearchIndexService userSearchIndexService;
+
 
     public void updateStatus(String userId, Integer status) {
         userMapper.update(null, new com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper<User>()
                 .set(User::getStatus, status)
                 .eq(User::getId, userId));
+        userSearchIndexService.refresh(Long.valueOf(userId));
     }
 
     /**
@@ -63,6 +68,7 @@ public class UserService {
             user.setUserType(1); // 默认为学生
         }
         userMapper.insert(user);
+        userSearchIndexService.put(user);
         user.setPassword(null);
         return user;
     }
@@ -87,6 +93,22 @@ public class UserService {
         return users;
     }
     
+    /**
+     * 游标分页查询用户
+     *
+     * @param cursor 上一页返回的游标，为空表示第一页
+     */
+    public CursorPage<User> scroll(String cursor, Integer size) {
+        int pageSize = CursorPage.normalizeSize(size);
+        CursorPage.Cursor position = CursorPage.decode(cursor);
+        List<User> users = userMapper.scroll(
+                position != null ? position.getCreateTime() : null,
+                position != null ? position.getId() : null,
+                pageSize + 1);
+        users.forEach(user -> user.setPassword(null));
+        return CursorPage.of(users, pageSize, User::getCreateTime, User::getId);
+    }
+    
     /**
      * 根据用户类型查询
      */
@@ -101,6 +123,7 @@ public class UserService {
      */
     public void update(User user) {
         userMapper.updateById(user);
+        userSearchIndexService.refresh(user.getId());
     }
     
     /**
@@ -132,6 +155,7 @@ public class UserService {
      */
     public void deleteById(Long id) {
         userMapper.deleteById(id);
+        userSearchIndexService.remove(id);
     }
     
     /**
@@ -143,6 +167,13 @@ public class UserService {
         return users;
     }
     
+    /**
+     * 用户联想查询（管理端输入提示），走内存索引
+     */
+    public List<UserSearchIndexService.Suggestion> suggest(String keyword, Integer userType, Integer limit) {
+        return userSearchIndexService.suggest(keyword, userType, limit);
+    }
+    
     /**
      * 检查邮箱是否已存在
      */
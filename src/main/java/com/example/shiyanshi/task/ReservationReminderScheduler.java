@@ -0,0 +1,352 @@
+package com.example.shiyanshi.task;
+
+import com.example.shiyanshi.entity.Reservation;
+import com.example.shiyanshi.event.ReservationStatusChangedEvent;
+import com.example.shiyanshi.mapper.ReservationMapper;
+import com.example.shiyanshi.service.NotificationService;
+import com.example.shiyanshi.util.TimeRangeUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预约提醒调度器
+ *
+ * 预先计算每条提醒（开始前24小时、1小时、30分钟）的触发时间，放入按时间排序的延迟队列，到点触发一次，不再定时轮询预约表：
+ * - 每天凌晨和应用启动时，为今天起两天内已通过审核的预约生成提醒
+ * - 预约审核通过后加入提醒，取消、完成后移除
+ * - local模式：进程内DelayQueue，由一个后台线程取出到期提醒
+ * - redis模式：Redis有序集合（score为触发时间），各节点轮询到期成员，ZREM成功的节点负责发送
+ * - 发送前写入幂等标记 reminder:sent:{预约ID}:{类型}，重复计划或多节点并发时只发送一次
+ * - 到期提醒交给 NotificationService 的队列发送，调度线程和分发线程只做Redis操作，不查询数据库、不发送邮件
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReservationReminderScheduler {
+
+    private static final String QUEUE_KEY = "reminder:queue";
+    private static final String SENT_KEY_PREFIX = "reminder:sent:";
+    private static final Duration SENT_TTL = Duration.ofDays(3);
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final ReservationMapper reservationMapper;
+    private final NotificationService notificationService;
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 队列模式：local 或 redis
+     */
+    @Value("${reminder.mode:local}")
+    private String mode;
+
+    /**
+     * 触发时间已过但不超过该分钟数的提醒仍会立即发送（应用重启、临近开始才审核通过等情况）
+     */
+    @Value("${reminder.grace-minutes:10}")
+    private long graceMinutes;
+
+    /**
+     * redis模式每次轮询最多取出的到期提醒数
+     */
+    @Value("${reminder.poll-batch-size:100}")
+    private int pollBatchSize;
+
+    /**
+     * 虚拟线程模式下local模式的分发线程使用虚拟线程
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final DelayQueue<ReminderEntry> delayQueue = new DelayQueue<>();
+
+    /**
+     * local模式下已计划的提醒，键为 预约ID:类型；被替换或移除的条目出队时直接丢弃
+     */
+    private final Map<String, ReminderEntry> pending = new ConcurrentHashMap<>();
+
+    private volatile Thread dispatcher;
+
+    /**
+     * 提醒类型，按提前量从大到小排列
+     */
+    enum ReminderKind {
+        DAY_BEFORE(Duration.ofHours(24), "24小时", "预约提醒（明天）", 0), // 普通优先级
+        ONE_HOUR(Duration.ofHours(1), "1小时", "预约提醒（即将开始）", 1), // 重要优先级
+        HALF_HOUR(Duration.ofMinutes(30), "30分钟", "预约提醒（马上开始）", 2); // 紧急优先级
+
+        private final Duration lead;
+        private final String timeText;
+        private final String title;
+        private final int priority;
+
+        ReminderKind(Duration lead, String timeText, String title, int priority) {
+            this.lead = lead;
+            this.timeText = timeText;
+            this.title = title;
+            this.priority = priority;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isRedisMode()) {
+            Thread thread = virtualThreads
+                    ? Thread.ofVirtual().name("reminder-dispatcher").unstarted(this::dispatchLoop)
+                    : new Thread(this::dispatchLoop, "reminder-dispatcher");
+            thread.setDaemon(true);
+            thread.start();
+            dispatcher = thread;
+        }
+        planUpcoming();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = dispatcher;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 每天凌晨计算今天起两天内的提醒（覆盖到下次计划之前需要发送的全部24小时提醒）
+     */
+    @Scheduled(cron = "${reminder.plan-cron:0 5 0 * * ?}")
+    public void planUpcoming() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDate today = now.toLocalDate();
+            List<Reservation> reservations = reservationMapper.findApprovedBetween(today, today.plusDays(2));
+            int planned = 0;
+            for (Reservation reservation : reservations) {
+                planned += schedule(reservation.getId(), reservation.getReserveDate(),
+                        reservation.getStartMinute(), reservation.getTimeSlot(), now);
+            }
+            log.info("预约提醒计划完成：预约{}条，提醒{}条，mode={}", reservations.size(), planned, mode);
+        } catch (Exception e) {
+            log.error("预约提醒计划失败", e);
+        }
+    }
+
+    /**
+     * 预约审核通过后加入提醒，取消、完成后移除
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        try {
+            if (Integer.valueOf(1).equals(event.getNewStatus())) {
+                schedule(event.getReservationId(), event.getReserveDate(), event.getStartMinute(),
+                        event.getTimeSlot(), LocalDateTime.now());
+            } else if (event.getOldStatus() != null) {
+                unschedule(event.getReservationId());
+            }
+        } catch (Exception e) {
+            log.error("更新预约提醒失败: reservationId={}", event.getReservationId(), e);
+        }
+    }
+
+    /**
+     * redis模式：取出到期提醒，ZREM成功（即由本节点领取）后发送
+     */
+    @Scheduled(fixedDelayString = "${reminder.poll-millis:1000}")
+    public void pollRedisQueue() {
+        if (!isRedisMode()) {
+            return;
+        }
+        try {
+            Set<String> members = redisTemplate.opsForZSet()
+                    .rangeByScore(QUEUE_KEY, 0, System.currentTimeMillis(), 0, pollBatchSize);
+            if (members == null) {
+                return;
+            }
+            for (String member : members) {
+                Long removed = redisTemplate.opsForZSet().remove(QUEUE_KEY, member);
+                if (removed != null && removed > 0) {
+                    int separator = member.indexOf(':');
+                    fire(Long.valueOf(member.substring(0, separator)),
+                            ReminderKind.valueOf(member.substring(separator + 1)));
+                }
+            }
+        } catch (Exception e) {
+            log.error("轮询Redis提醒队列失败", e);
+        }
+    }
+
+    /**
+     * 计算并加入一条预约的提醒
+     *
+     * @return 加入的提醒数量
+     */
+    private int schedule(Long reservationId, LocalDate reserveDate, Integer startMinute, String timeSlot,
+                         LocalDateTime now) {
+        LocalDateTime startTime = startTimeOf(reserveDate, startMinute, timeSlot);
+        if (startTime == null || !startTime.isAfter(now)) {
+            return 0;
+        }
+        int count = 0;
+        for (ReminderKind kind : ReminderKind.values()) {
+            LocalDateTime dueTime = startTime.minus(kind.lead);
+            if (dueTime.isAfter(now)) {
+                enqueue(reservationId, kind, dueTime);
+                count++;
+            } else if (!dueTime.plusMinutes(graceMinutes).isBefore(now)) {
+                enqueue(reservationId, kind, now);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void enqueue(Long reservationId, ReminderKind kind, LocalDateTime dueTime) {
+        long dueMillis = dueTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String member = reservationId + ":" + kind.name();
+        if (isRedisMode()) {
+            // 成员相同则只更新score，多节点重复计划不会产生重复提醒
+            redisTemplate.opsForZSet().add(QUEUE_KEY, member, dueMillis);
+            return;
+        }
+        ReminderEntry entry = new ReminderEntry(reservationId, kind, dueMillis);
+        ReminderEntry previous = pending.put(member, entry);
+        if (previous != null && previous.dueMillis == dueMillis) {
+            // 已计划过同一时间，保留原条目
+            pending.put(member, previous);
+            return;
+        }
+        delayQueue.offer(entry);
+    }
+
+    private void unschedule(Long reservationId) {
+        if (isRedisMode()) {
+            Object[] members = new Object[ReminderKind.values().length];
+            for (int i = 0; i < members.length; i++) {
+                members[i] = reservationId + ":" + ReminderKind.values()[i].name();
+            }
+            redisTemplate.opsForZSet().remove(QUEUE_KEY, members);
+            return;
+        }
+        for (ReminderKind kind : ReminderKind.values()) {
+            pending.remove(reservationId + ":" + kind.name());
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ReminderEntry entry = delayQueue.take();
+                if (pending.remove(entry.reservationId + ":" + entry.kind.name(), entry)) {
+                    fire(entry.reservationId, entry.kind);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("发送预约提醒失败", e);
+            }
+        }
+    }
+
+    /**
+     * 触发提醒：写入幂等标记后交给通知队列，预约是否仍有效由通知工作线程检查
+     * 提交失败时删除标记并在1分钟后重新入队，避免标记残留导致该提醒被永久跳过
+     */
+    private void fire(Long reservationId, ReminderKind kind) {
+        if (!markSent(reservationId, kind)) {
+            log.debug("提醒已发送过，跳过: reservationId={}, kind={}", reservationId, kind);
+            return;
+        }
+        try {
+            notificationService.submitReminder(reservationId, kind.title, kind.timeText, kind.priority);
+        } catch (RuntimeException e) {
+            log.error("提交预约提醒失败，稍后重试: reservationId={}, kind={}", reservationId, kind, e);
+            clearSent(reservationId, kind);
+            enqueue(reservationId, kind, LocalDateTime.now().plus(RETRY_DELAY));
+        }
+    }
+
+    private boolean markSent(Long reservationId, ReminderKind kind) {
+        try {
+            Boolean first = redisTemplate.opsForValue()
+                    .setIfAbsent(SENT_KEY_PREFIX + reservationId + ":" + kind.name(), "1", SENT_TTL);
+            return Boolean.TRUE.equals(first);
+        } catch (Exception e) {
+            // Redis不可用时只依赖进程内队列去重
+            log.warn("写入提醒幂等标记失败，继续发送: reservationId={}, kind={}", reservationId, kind, e);
+            return true;
+        }
+    }
+
+    private void clearSent(Long reservationId, ReminderKind kind) {
+        try {
+            redisTemplate.delete(SENT_KEY_PREFIX + reservationId + ":" + kind.name());
+        } catch (Exception e) {
+            log.warn("删除提醒幂等标记失败: reservationId={}, kind={}", reservationId, kind, e);
+        }
+    }
+
+    /**
+     * 预约开始时间：使用预约上保存的开始分钟数，迁移前的旧预约才解析时间段文本
+     */
+    private LocalDateTime startTimeOf(LocalDate reserveDate, Integer startMinute, String timeSlot) {
+        if (reserveDate == null) {
+            return null;
+        }
+        if (startMinute == null) {
+            int[] range = TimeRangeUtil.parse(timeSlot);
+            if (range == null) {
+                log.warn("解析预约时间失败: date={}, timeSlot={}", reserveDate, timeSlot);
+                return null;
+            }
+            startMinute = range[0];
+        }
+        return reserveDate.atStartOfDay().plusMinutes(startMinute);
+    }
+
+    private boolean isRedisMode() {
+        return "redis".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 延迟队列中的一条提醒
+     */
+    private static class ReminderEntry implements Delayed {
+        private final Long reservationId;
+        private final ReminderKind kind;
+        private final long dueMillis;
+
+        ReminderEntry(Long reservationId, ReminderKind kind, long dueMillis) {
+            this.reservationId = reservationId;
+            this.kind = kind;
+            this.dueMillis = dueMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((ReminderEntry) other).dueMillis);
+        }
+    }
+}
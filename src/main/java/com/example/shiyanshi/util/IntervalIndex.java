@@ -0,0 +1,133 @@
+package com.example.shiyanshi.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 不可变区间索引（左闭右开区间，单位由调用方决定，如当天分钟数）
+ *
+ * 区间按开始位置排序存放在数组中，以数组中点为根构成隐式平衡二叉树，并记录每棵子树的最大结束位置。
+ * 查询与 [start, end) 重叠的区间时跳过最大结束位置不超过 start 的子树和开始位置不小于 end 的右侧部分，
+ * 复杂度 O(log n + k)。
+ * 构建后不再修改，数据变化时重新构建并整体替换引用（写时复制），并发读取无需加锁。
+ */
+public final class IntervalIndex<T> {
+
+    private static final IntervalIndex<Object> EMPTY = new IntervalIndex<>(new int[0], new int[0], new Object[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+    private final Object[] values;
+
+    /**
+     * 以该位置为根的子树中最大的结束位置
+     */
+    private final int[] maxEnds;
+
+    private IntervalIndex(int[] starts, int[] ends, Object[] values) {
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+        this.maxEnds = new int[starts.length];
+        fillMaxEnds(0, starts.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> IntervalIndex<T> empty() {
+        return (IntervalIndex<T>) EMPTY;
+    }
+
+    /**
+     * 构建索引，结束位置不大于开始位置的元素忽略
+     */
+    public static <T> IntervalIndex<T> build(Collection<T> items, ToIntFunction<T> startOf, ToIntFunction<T> endOf) {
+        List<T> valid = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (endOf.applyAsInt(item) > startOf.applyAsInt(item)) {
+                valid.add(item);
+            }
+        }
+        if (valid.isEmpty()) {
+            return empty();
+        }
+        valid.sort(Comparator.comparingInt(startOf));
+        int[] starts = new int[valid.size()];
+        int[] ends = new int[valid.size()];
+        Object[] values = new Object[valid.size()];
+        for (int i = 0; i < valid.size(); i++) {
+            T item = valid.get(i);
+            starts[i] = startOf.applyAsInt(item);
+            ends[i] = endOf.applyAsInt(item);
+            values[i] = item;
+        }
+        return new IntervalIndex<>(starts, ends, values);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * 与 [start, end) 重叠的全部元素，按开始位置排序
+     */
+    public List<T> overlapping(int start, int end) {
+        if (end <= start || values.length == 0) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>();
+        visit(0, values.length, start, end, value -> {
+            result.add(value);
+            return false;
+        });
+        return result;
+    }
+
+    /**
+     * 是否存在与 [start, end) 重叠且满足条件的元素，找到第一个即返回
+     */
+    public boolean anyOverlap(int start, int end, Predicate<T> filter) {
+        if (end <= start || values.length == 0) {
+            return false;
+        }
+        return visit(0, values.length, start, end, filter);
+    }
+
+    /**
+     * 遍历 [lo, hi) 子树中与 [start, end) 重叠的元素，visitor 返回true时停止
+     */
+    @SuppressWarnings("unchecked")
+    private boolean visit(int lo, int hi, int start, int end, Predicate<T> visitor) {
+        if (lo >= hi) {
+            return false;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] <= start) {
+            return false;
+        }
+        if (visit(lo, mid, start, end, visitor)) {
+            return true;
+        }
+        if (starts[mid] >= end) {
+            return false;
+        }
+        if (ends[mid] > start && visitor.test((T) values[mid])) {
+            return true;
+        }
+        return visit(mid + 1, hi, start, end, visitor);
+    }
+
+    private int fillMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(ends[mid], Math.max(fillMaxEnds(lo, mid), fillMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+}
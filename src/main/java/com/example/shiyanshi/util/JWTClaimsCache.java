@@ -0,0 +1,104 @@
+package com.example.shiyanshi.util;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token解析结果缓存
+ * - 同一会话的重复请求命中缓存后无需再做HMAC验签和JSON解析
+ * - 以完整Token字符串为键：键相等即签名与载荷完全一致，避免伪造载荷复用已缓存的签名
+ * - 条目在Token自身的过期时间到达后失效
+ * - 容量有界：达到上限时先清理过期条目，仍然不足则淘汰一部分旧条目
+ */
+public class JWTClaimsCache {
+
+    /**
+     * 默认最大缓存条目数
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final Map<String, TokenClaims> cache = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    public JWTClaimsCache(int maxSize) {
+        this.maxSize = Math.max(maxSize, 0);
+    }
+
+    /**
+     * 获取Token对应的用户信息
+     * 命中缓存时直接返回；未命中时验签解析一次并写入缓存
+     *
+     * @return 有效时返回用户信息，无效或已过期返回null
+     */
+    public TokenClaims resolve(String token) {
+        long now = System.currentTimeMillis();
+        TokenClaims cached = cache.get(token);
+        if (cached != null) {
+            if (cached.getExpiresAt() > now) {
+                return cached;
+            }
+            cache.remove(token, cached);
+            return null;
+        }
+
+        Claims claims = JWTUtil.parseValidClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        TokenClaims tokenClaims = new TokenClaims(
+                JWTUtil.getUserId(claims),
+                JWTUtil.getUsername(claims),
+                JWTUtil.getUserType(claims),
+                claims.getExpiration().getTime());
+        if (maxSize > 0) {
+            if (cache.size() >= maxSize) {
+                evict(now);
+            }
+            cache.put(token, tokenClaims);
+        }
+        return tokenClaims;
+    }
+
+    /**
+     * 当前缓存条目数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 清理过期条目；若仍超过上限的90%，继续淘汰直到降到该水位
+     */
+    private void evict(long now) {
+        cache.values().removeIf(entry -> entry.getExpiresAt() <= now);
+        int target = maxSize - Math.max(maxSize / 10, 1);
+        Iterator<String> iterator = cache.keySet().iterator();
+        while (cache.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Token中解析出的用户信息
+     */
+    @Getter
+    public static class TokenClaims {
+        private final Long userId;
+        private final String username;
+        private final Integer userType;
+        private final long expiresAt;
+
+        public TokenClaims(Long userId, String username, Integer userType, long expiresAt) {
+            this.userId = userId;
+            this.username = username;
+            this.userType = userType;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
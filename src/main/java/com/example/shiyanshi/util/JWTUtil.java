@@ -108,10 +108,22 @@ public class JWTUtil {
     }
 
     /**
-     * 从Token中获取用户ID
+     * 解析并校验Token，签名与过期时间只校验一次
+     * 有效时返回Claims，无效或已过期返回null
      */
-    public static Long getUserIdFromToken(String token) {
+    public static Claims parseValidClaims(String token) {
         Claims claims = getClaimsFromToken(token);
+        if (claims == null) {
+            return null;
+        }
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.after(new Date()) ? claims : null;
+    }
+
+    /**
+     * 从Claims中获取用户ID
+     */
+    public static Long getUserId(Claims claims) {
         if (claims != null) {
             Object userId = claims.get("userId");
             if (userId instanceof Integer) {
@@ -125,20 +137,39 @@ public class JWTUtil {
         return null;
     }
 
+    /**
+     * 从Claims中获取用户名
+     */
+    public static String getUsername(Claims claims) {
+        return claims != null ? claims.get("username", String.class) : null;
+    }
+
+    /**
+     * 从Claims中获取用户类型
+     */
+    public static Integer getUserType(Claims claims) {
+        return claims != null ? claims.get("userType", Integer.class) : null;
+    }
+
+    /**
+     * 从Token中获取用户ID
+     */
+    public static Long getUserIdFromToken(String token) {
+        return getUserId(getClaimsFromToken(token));
+    }
+
     /**
      * 从Token中获取用户名
      */
     public static String getUsernameFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims != null ? claims.get("username", String.class) : null;
+        return getUsername(getClaimsFromToken(token));
     }
 
     /**
      * 从Token中获取用户类型
      */
     public static Integer getUserTypeFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims != null ? claims.get("userType", Integer.class) : null;
+        return getUserType(getClaimsFromToken(token));
     }
 
     /**
@@ -146,13 +177,7 @@ public class JWTUtil {
      */
     public static boolean validateToken(String token) {
         try {
-            Claims claims = getClaimsFromToken(token);
-            if (claims == null) {
-                return false;
-            }
-            // 检查是否过期
-            Date expiration = claims.getExpiration();
-            return expiration != null && expiration.after(new Date());
+            return parseValidClaims(token) != null;
         } catch (Exception e) {
             return false;
         }
@@ -182,10 +207,7 @@ public class JWTUtil {
     public static String refreshToken(String token) {
         Claims claims = getClaimsFromToken(token);
         if (claims != null) {
-            Long userId = getUserIdFromToken(token);
-            String username = getUsernameFromToken(token);
-            Integer userType = getUserTypeFromToken(token);
-            return generateToken(userId, username, userType);
+            return generateToken(getUserId(claims), getUsername(claims), getUserType(claims));
         }
         return null;
     }
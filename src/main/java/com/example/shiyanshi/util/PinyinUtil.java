@@ -0,0 +1,69 @@
+package com.example.shiyanshi.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * 汉字拼音首字母工具类
+ *
+ * GB2312 一级汉字（常用字 3755 个）按拼音排序，根据汉字的GB2312编码落在哪个声母区间即可得到首字母，
+ * 不依赖拼音词库。字母和数字原样（小写）返回。
+ * 已知缺口：二级汉字（按部首排序）、GB2312以外的汉字（如部分生僻姓氏）无法得到首字母，原样返回该字符，
+ * 这类姓名的首字母串中保留原字，仍可按姓名片段搜索；标点符号等其他字符返回0，由调用方跳过。
+ */
+public class PinyinUtil {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    /**
+     * 各首字母区间在GB2312中的起始编码，最后一项为一级汉字结束位置
+     */
+    private static final int[] BOUNDARIES = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7,
+            0xBFA6, 0xC0AC, 0xC2E8, 0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6,
+            0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA
+    };
+
+    private static final char[] LETTERS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    /**
+     * 单个字符的拼音首字母（小写）；一级汉字以外的汉字等文字原样返回，标点符号等返回0
+     */
+    public static char initial(char ch) {
+        if (ch < 0x80) {
+            return Character.isLetterOrDigit(ch) ? Character.toLowerCase(ch) : 0;
+        }
+        char fallback = Character.isLetterOrDigit(ch) ? Character.toLowerCase(ch) : 0;
+        byte[] bytes = String.valueOf(ch).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return fallback;
+        }
+        int code = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        if (code < BOUNDARIES[0] || code >= BOUNDARIES[BOUNDARIES.length - 1]) {
+            return fallback;
+        }
+        for (int i = LETTERS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 字符串的拼音首字母，如 张三 -> zs、亓官 -> 亓g；跳过空白和标点，没有可用字符时返回null
+     */
+    public static String initials(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            char initial = initial(ch);
+            if (initial != 0) {
+                sb.append(initial);
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+}
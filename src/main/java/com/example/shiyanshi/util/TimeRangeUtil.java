@@ -0,0 +1,65 @@
+package com.example.shiyanshi.util;
+
+/**
+ * 时间段文本与分钟数转换工具类
+ * 只在写入预约、加载时间段配置时使用；冲突检查、提醒等热点路径直接使用预约上保存的分钟数
+ */
+public class TimeRangeUtil {
+
+    /**
+     * 把 HH:mm 转为当天的分钟数（0-1440），格式无效返回null
+     */
+    public static Integer toMinute(String time) {
+        if (time == null) {
+            return null;
+        }
+        String text = time.trim();
+        int colon = text.indexOf(':');
+        if (colon <= 0 || colon == text.length() - 1) {
+            return null;
+        }
+        try {
+            int hour = Integer.parseInt(text.substring(0, colon));
+            int minute = Integer.parseInt(text.substring(colon + 1));
+            if (hour < 0 || minute < 0 || minute > 59 || hour * 60 + minute > 24 * 60) {
+                return null;
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析 HH:mm-HH:mm 为 [开始分钟, 结束分钟]，格式无效或结束不晚于开始时返回null
+     */
+    public static int[] parse(String timeSlot) {
+        if (timeSlot == null) {
+            return null;
+        }
+        int dash = timeSlot.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        Integer start = toMinute(timeSlot.substring(0, dash));
+        Integer end = toMinute(timeSlot.substring(dash + 1));
+        if (start == null || end == null || end <= start) {
+            return null;
+        }
+        return new int[]{start, end};
+    }
+
+    /**
+     * 分钟数格式化为 HH:mm
+     */
+    public static String format(int minute) {
+        return String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+
+    /**
+     * 两个左闭右开区间是否重叠
+     */
+    public static boolean overlaps(int start1, int end1, int start2, int end2) {
+        return start1 < end2 && start2 < end1;
+    }
+}
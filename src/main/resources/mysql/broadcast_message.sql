@@ -0,0 +1,31 @@
+-- 广播消息（读时扩散）相关表
+-- message.broadcast.mode=read 时，系统广播只写入一条 broadcast_message 记录，
+-- 用户的已读/删除状态按需写入 broadcast_receipt，"全部已读"只更新 broadcast_watermark 中的水位线。
+-- 查询站内消息时把个人消息与广播合并，广播在合并结果中的消息ID为负的广播ID。
+
+CREATE TABLE `broadcast_message` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '广播ID',
+    `sender_name` VARCHAR(100) NOT NULL DEFAULT '系统' COMMENT '发送者名称',
+    `title` VARCHAR(200) NOT NULL COMMENT '消息标题',
+    `content` TEXT NOT NULL COMMENT '消息内容',
+    `priority` TINYINT NOT NULL DEFAULT 0 COMMENT '优先级: 0-普通 1-重要 2-紧急',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `deleted` TINYINT NOT NULL DEFAULT 0 COMMENT '删除标记: 0-未删除 1-已删除（撤回）',
+    PRIMARY KEY (`id`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='广播消息表';
+
+CREATE TABLE `broadcast_receipt` (
+    `user_id` BIGINT NOT NULL COMMENT '用户ID',
+    `broadcast_id` BIGINT NOT NULL COMMENT '广播ID',
+    `read_time` DATETIME DEFAULT NULL COMMENT '阅读时间（NULL表示未单独标记已读）',
+    `deleted` TINYINT NOT NULL DEFAULT 0 COMMENT '用户是否删除了该广播: 0-否 1-是',
+    PRIMARY KEY (`user_id`, `broadcast_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='广播消息用户状态表';
+
+CREATE TABLE `broadcast_watermark` (
+    `user_id` BIGINT NOT NULL COMMENT '用户ID',
+    `read_upto_id` BIGINT NOT NULL DEFAULT 0 COMMENT 'ID不大于该值的广播均视为已读',
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='广播消息已读水位表';
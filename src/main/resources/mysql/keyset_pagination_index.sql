@@ -0,0 +1,31 @@
+-- 游标分页索引
+-- 列表按 (create_time DESC, id DESC) 排序，游标条件为 (create_time, id) < (上一页最后一条)，
+-- 以下索引使排序和定位都走索引，翻到多深的页都只扫描一页的数据
+
+-- 游标由上一页最后一条的 (create_time, id) 组成，create_time 为NULL的行无法生成可解析的游标，
+-- 且 (create_time, id) < (?, ?) 永远不会命中这些行，因此先回填并改为 NOT NULL。
+-- 回填值优先使用更新时间（消息表用阅读时间），都为空时取固定的早期时间，使其排在列表末尾；
+-- 显式设置 update_time = update_time，避免 ON UPDATE CURRENT_TIMESTAMP 改写更新时间
+UPDATE `reservation` SET `create_time` = COALESCE(`update_time`, '2000-01-01 00:00:00'), `update_time` = `update_time`
+WHERE `create_time` IS NULL;
+UPDATE `user` SET `create_time` = COALESCE(`update_time`, '2000-01-01 00:00:00'), `update_time` = `update_time`
+WHERE `create_time` IS NULL;
+UPDATE `message` SET `create_time` = COALESCE(`read_time`, '2000-01-01 00:00:00')
+WHERE `create_time` IS NULL;
+
+ALTER TABLE `reservation`
+    MODIFY COLUMN `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间';
+ALTER TABLE `user`
+    MODIFY COLUMN `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间';
+ALTER TABLE `message`
+    MODIFY COLUMN `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间';
+
+ALTER TABLE `reservation`
+    ADD KEY `idx_create_time_id` (`create_time`, `id`) COMMENT '游标分页索引',
+    ADD KEY `idx_user_create_time_id` (`user_id`, `create_time`, `id`) COMMENT '按用户游标分页索引';
+
+ALTER TABLE `message`
+    ADD KEY `idx_receiver_deleted_create_time` (`receiver_id`, `deleted`, `create_time`, `id`) COMMENT '接收者消息游标分页索引';
+
+ALTER TABLE `user`
+    ADD KEY `idx_create_time_id` (`create_time`, `id`) COMMENT '游标分页索引';
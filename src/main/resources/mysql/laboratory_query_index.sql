@@ -0,0 +1,9 @@
+-- 实验室组合条件查询索引
+-- /api/laboratory/query 的状态、容量、楼栋楼层、类型条件都在数据库中过滤，
+-- 以下索引使常用组合只扫描命中的行，查询耗时与结果数量相关，与实验室总数无关
+
+ALTER TABLE `laboratory`
+    ADD KEY `idx_status_capacity` (`status`, `capacity`) COMMENT '按状态和容量范围查询',
+    ADD KEY `idx_building_floor` (`building`, `floor`) COMMENT '按楼栋楼层查询',
+    ADD KEY `idx_lab_type_status` (`lab_type`, `status`) COMMENT '按类型查询',
+    ADD KEY `idx_create_time_id` (`create_time`, `id`) COMMENT '列表排序';
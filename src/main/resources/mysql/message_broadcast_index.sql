@@ -0,0 +1,6 @@
+-- 系统消息广播相关索引
+-- 广播消息以 related_type='broadcast'、related_id=任务ID 标记，
+-- 续传时按任务统计已发送数量并查找最大接收者ID作为断点
+
+ALTER TABLE `message`
+    ADD KEY `idx_related` (`related_type`, `related_id`, `receiver_id`) COMMENT '关联业务索引';
@@ -0,0 +1,14 @@
+-- 预约时间段唯一约束
+-- 同一实验室、同一日期、同一时间段只允许存在一条有效预约（待审核或已通过）
+-- 已拒绝/已取消/已完成的预约生成列为NULL，不参与唯一性校验，可重复存在
+
+-- 执行前先确认没有重复的有效预约，否则建索引会失败：
+-- SELECT lab_id, reserve_date, time_slot, COUNT(*) FROM reservation
+-- WHERE status IN (0, 1)
+-- GROUP BY lab_id, reserve_date, time_slot HAVING COUNT(*) > 1;
+
+ALTER TABLE `reservation`
+    ADD COLUMN `active_slot_key` VARCHAR(100) GENERATED ALWAYS AS (
+        CASE WHEN `status` IN (0, 1) THEN CONCAT(`lab_id`, '|', `reserve_date`, '|', `time_slot`) ELSE NULL END
+    ) VIRTUAL COMMENT '有效预约时间段键（生成列）',
+    ADD UNIQUE KEY `uk_active_slot` (`active_slot_key`) COMMENT '有效预约时间段唯一索引';
@@ -0,0 +1,19 @@
+-- 预约搜索全文索引
+-- 管理端预约搜索原来对 用户姓名、实验室名称、实验名称 做 LIKE '%关键字%'，三表关联后全表扫描，耗时随历史数据线性增长。
+-- 改为 ngram 全文索引（支持中文，按 ngram_token_size 切词，默认2），关键字先分别在三张表的全文索引中命中，
+-- 再按主键 / idx_user_id / idx_lab_id 取回预约；状态、实验室、日期条件同时在SQL中过滤。
+-- 少于 ngram_token_size 个字符的关键字无法走全文索引，按原 LIKE 方式查询（由其他条件和分页限制扫描范围）。
+
+ALTER TABLE `reservation`
+    ADD FULLTEXT KEY `ft_experiment_name` (`experiment_name`) WITH PARSER ngram COMMENT '实验名称全文检索';
+
+ALTER TABLE `user`
+    ADD FULLTEXT KEY `ft_real_name` (`real_name`) WITH PARSER ngram COMMENT '姓名全文检索';
+
+ALTER TABLE `laboratory`
+    ADD FULLTEXT KEY `ft_lab_name` (`lab_name`) WITH PARSER ngram COMMENT '实验室名称全文检索';
+
+-- 按实验室、状态筛选后按提交时间排序分页
+ALTER TABLE `reservation`
+    ADD KEY `idx_lab_create_time_id` (`lab_id`, `create_time`, `id`) COMMENT '按实验室搜索排序',
+    ADD KEY `idx_status_create_time_id` (`status`, `create_time`, `id`) COMMENT '按状态搜索排序';
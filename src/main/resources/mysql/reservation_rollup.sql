@@ -0,0 +1,22 @@
+-- 预约统计汇总表
+-- 按 (实验室, 日期, 时间段, 状态) 和 (用户, 状态) 维护预约数量，预约状态变更时在同一事务内增量更新，
+-- 报表和统计接口直接读取汇总表（rollup.read-enabled=true）
+-- 启用步骤：执行本脚本 -> 设置 rollup.enabled=true 并重启 -> 执行一次重建 POST /api/report/rollup/rebuild -> 设置 rollup.read-enabled=true
+
+CREATE TABLE IF NOT EXISTS `reservation_daily_rollup` (
+  `lab_id` bigint NOT NULL COMMENT '实验室ID',
+  `reserve_date` date NOT NULL COMMENT '预约日期',
+  `time_slot` varchar(50) NOT NULL COMMENT '时间段',
+  `status` int NOT NULL COMMENT '预约状态',
+  `reservation_count` int NOT NULL DEFAULT '0' COMMENT '预约数量',
+  `people_count` int NOT NULL DEFAULT '0' COMMENT '使用人数合计',
+  PRIMARY KEY (`lab_id`, `reserve_date`, `time_slot`, `status`),
+  KEY `idx_reserve_date` (`reserve_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='预约每日汇总表';
+
+CREATE TABLE IF NOT EXISTS `reservation_user_rollup` (
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `status` int NOT NULL COMMENT '预约状态',
+  `reservation_count` int NOT NULL DEFAULT '0' COMMENT '预约数量',
+  PRIMARY KEY (`user_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='用户预约汇总表';
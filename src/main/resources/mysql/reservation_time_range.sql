@@ -0,0 +1,50 @@
+-- 预约时间段规范化
+-- time_slot 原为自由文本（如 08:00-10:00），冲突检查只能比较文本是否相同，重叠的自定义时间段无法识别。
+-- 新增时间段配置外键和分钟数区间，冲突检查改为区间重叠查询：start_minute < 新结束 AND end_minute > 新开始。
+-- time_slot 列保留作展示和统计分组使用。
+
+ALTER TABLE `reservation`
+    ADD COLUMN `time_slot_id` bigint DEFAULT NULL COMMENT '时间段配置ID（自定义时间段为空）' AFTER `time_slot`,
+    ADD COLUMN `start_minute` smallint DEFAULT NULL COMMENT '开始时间（当天分钟数）' AFTER `time_slot_id`,
+    ADD COLUMN `end_minute` smallint DEFAULT NULL COMMENT '结束时间（当天分钟数，不含）' AFTER `start_minute`;
+
+-- 回填分钟数：只处理 H:mm-H:mm / HH:mm-HH:mm 格式的记录，其余记录保持为空，冲突检查按文本相同兜底
+UPDATE `reservation`
+SET `start_minute` = CAST(SUBSTRING_INDEX(TRIM(SUBSTRING_INDEX(`time_slot`, '-', 1)), ':', 1) AS UNSIGNED) * 60
+                   + CAST(SUBSTRING_INDEX(TRIM(SUBSTRING_INDEX(`time_slot`, '-', 1)), ':', -1) AS UNSIGNED),
+    `end_minute` = CAST(SUBSTRING_INDEX(TRIM(SUBSTRING_INDEX(`time_slot`, '-', -1)), ':', 1) AS UNSIGNED) * 60
+                 + CAST(SUBSTRING_INDEX(TRIM(SUBSTRING_INDEX(`time_slot`, '-', -1)), ':', -1) AS UNSIGNED)
+WHERE `time_slot` REGEXP '^ *[0-9]{1,2}:[0-9]{2} *- *[0-9]{1,2}:[0-9]{2} *$';
+
+-- 统一时间段文本格式为 HH:mm-HH:mm
+-- 若已执行 reservation_active_slot_unique.sql，先确认格式统一后不会出现重复的有效预约：
+-- SELECT lab_id, reserve_date, start_minute, end_minute, COUNT(*) FROM reservation
+-- WHERE status IN (0, 1) AND start_minute IS NOT NULL
+-- GROUP BY lab_id, reserve_date, start_minute, end_minute HAVING COUNT(*) > 1;
+UPDATE `reservation`
+SET `time_slot` = CONCAT(LPAD(`start_minute` DIV 60, 2, '0'), ':', LPAD(`start_minute` MOD 60, 2, '0'), '-',
+                         LPAD(`end_minute` DIV 60, 2, '0'), ':', LPAD(`end_minute` MOD 60, 2, '0'))
+WHERE `start_minute` IS NOT NULL;
+
+-- 开始、结束时间与时间段配置一致的预约关联到该配置
+UPDATE `reservation` r
+    JOIN `time_slot` t ON r.`time_slot` = CONCAT(LPAD(TRIM(t.`start_time`), 5, '0'), '-', LPAD(TRIM(t.`end_time`), 5, '0'))
+SET r.`time_slot_id` = t.`id`
+WHERE r.`time_slot_id` IS NULL;
+
+-- 检查未能回填的记录（需人工修正时间段文本）：
+-- SELECT id, time_slot FROM reservation WHERE start_minute IS NULL;
+
+ALTER TABLE `reservation`
+    ADD KEY `idx_lab_date_minute` (`lab_id`, `reserve_date`, `start_minute`, `end_minute`) COMMENT '区间重叠冲突检查',
+    ADD KEY `idx_time_slot_id` (`time_slot_id`),
+    ADD CONSTRAINT `fk_reservation_time_slot` FOREIGN KEY (`time_slot_id`) REFERENCES `time_slot` (`id`) ON DELETE SET NULL;
+
+-- 统一时间段文本后，预约统计汇总表（reservation_rollup.sql）中按旧文本分组的行已过期，在同一事务内重建
+-- 未执行过 reservation_rollup.sql 的环境跳过本段
+START TRANSACTION;
+DELETE FROM `reservation_daily_rollup`;
+INSERT INTO `reservation_daily_rollup` (`lab_id`, `reserve_date`, `time_slot`, `status`, `reservation_count`, `people_count`)
+SELECT `lab_id`, `reserve_date`, `time_slot`, `status`, COUNT(*), IFNULL(SUM(`people_num`), 0)
+FROM `reservation` GROUP BY `lab_id`, `reserve_date`, `time_slot`, `status`;
+COMMIT;
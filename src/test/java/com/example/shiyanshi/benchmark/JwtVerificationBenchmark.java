@@ -0,0 +1,83 @@
+package com.example.shiyanshi.benchmark;
+
+import com.example.shiyanshi.util.JWTClaimsCache;
+import com.example.shiyanshi.util.JWTUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT校验微基准：对比拦截器每个请求处理Token的三种方式
+ * - fourParses：改造前的做法，validateToken 与三个 getXxxFromToken 各自验签、解析一次
+ * - singleParse：parseValidClaims 验签解析一次，从同一个Claims取出全部字段
+ * - cachedResolve：JWTClaimsCache 命中缓存，不做验签
+ *
+ * 不参与单元测试，运行方式：
+ *   mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.example.shiyanshi.benchmark.JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private String token;
+
+    private JWTClaimsCache cache;
+
+    @Setup
+    public void setUp() {
+        JWTUtil jwtUtil = new JWTUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmark-secret-key-for-jwt-verification");
+        ReflectionTestUtils.setField(jwtUtil, "expirationMillis", TimeUnit.HOURS.toMillis(1));
+        jwtUtil.init();
+        token = JWTUtil.generateToken(2L, "student02", 0);
+        cache = new JWTClaimsCache(JWTClaimsCache.DEFAULT_MAX_SIZE);
+        cache.resolve(token);
+    }
+
+    @Benchmark
+    public void fourParses(Blackhole blackhole) {
+        blackhole.consume(JWTUtil.validateToken(token));
+        blackhole.consume(JWTUtil.getUserIdFromToken(token));
+        blackhole.consume(JWTUtil.getUsernameFromToken(token));
+        blackhole.consume(JWTUtil.getUserTypeFromToken(token));
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole blackhole) {
+        Claims claims = JWTUtil.parseValidClaims(token);
+        blackhole.consume(JWTUtil.getUserId(claims));
+        blackhole.consume(JWTUtil.getUsername(claims));
+        blackhole.consume(JWTUtil.getUserType(claims));
+    }
+
+    @Benchmark
+    public Object cachedResolve() {
+        return cache.resolve(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.shiyanshi.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorPageTests {
+
+	record Row(LocalDateTime createTime, Long id) {
+	}
+
+	private static final LocalDateTime T1 = LocalDateTime.of(2026, 3, 1, 10, 30, 15, 123_000_000);
+	private static final LocalDateTime T2 = LocalDateTime.of(2026, 3, 1, 10, 30);
+
+	private static String token(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void nextCursorRoundTripsLastItemOfPage() {
+		List<Row> rows = List.of(new Row(T1, 30L), new Row(T2, 29L), new Row(T2, 28L));
+		CursorPage<Row> page = CursorPage.of(rows, 2, Row::createTime, Row::id);
+
+		assertTrue(page.isHasMore());
+		assertEquals(2, page.getItems().size());
+		CursorPage.Cursor cursor = CursorPage.decode(page.getNextCursor());
+		assertEquals(T2, cursor.getCreateTime());
+		assertEquals(29L, cursor.getId());
+	}
+
+	@Test
+	void fractionalSecondsSurviveRoundTrip() {
+		List<Row> rows = List.of(new Row(T1, 2L), new Row(T1, 1L));
+		CursorPage.Cursor cursor = CursorPage.decode(CursorPage.of(rows, 1, Row::createTime, Row::id).getNextCursor());
+		assertEquals(T1, cursor.getCreateTime());
+		assertEquals(2L, cursor.getId());
+	}
+
+	@Test
+	void lastPageHasNoCursor() {
+		CursorPage<Row> page = CursorPage.of(List.of(new Row(T1, 1L), new Row(T2, 2L)), 2, Row::createTime, Row::id);
+		assertFalse(page.isHasMore());
+		assertNull(page.getNextCursor());
+		assertEquals(2, page.getItems().size());
+	}
+
+	@Test
+	void nullCreateTimeFailsInsteadOfProducingUndecodableCursor() {
+		List<Row> rows = List.of(new Row(T1, 3L), new Row(null, 2L), new Row(T2, 1L));
+		assertThrows(IllegalStateException.class, () -> CursorPage.of(rows, 2, Row::createTime, Row::id));
+	}
+
+	@Test
+	void emptyCursorMeansFirstPage() {
+		assertNull(CursorPage.decode(null));
+		assertNull(CursorPage.decode(""));
+	}
+
+	@Test
+	void malformedCursorsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> CursorPage.decode("not a cursor!"));
+		assertThrows(IllegalArgumentException.class, () -> CursorPage.decode(token("2026-03-01T10:30")));
+		assertThrows(IllegalArgumentException.class, () -> CursorPage.decode(token("2026-03-01T10:30|abc")));
+		assertThrows(IllegalArgumentException.class, () -> CursorPage.decode(token("yesterday|12")));
+		assertThrows(IllegalArgumentException.class, () -> CursorPage.decode(token("|12")));
+	}
+
+	@Test
+	void normalizeSizeAppliesDefaultAndCap() {
+		assertEquals(CursorPage.DEFAULT_SIZE, CursorPage.normalizeSize(null));
+		assertEquals(CursorPage.DEFAULT_SIZE, CursorPage.normalizeSize(0));
+		assertEquals(CursorPage.DEFAULT_SIZE, CursorPage.normalizeSize(-5));
+		assertEquals(7, CursorPage.normalizeSize(7));
+		assertEquals(CursorPage.MAX_SIZE, CursorPage.normalizeSize(CursorPage.MAX_SIZE + 1));
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.shiyanshi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationSeriesTests {
+
+	private static ReservationService.SeriesRequest request(LocalDate start, LocalDate end, Integer occurrences) {
+		ReservationService.SeriesRequest request = new ReservationService.SeriesRequest();
+		request.setStartDate(start);
+		request.setEndDate(end);
+		request.setOccurrences(occurrences);
+		return request;
+	}
+
+	private static List<LocalDate> dates(String... values) {
+		return Arrays.stream(values).map(LocalDate::parse).toList();
+	}
+
+	@Test
+	void weeklySeriesCrossesMonthEnd() {
+		// 2027-01-26 为周二，未指定星期时沿用开始日期的星期
+		List<LocalDate> result = ReservationService.expandSeries(request(LocalDate.parse("2027-01-26"), null, 4));
+		assertEquals(dates("2027-01-26", "2027-02-02", "2027-02-09", "2027-02-16"), result);
+	}
+
+	@Test
+	void weeklySeriesIncludesLeapDay() {
+		List<LocalDate> result = ReservationService.expandSeries(
+				request(LocalDate.parse("2028-02-22"), LocalDate.parse("2028-03-07"), null));
+		assertEquals(dates("2028-02-22", "2028-02-29", "2028-03-07"), result);
+	}
+
+	@Test
+	void biweeklySeriesOnSeveralDaysAcrossMonths() {
+		ReservationService.SeriesRequest request = request(LocalDate.parse("2027-03-29"), LocalDate.parse("2027-04-30"), null);
+		request.setDaysOfWeek(List.of(1, 3));
+		request.setIntervalWeeks(2);
+		assertEquals(dates("2027-03-29", "2027-03-31", "2027-04-12", "2027-04-14", "2027-04-26", "2027-04-28"),
+				ReservationService.expandSeries(request));
+	}
+
+	@Test
+	void endDateIsInclusive() {
+		List<LocalDate> result = ReservationService.expandSeries(
+				request(LocalDate.parse("2027-01-26"), LocalDate.parse("2027-02-09"), null));
+		assertEquals(dates("2027-01-26", "2027-02-02", "2027-02-09"), result);
+	}
+
+	@Test
+	void exactlyOneHundredDatesAreAllowed() {
+		ReservationService.SeriesRequest request = request(LocalDate.parse("2027-01-01"), LocalDate.parse("2027-04-10"), null);
+		request.setDaysOfWeek(List.of(1, 2, 3, 4, 5, 6, 7));
+		List<LocalDate> result = ReservationService.expandSeries(request);
+		assertEquals(100, result.size());
+		assertEquals(LocalDate.parse("2027-04-10"), result.get(99));
+	}
+
+	@Test
+	void moreThanOneHundredDatesAreRejected() {
+		ReservationService.SeriesRequest request = request(LocalDate.parse("2027-01-01"), LocalDate.parse("2027-04-11"), null);
+		request.setDaysOfWeek(List.of(1, 2, 3, 4, 5, 6, 7));
+		RuntimeException e = assertThrows(RuntimeException.class, () -> ReservationService.expandSeries(request));
+		assertTrue(e.getMessage().contains("100"));
+
+		assertThrows(RuntimeException.class,
+				() -> ReservationService.expandSeries(request(LocalDate.parse("2027-01-01"), null, 101)));
+	}
+
+	@Test
+	void invalidRulesAreRejected() {
+		assertThrows(RuntimeException.class,
+				() -> ReservationService.expandSeries(request(LocalDate.parse("2027-01-01"), null, null)));
+		assertThrows(RuntimeException.class,
+				() -> ReservationService.expandSeries(request(LocalDate.parse("2027-01-10"), LocalDate.parse("2027-01-01"), null)));
+		assertThrows(RuntimeException.class,
+				() -> ReservationService.expandSeries(request(LocalDate.parse("2027-01-01"), LocalDate.parse("2028-01-02"), null)));
+		ReservationService.SeriesRequest zeroInterval = request(LocalDate.parse("2027-01-01"), null, 3);
+		zeroInterval.setIntervalWeeks(0);
+		assertThrows(RuntimeException.class, () -> ReservationService.expandSeries(zeroInterval));
+	}
+}
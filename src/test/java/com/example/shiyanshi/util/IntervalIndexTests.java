@@ -0,0 +1,104 @@
+package com.example.shiyanshi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntervalIndexTests {
+
+	private static final int[] MORNING = {480, 600};
+	private static final int[] NOON = {600, 720};
+	private static final int[] INNER = {540, 570};
+	private static final int[] EVENING = {900, 960};
+
+	private static IntervalIndex<int[]> index(List<int[]> ranges) {
+		return IntervalIndex.build(ranges, range -> range[0], range -> range[1]);
+	}
+
+	private static IntervalIndex<int[]> sample() {
+		return index(List.of(EVENING, NOON, MORNING, INNER, new int[]{700, 700}, new int[]{800, 750}));
+	}
+
+	@Test
+	void buildIgnoresEmptyAndReversedRanges() {
+		assertEquals(4, sample().size());
+		assertEquals(0, index(List.of()).size());
+		assertEquals(0, index(List.of(new int[]{10, 10})).size());
+	}
+
+	@Test
+	void touchingRangesDoNotOverlap() {
+		assertEquals(List.of(NOON), sample().overlapping(600, 720));
+		assertEquals(List.of(), sample().overlapping(720, 900));
+		assertEquals(List.of(), sample().overlapping(0, 480));
+		assertEquals(List.of(), sample().overlapping(960, 1440));
+	}
+
+	@Test
+	void containmentInBothDirections() {
+		// 查询区间被已有区间包含
+		assertEquals(List.of(MORNING, INNER), sample().overlapping(550, 560));
+		// 查询区间包含全部区间，结果按开始位置排序
+		assertEquals(List.of(MORNING, INNER, NOON, EVENING), sample().overlapping(0, 1440));
+	}
+
+	@Test
+	void partialOverlapAtBoundaries() {
+		assertEquals(List.of(MORNING, NOON), sample().overlapping(599, 601));
+		assertEquals(List.of(EVENING), sample().overlapping(959, 1000));
+	}
+
+	@Test
+	void emptyOrReversedQueryMatchesNothing() {
+		assertEquals(List.of(), sample().overlapping(600, 600));
+		assertEquals(List.of(), sample().overlapping(720, 600));
+		assertFalse(sample().anyOverlap(720, 600, range -> true));
+		assertEquals(List.of(), IntervalIndex.<int[]>empty().overlapping(0, 1440));
+	}
+
+	@Test
+	void anyOverlapAppliesFilter() {
+		IntervalIndex<int[]> index = sample();
+		assertTrue(index.anyOverlap(550, 560, range -> true));
+		// 排除自身后与 INNER 的重叠仍能找到
+		assertTrue(index.anyOverlap(540, 570, range -> range != MORNING));
+		assertFalse(index.anyOverlap(540, 570, range -> range != MORNING && range != INNER));
+	}
+
+	@Test
+	void matchesBruteForceOnRandomRanges() {
+		Random random = new Random(20260118L);
+		for (int round = 0; round < 200; round++) {
+			List<int[]> ranges = new ArrayList<>();
+			int count = random.nextInt(40);
+			for (int i = 0; i < count; i++) {
+				int start = random.nextInt(1440);
+				ranges.add(new int[]{start, start + random.nextInt(180) - 10});
+			}
+			IntervalIndex<int[]> index = index(ranges);
+			for (int query = 0; query < 50; query++) {
+				int start = random.nextInt(1440);
+				int end = start + 1 + random.nextInt(240);
+				Set<int[]> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+				for (int[] range : ranges) {
+					if (range[1] > range[0] && TimeRangeUtil.overlaps(range[0], range[1], start, end)) {
+						expected.add(range);
+					}
+				}
+				List<int[]> actual = index.overlapping(start, end);
+				assertEquals(expected.size(), actual.size());
+				assertTrue(expected.containsAll(actual));
+				assertEquals(!expected.isEmpty(), index.anyOverlap(start, end, range -> true));
+			}
+		}
+	}
+}
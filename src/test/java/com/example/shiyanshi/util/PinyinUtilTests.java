@@ -0,0 +1,47 @@
+package com.example.shiyanshi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PinyinUtilTests {
+
+	@Test
+	void initialsOfChineseNames() {
+		assertEquals("zs", PinyinUtil.initials("张三"));
+		assertEquals("oynn", PinyinUtil.initials("欧阳娜娜"));
+	}
+
+	@Test
+	void mixedTextKeepsLettersAndDigitsLowercase() {
+		assertEquals("tomli", PinyinUtil.initials("Tom Li"));
+		assertEquals("la3", PinyinUtil.initials("李A3"));
+		// 少数民族姓名中的间隔号和空格跳过
+		assertEquals("abd", PinyinUtil.initials("阿·卜杜"));
+	}
+
+	@Test
+	void charactersOutsideLevelOneFallBackToThemselves() {
+		// 二级汉字（按部首排序）无法判断首字母，保留原字
+		assertEquals("亓", PinyinUtil.initials("亓"));
+		assertEquals("亓g", PinyinUtil.initials("亓官"));
+		assertEquals('亓', PinyinUtil.initial('亓'));
+	}
+
+	@Test
+	void punctuationIsSkipped() {
+		assertEquals("ww", PinyinUtil.initials("王-五"));
+		assertNull(PinyinUtil.initials("--"));
+		assertNull(PinyinUtil.initials(""));
+		assertNull(PinyinUtil.initials("  "));
+		assertNull(PinyinUtil.initials(null));
+	}
+
+	@Test
+	void singleCharacterInitial() {
+		assertEquals('z', PinyinUtil.initial('Z'));
+		assertEquals('7', PinyinUtil.initial('7'));
+		assertEquals(0, PinyinUtil.initial('-'));
+	}
+}
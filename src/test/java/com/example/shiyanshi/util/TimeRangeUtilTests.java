@@ -0,0 +1,67 @@
+package com.example.shiyanshi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeRangeUtilTests {
+
+	@Test
+	void toMinuteAcceptsWholeDay() {
+		assertEquals(0, TimeRangeUtil.toMinute("00:00"));
+		assertEquals(485, TimeRangeUtil.toMinute("8:05"));
+		assertEquals(1440, TimeRangeUtil.toMinute("24:00"));
+	}
+
+	@Test
+	void toMinuteRejectsInvalidText() {
+		assertNull(TimeRangeUtil.toMinute(null));
+		assertNull(TimeRangeUtil.toMinute("24:01"));
+		assertNull(TimeRangeUtil.toMinute("08:60"));
+		assertNull(TimeRangeUtil.toMinute("-1:00"));
+		assertNull(TimeRangeUtil.toMinute("08:"));
+		assertNull(TimeRangeUtil.toMinute(":30"));
+		assertNull(TimeRangeUtil.toMinute("ab:cd"));
+	}
+
+	@Test
+	void parseTrimsAndNormalizes() {
+		assertArrayEquals(new int[]{480, 600}, TimeRangeUtil.parse("08:00-10:00"));
+		assertArrayEquals(new int[]{480, 600}, TimeRangeUtil.parse(" 8:00 - 10:00 "));
+		assertArrayEquals(new int[]{1320, 1440}, TimeRangeUtil.parse("22:00-24:00"));
+	}
+
+	@Test
+	void parseRejectsEmptyReversedAndCrossMidnightRanges() {
+		assertNull(TimeRangeUtil.parse(null));
+		assertNull(TimeRangeUtil.parse("08:00"));
+		assertNull(TimeRangeUtil.parse("-"));
+		assertNull(TimeRangeUtil.parse("10:00-10:00"));
+		assertNull(TimeRangeUtil.parse("10:00-08:00"));
+		assertNull(TimeRangeUtil.parse("22:00-02:00"));
+	}
+
+	@Test
+	void formatPadsHoursAndMinutes() {
+		assertEquals("08:05", TimeRangeUtil.format(485));
+		assertEquals("00:00", TimeRangeUtil.format(0));
+		assertEquals("24:00", TimeRangeUtil.format(1440));
+	}
+
+	@Test
+	void overlapsTreatsRangesAsHalfOpen() {
+		// 首尾相接不算重叠
+		assertFalse(TimeRangeUtil.overlaps(480, 600, 600, 720));
+		assertFalse(TimeRangeUtil.overlaps(600, 720, 480, 600));
+		assertFalse(TimeRangeUtil.overlaps(480, 540, 600, 720));
+		// 部分重叠、包含、相同
+		assertTrue(TimeRangeUtil.overlaps(480, 600, 599, 720));
+		assertTrue(TimeRangeUtil.overlaps(480, 720, 540, 600));
+		assertTrue(TimeRangeUtil.overlaps(540, 600, 480, 720));
+		assertTrue(TimeRangeUtil.overlaps(480, 600, 480, 600));
+	}
+}